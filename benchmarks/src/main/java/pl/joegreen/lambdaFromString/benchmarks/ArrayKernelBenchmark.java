@@ -0,0 +1,85 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.joegreen.lambdaFromString.DoubleArrayKernel;
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+import pl.joegreen.lambdaFromString.TypeReference;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Applying an expression to every element of an array: an array kernel (the loop is in the generated class)
+ * compared with calling a created lambda for each element and with a hand-written loop. Other created lambdas
+ * are called in the setup, so the per-element call site is megamorphic as in applications using many expressions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayKernelBenchmark {
+    private static final String ELEMENT_CODE = "x -> x * 1.5 + 2";
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private double[] input;
+    private double[] output;
+    private DoubleArrayKernel kernel;
+    private DoubleUnaryOperator operator;
+
+    @Setup
+    public void setUp() throws LambdaCreationException {
+        LambdaFactory factory = LambdaFactory.get();
+        input = new double[size];
+        output = new double[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = i;
+        }
+        kernel = factory.createDoubleArrayKernel(ELEMENT_CODE);
+        TypeReference<DoubleUnaryOperator> operatorType = new TypeReference<DoubleUnaryOperator>() {};
+        for (String code : new String[]{"x -> x + 1", "x -> x * x", "x -> -x"}) {
+            applyToEach(factory.createLambda(code, operatorType));
+        }
+        operator = factory.createLambda(ELEMENT_CODE, operatorType);
+    }
+
+    @Benchmark
+    public double[] kernel() {
+        kernel.apply(input, output);
+        return output;
+    }
+
+    @Benchmark
+    public double[] lambdaPerElement() {
+        applyToEach(operator);
+        return output;
+    }
+
+    @Benchmark
+    public double[] handWrittenLoop() {
+        for (int i = 0; i < input.length; i++) {
+            output[i] = input[i] * 1.5 + 2;
+        }
+        return output;
+    }
+
+    private void applyToEach(DoubleUnaryOperator elementOperator) {
+        for (int i = 0; i < input.length; i++) {
+            output[i] = elementOperator.applyAsDouble(input[i]);
+        }
+    }
+}
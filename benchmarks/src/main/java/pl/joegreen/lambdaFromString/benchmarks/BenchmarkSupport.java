@@ -0,0 +1,73 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.eclipse.jdt.internal.compiler.tool.EclipseCompiler;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+import pl.joegreen.lambdaFromString.LambdaFactoryConfiguration;
+import pl.joegreen.lambdaFromString.TypeReference;
+import pl.joegreen.lambdaFromString.classFactory.ClassFactory;
+import pl.joegreen.lambdaFromString.classFactory.DefaultClassFactory;
+import pl.joegreen.lambdaFromString.classFactory.EclipseClassFactory;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.util.function.Function;
+
+/**
+ * Creates factories for benchmark parameters, so that every benchmark names compilers and class factories the same way.
+ */
+final class BenchmarkSupport {
+    static final TypeReference<Function<Integer, Integer>> INTEGER_FUNCTION = new TypeReference<Function<Integer, Integer>>() {};
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * @param compiler "jdk" for the compiler of the running JDK or "ecj" for the Eclipse compiler (works only on Java 8)
+     */
+    static JavaCompiler getCompiler(String compiler) {
+        switch (compiler) {
+            case "jdk":
+                JavaCompiler jdkCompiler = ToolProvider.getSystemJavaCompiler();
+                if (jdkCompiler == null) {
+                    throw new IllegalStateException("JDK compiler is not available, benchmarks have to be run with a JDK");
+                }
+                return jdkCompiler;
+            case "ecj":
+                if (!System.getProperty("java.specification.version").startsWith("1.")) {
+                    throw new IllegalStateException("ECJ can be used only on Java 8");
+                }
+                return new EclipseCompiler();
+            default:
+                throw new IllegalArgumentException("Unknown compiler: " + compiler);
+        }
+    }
+
+    /**
+     * @param classFactory "default" for {@link DefaultClassFactory} or "eclipse" for {@link EclipseClassFactory} (works only on Java 8)
+     */
+    static ClassFactory getClassFactory(String classFactory) {
+        switch (classFactory) {
+            case "default":
+                return new DefaultClassFactory();
+            case "eclipse":
+                return new EclipseClassFactory();
+            default:
+                throw new IllegalArgumentException("Unknown class factory: " + classFactory);
+        }
+    }
+
+    static LambdaFactoryConfiguration configuration(String compiler) {
+        return LambdaFactoryConfiguration.get().withJavaCompiler(getCompiler(compiler));
+    }
+
+    static LambdaFactory factory(String compiler) {
+        return LambdaFactory.get(configuration(compiler));
+    }
+
+    /**
+     * Lambda code that is different for every number, so it's never served from a cache.
+     */
+    static String uniqueCode(long number) {
+        return "i -> i + " + number;
+    }
+}
@@ -0,0 +1,50 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+import pl.joegreen.lambdaFromString.LambdaFactoryConfiguration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Latency of creating new lambdas with different class factories. Footprint of the loaded classes is measured
+ * by {@link FootprintMeasurement}. The eclipse class factory works only on Java 8.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassFactoryBenchmark {
+    @Param({"default", "eclipse"})
+    public String classFactory;
+
+    private LambdaFactory factory;
+    private long lambdaNumber;
+
+    @Setup
+    public void setUp() {
+        factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withClassFactory(BenchmarkSupport.getClassFactory(classFactory)));
+    }
+
+    @Benchmark
+    public Function<Integer, Integer> createNewLambda() throws LambdaCreationException {
+        return factory.createLambda(BenchmarkSupport.uniqueCode(lambdaNumber++), INTEGER_FUNCTION);
+    }
+}
@@ -0,0 +1,38 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Time to the first lambda in a fresh JVM: loading the compiler, creating the factory and compiling the lambda.
+ * Every measurement is a single call in a new fork.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class ColdLambdaCreationBenchmark {
+    @Param({"jdk", "ecj"})
+    public String compiler;
+
+    @Benchmark
+    public Function<Integer, Integer> createFirstLambda() throws LambdaCreationException {
+        return BenchmarkSupport.factory(compiler).createLambda("i -> i + 1", INTEGER_FUNCTION);
+    }
+}
@@ -0,0 +1,74 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import pl.joegreen.lambdaFromString.LambdaFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Measures how compilation throughput scales with the number of threads, from 1 to the given maximum.
+ * For each number of threads a new factory is created with a compiler pool of that size (or without the pool,
+ * to compare with a single shared compiler), every thread compiles the same number of distinct lambdas
+ * and the throughput is compared with the single thread one.
+ * <br>
+ * Usage: {@code java -cp benchmarks.jar pl.joegreen.lambdaFromString.benchmarks.CompilationScalingMeasurement [maxThreads] [lambdasPerThread] [compiler] [pool|shared]},
+ * defaults: available processors, 50 lambdas, "jdk" compiler, "pool".
+ */
+public class CompilationScalingMeasurement {
+    private static final int WARM_UP_LAMBDAS_PER_THREAD = 20;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int lambdasPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        String compiler = args.length > 2 ? args[2] : "jdk";
+        boolean pool = args.length <= 3 || args[3].equals("pool");
+
+        System.out.printf("compiler: %s, %s, lambdas per thread: %d%n", compiler,
+                pool ? "compiler pool" : "shared compiler", lambdasPerThread);
+        System.out.printf("%8s %14s %8s %11s%n", "threads", "lambdas/s", "speedup", "efficiency");
+        AtomicLong lambdaNumber = new AtomicLong();
+        double singleThreadThroughput = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            LambdaFactory factory = LambdaFactory.get(BenchmarkSupport.configuration(compiler)
+                    .withCompilationThreads(threads)
+                    .withCompilerPoolSize(pool ? threads : 0));
+            createInParallel(factory, threads, WARM_UP_LAMBDAS_PER_THREAD, lambdaNumber);
+            long startTime = System.nanoTime();
+            createInParallel(factory, threads, lambdasPerThread, lambdaNumber);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            double throughput = threads * lambdasPerThread / seconds;
+            if (threads == 1) {
+                singleThreadThroughput = throughput;
+            }
+            double speedup = throughput / singleThreadThroughput;
+            System.out.printf("%8d %14.1f %8.2f %10.0f%%%n", threads, throughput, speedup, 100 * speedup / threads);
+        }
+    }
+
+    private static void createInParallel(LambdaFactory factory, int threads, int lambdasPerThread,
+                                         AtomicLong lambdaNumber) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < lambdasPerThread; i++) {
+                        factory.createLambda(BenchmarkSupport.uniqueCode(lambdaNumber.incrementAndGet()), INTEGER_FUNCTION);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
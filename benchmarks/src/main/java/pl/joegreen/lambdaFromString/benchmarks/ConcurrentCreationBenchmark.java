@@ -0,0 +1,63 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Throughput of lambda creation when many threads share one factory, with a single shared compiler or with
+ * a compiler pool. The number of threads can be changed with the JMH -t option.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentCreationBenchmark {
+    @Param({"jdk"})
+    public String compiler;
+
+    @Param({"0", "1024"})
+    public int lambdaCacheSize;
+
+    @Param({"0", "4"})
+    public int compilerPoolSize;
+
+    private LambdaFactory factory;
+    private final AtomicLong lambdaNumber = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        factory = LambdaFactory.get(BenchmarkSupport.configuration(compiler).withLambdaCacheSize(lambdaCacheSize)
+                .withCompilerPoolSize(compilerPoolSize));
+    }
+
+    @Benchmark
+    public Function<Integer, Integer> createDistinctLambdas() throws LambdaCreationException {
+        return factory.createLambda(BenchmarkSupport.uniqueCode(lambdaNumber.incrementAndGet()), INTEGER_FUNCTION);
+    }
+
+    @Benchmark
+    public Function<Integer, Integer> createSameLambda() throws LambdaCreationException {
+        return factory.createLambda("i -> i + 1", INTEGER_FUNCTION);
+    }
+}
@@ -0,0 +1,87 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+import pl.joegreen.lambdaFromString.LambdaFactoryConfiguration;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Measures Metaspace and heap retained by each created lambda and checks how much of it is released when
+ * the lambdas become unreachable. It's not a JMH benchmark, as JMH measures time and not retained memory.
+ * The JDK 8 compiler keeps a name table of every compilation in a soft reference, so heap numbers are meaningful only
+ * with -XX:SoftRefLRUPolicyMSPerMB=0, which makes the garbage collector clear soft references eagerly.
+ * <br>
+ * Usage: {@code java -cp benchmarks.jar pl.joegreen.lambdaFromString.benchmarks.FootprintMeasurement [lambdas] [classFactory] [compiler]},
+ * defaults: 1000 lambdas, "default" class factory, "jdk" compiler.
+ */
+public class FootprintMeasurement {
+    private static final int WARM_UP_LAMBDAS = 100;
+
+    public static void main(String[] args) throws LambdaCreationException, InterruptedException {
+        int lambdas = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String classFactory = args.length > 1 ? args[1] : "default";
+        String compiler = args.length > 2 ? args[2] : "jdk";
+
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withJavaCompiler(BenchmarkSupport.getCompiler(compiler))
+                .withClassFactory(BenchmarkSupport.getClassFactory(classFactory)));
+        for (int i = 0; i < WARM_UP_LAMBDAS; i++) {
+            factory.createLambda(BenchmarkSupport.uniqueCode(-i - 1), INTEGER_FUNCTION);
+        }
+
+        Snapshot before = Snapshot.take();
+        List<Function<Integer, Integer>> createdLambdas = new ArrayList<>(lambdas);
+        for (int i = 0; i < lambdas; i++) {
+            createdLambdas.add(factory.createLambda(BenchmarkSupport.uniqueCode(i), INTEGER_FUNCTION));
+        }
+        Snapshot retained = Snapshot.take();
+        createdLambdas.clear();
+        Snapshot released = Snapshot.take();
+
+        System.out.printf("class factory: %s, compiler: %s, lambdas: %d%n", classFactory, compiler, lambdas);
+        System.out.printf("Metaspace per lambda: %d bytes%n", (retained.metaspaceUsed - before.metaspaceUsed) / lambdas);
+        System.out.printf("heap per lambda: %d bytes%n", (retained.heapUsed - before.heapUsed) / lambdas);
+        System.out.printf("loaded classes per lambda: %.2f%n", (retained.loadedClasses - before.loadedClasses) / (double) lambdas);
+        System.out.printf("Metaspace released after lambdas became unreachable: %d bytes%n",
+                retained.metaspaceUsed - released.metaspaceUsed);
+        System.out.printf("heap released after lambdas became unreachable: %d bytes%n",
+                retained.heapUsed - released.heapUsed);
+        System.out.printf("classes unloaded after lambdas became unreachable: %d%n",
+                released.unloadedClasses - retained.unloadedClasses);
+    }
+
+    private static class Snapshot {
+        private final long metaspaceUsed;
+        private final long heapUsed;
+        private final int loadedClasses;
+        private final long unloadedClasses;
+
+        private Snapshot(long metaspaceUsed, long heapUsed, int loadedClasses, long unloadedClasses) {
+            this.metaspaceUsed = metaspaceUsed;
+            this.heapUsed = heapUsed;
+            this.loadedClasses = loadedClasses;
+            this.unloadedClasses = unloadedClasses;
+        }
+
+        static Snapshot take() throws InterruptedException {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            long metaspaceUsed = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getName().equals("Metaspace"))
+                    .mapToLong(pool -> pool.getUsage().getUsed())
+                    .sum();
+            long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+            return new Snapshot(metaspaceUsed, heapUsed, classLoading.getLoadedClassCount(), classLoading.getUnloadedClassCount());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+import pl.joegreen.lambdaFromString.LambdaFactoryConfiguration;
+import pl.joegreen.lambdaFromString.TypeReference;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Invocation cost of lambdas created from strings compared with the same lambdas written in Java code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvocationBenchmark {
+    private static final String FUNCTION_CODE = "i -> i + 1";
+    private static final String OPERATOR_CODE = "(a, b) -> a * b + 1";
+
+    private Function<Integer, Integer> generatedFunction;
+    private IntBinaryOperator generatedOperator;
+    private Function<Integer, Integer> handWrittenFunction;
+    private IntBinaryOperator handWrittenOperator;
+
+    private Integer boxedArgument = 42;
+    private int firstArgument = 42;
+    private int secondArgument = 7;
+
+    @Setup
+    public void setUp() throws LambdaCreationException {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get());
+        generatedFunction = factory.createLambda(FUNCTION_CODE, INTEGER_FUNCTION);
+        generatedOperator = factory.createLambda(OPERATOR_CODE, new TypeReference<IntBinaryOperator>() {});
+        handWrittenFunction = i -> i + 1;
+        handWrittenOperator = (a, b) -> a * b + 1;
+    }
+
+    @Benchmark
+    public Integer generatedFunction() {
+        return generatedFunction.apply(boxedArgument);
+    }
+
+    @Benchmark
+    public Integer handWrittenFunction() {
+        return handWrittenFunction.apply(boxedArgument);
+    }
+
+    @Benchmark
+    public int generatedOperator() {
+        return generatedOperator.applyAsInt(firstArgument, secondArgument);
+    }
+
+    @Benchmark
+    public int handWrittenOperator() {
+        return handWrittenOperator.applyAsInt(firstArgument, secondArgument);
+    }
+}
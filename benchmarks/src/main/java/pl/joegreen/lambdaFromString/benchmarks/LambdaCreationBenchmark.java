@@ -0,0 +1,64 @@
+package pl.joegreen.lambdaFromString.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.joegreen.lambdaFromString.LambdaCreationException;
+import pl.joegreen.lambdaFromString.LambdaFactory;
+import pl.joegreen.lambdaFromString.classFactory.CompilationDetails;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static pl.joegreen.lambdaFromString.benchmarks.BenchmarkSupport.INTEGER_FUNCTION;
+
+/**
+ * Latency of creating lambdas with a warmed up compiler: compiling a lambda that was not seen before,
+ * only validating it and getting a lambda from the cache of compiled lambdas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LambdaCreationBenchmark {
+    private static final String CACHED_CODE = "i -> i + 1";
+
+    @Param({"jdk", "ecj"})
+    public String compiler;
+
+    private LambdaFactory factory;
+    private LambdaFactory cachingFactory;
+    private long lambdaNumber;
+
+    @Setup
+    public void setUp() throws LambdaCreationException {
+        factory = BenchmarkSupport.factory(compiler);
+        cachingFactory = LambdaFactory.get(BenchmarkSupport.configuration(compiler).withLambdaCacheSize(16));
+        cachingFactory.createLambda(CACHED_CODE, INTEGER_FUNCTION);
+    }
+
+    @Benchmark
+    public Function<Integer, Integer> compileNewLambda() throws LambdaCreationException {
+        return factory.createLambda(BenchmarkSupport.uniqueCode(lambdaNumber++), INTEGER_FUNCTION);
+    }
+
+    @Benchmark
+    public CompilationDetails validateNewLambda() throws LambdaCreationException {
+        return factory.validate(BenchmarkSupport.uniqueCode(lambdaNumber++), INTEGER_FUNCTION);
+    }
+
+    @Benchmark
+    public Function<Integer, Integer> getCachedLambda() throws LambdaCreationException {
+        return cachingFactory.createLambda(CACHED_CODE, INTEGER_FUNCTION);
+    }
+}
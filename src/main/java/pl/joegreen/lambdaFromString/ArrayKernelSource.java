@@ -0,0 +1,31 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Renders an element expression (a lambda with an expression body, e.g. {@code x -> x * 2 + 1}) into the code
+ * of an array kernel lambda, which contains the whole loop. The expression is inlined into the loop body, so the JIT
+ * compiles it together with the loop (and can unroll and vectorize it) instead of calling another lambda for each element.
+ */
+final class ArrayKernelSource {
+    private ArrayKernelSource() {
+    }
+
+    /**
+     * @param elementCode lambda computing an output element from an input element
+     * @param elementType primitive type of the array elements
+     * @throws IllegalArgumentException if the code is not a lambda with one parameter and an expression body
+     */
+    static String render(String elementCode, String elementType) {
+        ExpressionLambdaCode element = ExpressionLambdaCode.parse(elementCode, 1);
+        // names of the kernel parameters start with $, so they don't collide with names used in element expressions
+        return "($input, $inputOffset, $output, $outputOffset, $length) -> {\n" +
+                "    if ($length < 0 || $inputOffset < 0 || $inputOffset > $input.length - $length\n" +
+                "            || $outputOffset < 0 || $outputOffset > $output.length - $length) {\n" +
+                "        throw new ArrayIndexOutOfBoundsException(\"Range exceeds the array\");\n" +
+                "    }\n" +
+                "    for (int $i = 0; $i < $length; $i++) {\n" +
+                "        " + elementType + " " + element.getParameterNames().get(0) + " = $input[$inputOffset + $i];\n" +
+                "        $output[$outputOffset + $i] = " + element.getParenthesizedBody() + ";\n" +
+                "    }\n" +
+                "}";
+    }
+}
@@ -0,0 +1,267 @@
+package pl.joegreen.lambdaFromString;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the compilation class path reduced to the entries containing classes that lambdas of a given type can refer to:
+ * imported classes and packages, classes used in the lambda type, their supertypes and types used in the methods
+ * of the functional interface. JDK classes are always available to the compiler, so they don't need any entries.
+ * <br>
+ * Reduced class paths are computed once for each lambda type. If a class cannot be located (e.g. it doesn't come
+ * from a file), the full class path is used. Lambdas can still refer to other classes by their qualified names,
+ * such compilations fail and then the full class path should be used for that lambda type (see {@link #useFullClassPath}).
+ */
+class CompilationClassPathPruner {
+    private final String fullClassPath;
+    private final Map<Path, String> classPathEntriesByPaths = new LinkedHashMap<>();
+    private final ClassLoader classLoader;
+    private final Optional<Set<Path>> importedEntries;
+    private final Map<String, String> classPathsByLambdaTypes = new ConcurrentHashMap<>();
+
+    CompilationClassPathPruner(String fullClassPath, List<String> imports, List<String> staticImports, ClassLoader classLoader) {
+        this.fullClassPath = fullClassPath;
+        this.classLoader = classLoader;
+        for (String classPathEntry : fullClassPath.split(File.pathSeparator)) {
+            if (!classPathEntry.isEmpty()) {
+                classPathEntriesByPaths.putIfAbsent(normalize(Paths.get(classPathEntry)), classPathEntry);
+            }
+        }
+        Optional<Set<Path>> importedEntries;
+        try {
+            importedEntries = findImportedEntries(imports, staticImports);
+        } catch (RuntimeException | LinkageError e) {
+            importedEntries = Optional.empty();
+        }
+        this.importedEntries = importedEntries;
+    }
+
+    /**
+     * @return reduced class path for lambdas of the given type or the full class path if it cannot be reduced
+     */
+    String getClassPath(TypeReference<?> typeReference) {
+        return classPathsByLambdaTypes.computeIfAbsent(typeReference.toString(), typeName -> {
+            try {
+                return prune(typeReference.getType());
+            } catch (RuntimeException | LinkageError e) {
+                // e.g. a class used in the lambda type refers to a class that is not available
+                return fullClassPath;
+            }
+        });
+    }
+
+    /**
+     * Makes all the following compilations of lambdas of the given type use the full class path.
+     */
+    void useFullClassPath(TypeReference<?> typeReference) {
+        classPathsByLambdaTypes.put(typeReference.toString(), fullClassPath);
+    }
+
+    private String prune(Type lambdaType) {
+        if (!importedEntries.isPresent()) {
+            return fullClassPath;
+        }
+        Set<Class<?>> classes = new HashSet<>();
+        if (!collectClasses(lambdaType, classes)) {
+            return fullClassPath;
+        }
+        Class<?> lambdaClass = (Class<?>) (lambdaType instanceof ParameterizedType
+                ? ((ParameterizedType) lambdaType).getRawType() : lambdaType);
+        for (Method method : lambdaClass.getMethods()) {
+            collectClasses(method.getGenericReturnType(), classes);
+            Arrays.stream(method.getGenericParameterTypes()).forEach(type -> collectClasses(type, classes));
+            Arrays.stream(method.getGenericExceptionTypes()).forEach(type -> collectClasses(type, classes));
+        }
+        Set<Path> entries = new HashSet<>(importedEntries.get());
+        for (Class<?> usedClass : classes) {
+            if (isJdkClass(usedClass)) {
+                continue;
+            }
+            Optional<Path> location = getLocation(usedClass);
+            if (!location.isPresent()) {
+                return fullClassPath;
+            }
+            entries.add(location.get());
+        }
+        return classPathEntriesByPaths.entrySet().stream()
+                .filter(entry -> entries.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /**
+     * Adds all the classes used in the type and their supertypes to the set.
+     *
+     * @return false if the type contains something else than classes and generic types built from them
+     */
+    private static boolean collectClasses(Type type, Set<Class<?>> classes) {
+        if (type instanceof Class) {
+            Class<?> typeClass = (Class<?>) type;
+            while (typeClass.isArray()) {
+                typeClass = typeClass.getComponentType();
+            }
+            if (typeClass.isPrimitive() || !classes.add(typeClass)) {
+                return true;
+            }
+            boolean known = typeClass.getGenericSuperclass() == null || collectClasses(typeClass.getGenericSuperclass(), classes);
+            for (Type interfaceType : typeClass.getGenericInterfaces()) {
+                known &= collectClasses(interfaceType, classes);
+            }
+            return known && (typeClass.getEnclosingClass() == null || collectClasses(typeClass.getEnclosingClass(), classes));
+        } else if (type instanceof ParameterizedType) {
+            boolean known = collectClasses(((ParameterizedType) type).getRawType(), classes);
+            for (Type typeArgument : ((ParameterizedType) type).getActualTypeArguments()) {
+                known &= collectClasses(typeArgument, classes);
+            }
+            return known;
+        } else if (type instanceof GenericArrayType) {
+            return collectClasses(((GenericArrayType) type).getGenericComponentType(), classes);
+        } else if (type instanceof WildcardType) {
+            boolean known = true;
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                known &= collectClasses(bound, classes);
+            }
+            for (Type bound : ((WildcardType) type).getLowerBounds()) {
+                known &= collectClasses(bound, classes);
+            }
+            return known;
+        } else if (type instanceof TypeVariable) {
+            // bounds of type variables are classes used by the declaring class, so they are already collected
+            return true;
+        }
+        // e.g. types of DynamicTypeReference, which are known only by their names
+        return false;
+    }
+
+    private Optional<Set<Path>> findImportedEntries(List<String> imports, List<String> staticImports) {
+        Set<Path> entries = new HashSet<>();
+        List<String> importedClasses = new ArrayList<>();
+        for (String imported : imports) {
+            if (imported.endsWith(".*")) {
+                String packageName = imported.substring(0, imported.length() - 2);
+                Optional<Class<?>> importedClass = loadClass(packageName);
+                if (importedClass.isPresent()) {
+                    // members of a class
+                    importedClasses.add(packageName);
+                } else if (!packageName.startsWith("java.") && !packageName.startsWith("javax.")) {
+                    Optional<Set<Path>> packageEntries = findPackageEntries(packageName);
+                    if (!packageEntries.isPresent()) {
+                        return Optional.empty();
+                    }
+                    entries.addAll(packageEntries.get());
+                }
+            } else {
+                importedClasses.add(imported);
+            }
+        }
+        for (String staticImport : staticImports) {
+            importedClasses.add(staticImport.substring(0, Math.max(0, staticImport.lastIndexOf('.'))));
+        }
+        Set<Class<?>> classes = new HashSet<>();
+        for (String importedClass : importedClasses) {
+            Optional<Class<?>> loadedClass = loadClass(importedClass);
+            if (!loadedClass.isPresent() || !collectClasses(loadedClass.get(), classes)) {
+                return Optional.empty();
+            }
+        }
+        for (Class<?> importedClass : classes) {
+            if (isJdkClass(importedClass)) {
+                continue;
+            }
+            Optional<Path> location = getLocation(importedClass);
+            if (!location.isPresent()) {
+                return Optional.empty();
+            }
+            entries.add(location.get());
+        }
+        return Optional.of(entries);
+    }
+
+    private Optional<Set<Path>> findPackageEntries(String packageName) {
+        Set<Path> entries = new HashSet<>();
+        String packagePath = packageName.replace('.', '/') + "/";
+        try {
+            Enumeration<URL> packageUrls = classLoader.getResources(packagePath);
+            for (URL packageUrl : Collections.list(packageUrls)) {
+                if (packageUrl.getProtocol().equals("jar")) {
+                    URL jarUrl = ((JarURLConnection) packageUrl.openConnection()).getJarFileURL();
+                    entries.add(normalize(Paths.get(jarUrl.toURI())));
+                } else if (packageUrl.getProtocol().equals("file")) {
+                    Path packageDirectory = Paths.get(packageUrl.toURI());
+                    Path entry = packageDirectory;
+                    for (int i = 0; i < packageName.split("\\.").length; i++) {
+                        entry = entry.getParent();
+                    }
+                    entries.add(normalize(entry));
+                } else {
+                    return Optional.empty();
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return Optional.empty();
+        }
+        return Optional.of(entries);
+    }
+
+    private Optional<Class<?>> loadClass(String name) {
+        // nested classes are imported with dots, so $ separators are tried from the innermost class
+        String binaryName = name;
+        while (true) {
+            try {
+                return Optional.of(Class.forName(binaryName, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                int lastDot = binaryName.lastIndexOf('.');
+                if (lastDot < 0) {
+                    return Optional.empty();
+                }
+                binaryName = binaryName.substring(0, lastDot) + "$" + binaryName.substring(lastDot + 1);
+            }
+        }
+    }
+
+    private static boolean isJdkClass(Class<?> usedClass) {
+        ClassLoader usedClassLoader = usedClass.getClassLoader();
+        return usedClassLoader == null || usedClassLoader == ClassLoader.getSystemClassLoader().getParent();
+    }
+
+    private static Optional<Path> getLocation(Class<?> usedClass) {
+        try {
+            CodeSource codeSource = usedClass.getProtectionDomain().getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null
+                    || !codeSource.getLocation().getProtocol().equals("file")) {
+                return Optional.empty();
+            }
+            return Optional.of(normalize(Paths.get(codeSource.getLocation().toURI())));
+        } catch (URISyntaxException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
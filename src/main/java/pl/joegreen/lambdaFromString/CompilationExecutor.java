@@ -0,0 +1,126 @@
+package pl.joegreen.lambdaFromString;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs lambda creations in the background with a bounded number of threads and a bounded queue.
+ * When the queue is full, new creations fail immediately instead of piling up.
+ * Threads are created lazily, they are virtual threads when the JVM supports them (Java 21+)
+ * and daemon threads otherwise, and they stop when they are idle for a while or when the executor is shut down.
+ */
+class CompilationExecutor {
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final int threads;
+    private final int queueSize;
+    private volatile ThreadPoolExecutor executor;
+    private boolean shutdown;
+
+    CompilationExecutor(int threads, int queueSize) {
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Schedules the lambda creation. Cancelling the returned future removes the creation from the queue
+     * or interrupts the thread running it.
+     */
+    <T> CompletableFuture<T> submit(LambdaCreation<T> lambdaCreation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<Void>(() -> {
+            try {
+                result.complete(lambdaCreation.create());
+            } catch (LambdaCreationException e) {
+                result.completeExceptionally(e);
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(new LambdaCreationException(e));
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // tasks removed from the queue by shutdown are cancelled without running
+                if (isCancelled()) {
+                    result.completeExceptionally(new LambdaCreationException(new CancellationException()));
+                }
+            }
+        };
+        try {
+            ThreadPoolExecutor threadPoolExecutor = getExecutor();
+            result.whenComplete((lambda, throwable) -> {
+                if (result.isCancelled()) {
+                    task.cancel(true);
+                    threadPoolExecutor.remove(task);
+                }
+            });
+            threadPoolExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new LambdaCreationException(e));
+        }
+        return result;
+    }
+
+    /**
+     * Stops the threads of the executor. Waiting creations are cancelled, running ones are interrupted
+     * and creations submitted later fail immediately.
+     */
+    void shutdown() {
+        ThreadPoolExecutor currentExecutor;
+        synchronized (this) {
+            shutdown = true;
+            currentExecutor = executor;
+        }
+        if (currentExecutor != null) {
+            currentExecutor.shutdownNow().forEach(task -> ((FutureTask<?>) task).cancel(false));
+        }
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor currentExecutor = executor;
+        if (currentExecutor == null) {
+            synchronized (this) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Lambda factory is closed");
+                }
+                currentExecutor = executor;
+                if (currentExecutor == null) {
+                    currentExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueSize), createThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+                    currentExecutor.allowCoreThreadTimeOut(true);
+                    executor = currentExecutor;
+                }
+            }
+        }
+        return currentExecutor;
+    }
+
+    private static ThreadFactory createThreadFactory() {
+        try {
+            // Thread.ofVirtual().name("lambda-from-string-", 0).factory() called reflectively as the library targets Java 8
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "lambda-from-string-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // virtual threads are not available (Java < 21 or preview features disabled)
+            AtomicLong threadCounter = new AtomicLong();
+            return runnable -> {
+                Thread thread = new Thread(runnable, "lambda-from-string-" + threadCounter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    @FunctionalInterface
+    interface LambdaCreation<T> {
+        T create() throws LambdaCreationException;
+    }
+}
@@ -19,8 +19,18 @@ public class DefaultHelperClassSourceProvider implements HelperClassSourceProvid
 
     @Override
     public String getHelperClassSource(String lambdaType, String lambdaCode, List<String> imports, List<String> staticImports) {
+        return getHelperClassSource(getHelperClassName(), lambdaType, lambdaCode, imports, staticImports);
+    }
+
+    /**
+     * Generates the helper class source with a custom class name instead of {@link #getHelperClassName()}.
+     * It's used when many helper classes are compiled together and need distinct names
+     * (see {@link LambdaFactory#createLambdas(java.util.Map, TypeReference)}).
+     */
+    public String getHelperClassSource(String helperClassName, String lambdaType, String lambdaCode,
+                                       List<String> imports, List<String> staticImports) {
         String importStatements = generateImportStatements(imports, staticImports);
-        return String.format(template, importStatements, lambdaType, lambdaCode);
+        return String.format(template, importStatements, helperClassName, lambdaType, lambdaCode);
     }
 
     @Override
@@ -41,7 +51,7 @@ public class DefaultHelperClassSourceProvider implements HelperClassSourceProvid
 
 
     //uses the "stupid scanner trick" https://weblogs.java.net/blog/2004/10/24/stupid-scanner-tricks
-    private static String getClasspathResourceAsString(String resourcePath) {
+    static String getClasspathResourceAsString(String resourcePath) {
         try (InputStream is = DefaultHelperClassSourceProvider.class.getClassLoader().getResourceAsStream(resourcePath);
              java.util.Scanner s = new java.util.Scanner(is)) {
             return s.useDelimiter("\\A").hasNext() ? s.next() : "";
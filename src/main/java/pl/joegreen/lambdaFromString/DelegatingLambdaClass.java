@@ -0,0 +1,117 @@
+package pl.joegreen.lambdaFromString;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Class implementing a functional interface by calling the same methods on a delegate held in a volatile field,
+ * which can be replaced while the instances are used. Its calls are ordinary interface calls, so the JIT compiler can
+ * inline the delegate like any other lambda. <br>
+ * The class is compiled like helper classes, from the delegatingLambdaTemplate.txt template, once for each interface
+ * (see {@link LambdaFactory}). It implements the raw interface, each abstract method of the interface is implemented
+ * with its erased types.
+ */
+final class DelegatingLambdaClass {
+    static final String CLASS_NAME = "LambdaFromStringDelegatingLambda";
+    private static final String DELEGATE_FIELD = "delegate";
+    private static final String TEMPLATE =
+            DefaultHelperClassSourceProvider.getClasspathResourceAsString("delegatingLambdaTemplate.txt");
+
+    private final Constructor<?> constructor;
+    private final Field delegateField;
+
+    /**
+     * @param compiledClass class compiled from the {@link #getSource(Class) source} for the interface
+     */
+    DelegatingLambdaClass(Class<?> compiledClass, Class<?> interfaceType) throws ReflectiveOperationException {
+        this.constructor = compiledClass.getConstructor(interfaceType, String.class);
+        this.delegateField = compiledClass.getField(DELEGATE_FIELD);
+    }
+
+    /**
+     * @return source of the class for the interface or empty optional if the class cannot be compiled for it
+     * (e.g. the interface is not public)
+     */
+    static Optional<String> getSource(Class<?> interfaceType) {
+        if (!interfaceType.isInterface() || !Modifier.isPublic(interfaceType.getModifiers())
+                || interfaceType.getCanonicalName() == null) {
+            return Optional.empty();
+        }
+        StringBuilder methods = new StringBuilder();
+        for (Method method : getAbstractMethods(interfaceType)) {
+            methods.append(generateMethod(method));
+        }
+        return Optional.of(String.format(TEMPLATE, CLASS_NAME, interfaceType.getCanonicalName(), methods));
+    }
+
+    Object newInstance(Object delegate, String description) {
+        try {
+            return constructor.newInstance(delegate, description);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Delegating lambda could not be created", e);
+        }
+    }
+
+    void setDelegate(Object instance, Object delegate) {
+        try {
+            delegateField.set(instance, delegate);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Delegate of the lambda could not be changed", e);
+        }
+    }
+
+    /**
+     * Abstract methods of the interface with distinct names and parameter types, without methods of {@link Object}
+     * redeclared by the interface (e.g. {@link java.util.Comparator#equals(Object)}). Of methods differing only
+     * in return types (covariant overrides), the one with the most specific return type is implemented,
+     * the compiler generates bridges for the others.
+     */
+    private static List<Method> getAbstractMethods(Class<?> interfaceType) {
+        Map<List<Object>, Method> abstractMethods = new LinkedHashMap<>();
+        for (Method method : interfaceType.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method)) {
+                List<Object> nameAndParameters = new ArrayList<>(Arrays.asList(method.getParameterTypes()));
+                nameAndParameters.add(method.getName());
+                abstractMethods.merge(nameAndParameters, method, (first, second) ->
+                        first.getReturnType().isAssignableFrom(second.getReturnType()) ? second : first);
+            }
+        }
+        return new ArrayList<>(abstractMethods.values());
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static String generateMethod(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        List<String> parameters = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameters.add(parameterTypes[i].getCanonicalName() + " a" + i);
+            arguments.add("a" + i);
+        }
+        String exceptions = method.getExceptionTypes().length == 0 ? "" : " throws " + Arrays.stream(method.getExceptionTypes())
+                .map(Class::getCanonicalName).collect(Collectors.joining(", "));
+        String call = "delegate." + method.getName() + "(" + String.join(", ", arguments) + ");";
+        return "\n    @Override\n"
+                + "    public " + method.getReturnType().getCanonicalName() + " " + method.getName()
+                + "(" + String.join(", ", parameters) + ")" + exceptions + " {\n"
+                + "        " + (method.getReturnType() == void.class ? "" : "return ") + call + "\n"
+                + "    }\n";
+    }
+}
@@ -0,0 +1,23 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Loop applying an element expression to a range of a double array, created with
+ * {@link LambdaFactory#createDoubleArrayKernel(String)}.
+ */
+@FunctionalInterface
+public interface DoubleArrayKernel {
+    /**
+     * Writes results of the element expression for {@code input[inputOffset]}..{@code input[inputOffset + length - 1]}
+     * to {@code output[outputOffset]}..{@code output[outputOffset + length - 1]}. The input and output can be the same array.
+     *
+     * @throws ArrayIndexOutOfBoundsException if a range exceeds its array, nothing is written then
+     */
+    void apply(double[] input, int inputOffset, double[] output, int outputOffset, int length);
+
+    /**
+     * Writes results of the element expression for all the input elements to the output array at the same indexes.
+     */
+    default void apply(double[] input, double[] output) {
+        apply(input, 0, output, 0, input.length);
+    }
+}
@@ -0,0 +1,65 @@
+package pl.joegreen.lambdaFromString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parameter names and the body of a lambda with an expression body (e.g. {@code (a, b) -> a + b}), used to inline
+ * the expression into generated code. Types of explicitly typed parameters are ignored, the generated code declares
+ * the parameters with its own types.
+ */
+final class ExpressionLambdaCode {
+    private static final Pattern LAMBDA = Pattern.compile(
+            "\\s*(?:\\(([^)]*)\\)|([A-Za-z_$][\\w$]*))\\s*->(.*)", Pattern.DOTALL);
+    private static final Pattern PARAMETER = Pattern.compile("\\s*(?:final\\s+)?(?:[\\w$.\\[\\]]+\\s+)?([A-Za-z_$][\\w$]*)\\s*");
+
+    private final List<String> parameterNames;
+    private final String body;
+
+    private ExpressionLambdaCode(List<String> parameterNames, String body) {
+        this.parameterNames = parameterNames;
+        this.body = body;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the code is not a lambda with the given number of parameters and an expression body
+     */
+    static ExpressionLambdaCode parse(String code, int parameterCount) {
+        Matcher matcher = LAMBDA.matcher(code);
+        String body = matcher.matches() ? matcher.group(3).trim() : "";
+        if (body.isEmpty() || body.startsWith("{")) {
+            throw new IllegalArgumentException("Code has to be a lambda with an expression body: " + code);
+        }
+        List<String> parameterNames = new ArrayList<>();
+        if (matcher.group(2) != null) {
+            parameterNames.add(matcher.group(2));
+        } else if (!matcher.group(1).trim().isEmpty()) {
+            for (String parameter : matcher.group(1).split(",")) {
+                Matcher parameterMatcher = PARAMETER.matcher(parameter);
+                if (!parameterMatcher.matches()) {
+                    throw new IllegalArgumentException("Unsupported lambda parameter '" + parameter.trim() + "' in: " + code);
+                }
+                parameterNames.add(parameterMatcher.group(1));
+            }
+        }
+        if (parameterNames.size() != parameterCount) {
+            throw new IllegalArgumentException("Lambda has to have " + parameterCount + " parameter(s): " + code);
+        }
+        return new ExpressionLambdaCode(Collections.unmodifiableList(parameterNames), matcher.group(3));
+    }
+
+    List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * Returns the expression in parentheses, so that it can be used as an operand of any operator. The closing
+     * parenthesis is in a new line, so that a line comment at the end of the expression doesn't hide it.
+     */
+    String getParenthesizedBody() {
+        return "(" + body + "\n)";
+    }
+}
@@ -0,0 +1,19 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Thrown when a lambda is rejected because its body is too large to be inlined by the JIT compiler
+ * (see {@link InliningPolicy#REJECT}).
+ */
+public class InliningLimitExceededException extends RuntimeException {
+    private final LambdaBytecodeReport report;
+
+    public InliningLimitExceededException(LambdaBytecodeReport report) {
+        super("Lambda body of " + report.getLargestLambdaBodySize() + " bytes exceeds FreqInlineSize of "
+                + report.getFreqInlineSize() + " bytes and won't be inlined: " + report);
+        this.report = report;
+    }
+
+    public LambdaBytecodeReport getReport() {
+        return report;
+    }
+}
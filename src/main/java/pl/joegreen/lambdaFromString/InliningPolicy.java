@@ -0,0 +1,24 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Decides what happens when the body of a compiled lambda is too large to be inlined by the JIT compiler
+ * (see {@link LambdaBytecodeReport#exceedsFreqInlineSize()}).
+ *
+ * @see LambdaFactoryConfiguration#withInliningPolicy(InliningPolicy)
+ */
+public enum InliningPolicy {
+    /**
+     * Compiled classes are not analyzed.
+     */
+    IGNORE,
+    /**
+     * Compiled classes are analyzed, the report is a part of {@link LambdaCreationMetrics} and lambdas which
+     * cannot be inlined are reported to {@link LambdaFactoryListener#inliningLimitExceeded(String, LambdaBytecodeReport)}.
+     */
+    WARN,
+    /**
+     * Compiled classes are analyzed and lambdas which cannot be inlined are not created, the factory throws
+     * LambdaCreationException caused by {@link InliningLimitExceededException}.
+     */
+    REJECT
+}
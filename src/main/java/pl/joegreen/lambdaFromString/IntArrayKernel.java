@@ -0,0 +1,23 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Loop applying an element expression to a range of an int array, created with
+ * {@link LambdaFactory#createIntArrayKernel(String)}.
+ */
+@FunctionalInterface
+public interface IntArrayKernel {
+    /**
+     * Writes results of the element expression for {@code input[inputOffset]}..{@code input[inputOffset + length - 1]}
+     * to {@code output[outputOffset]}..{@code output[outputOffset + length - 1]}. The input and output can be the same array.
+     *
+     * @throws ArrayIndexOutOfBoundsException if a range exceeds its array, nothing is written then
+     */
+    void apply(int[] input, int inputOffset, int[] output, int outputOffset, int length);
+
+    /**
+     * Writes results of the element expression for all the input elements to the output array at the same indexes.
+     */
+    default void apply(int[] input, int[] output) {
+        apply(input, 0, output, 0, input.length);
+    }
+}
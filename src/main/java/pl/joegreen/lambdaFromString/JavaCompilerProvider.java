@@ -17,14 +17,11 @@ class JavaCompilerProvider {
      */
     static Optional<JavaCompiler> findDefaultJavaCompiler() {
         Optional<JavaCompiler> jdkJavaCompiler = getJdkJavaCompiler();
-        Optional<JavaCompiler> eclipseJavaCompiler = getEclipseJavaCompiler();
         if (jdkJavaCompiler.isPresent()) {
             return jdkJavaCompiler;
-        } else if (eclipseJavaCompiler.isPresent()) {
-            return eclipseJavaCompiler;
-        } else {
-            return Optional.empty();
         }
+        // classes of the Eclipse compiler are loaded only when it's needed
+        return getEclipseJavaCompiler();
     }
 
     static Optional<JavaCompiler> getEclipseJavaCompiler() {
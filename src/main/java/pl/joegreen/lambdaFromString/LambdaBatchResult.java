@@ -0,0 +1,40 @@
+package pl.joegreen.lambdaFromString;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of {@link LambdaFactory#createLambdas(Map, TypeReference)}. Every key of the input map is present either
+ * in the created lambdas or in the failures, never in both.
+ *
+ * @param <K> type of the keys identifying lambda codes
+ * @param <T> type of the lambdas
+ */
+public class LambdaBatchResult<K, T> {
+    private final Map<K, T> lambdas;
+    private final Map<K, LambdaCreationException> failures;
+
+    LambdaBatchResult(Map<K, T> lambdas, Map<K, LambdaCreationException> failures) {
+        this.lambdas = lambdas;
+        this.failures = failures;
+    }
+
+    /**
+     * Lambdas that were created successfully, by the keys of their codes.
+     */
+    public Map<K, T> getLambdas() {
+        return Collections.unmodifiableMap(lambdas);
+    }
+
+    /**
+     * Exceptions describing why lambdas could not be created, by the keys of their codes. If the exception was caused
+     * by compilation failure it contains a CompilationDetails instance with compiler messages concerning only that lambda.
+     */
+    public Map<K, LambdaCreationException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
@@ -0,0 +1,213 @@
+package pl.joegreen.lambdaFromString;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Analysis of the classes compiled for a lambda, showing whether the JIT compiler can inline the lambda body
+ * into its callers. The body of a lambda is compiled into a synthetic method (e.g. {@code lambda$getLambda$0})
+ * and HotSpot inlines methods only if their bytecode is not longer than {@code MaxInlineSize} (35 bytes by default)
+ * or, for methods called frequently, {@code FreqInlineSize} (325 bytes by default). Lambdas with larger bodies
+ * are called without inlining in hot loops, which is often several times slower. <br>
+ * Thresholds are read from the running JVM, the defaults are used if it's not HotSpot. Lambdas which are method
+ * references (e.g. {@code Integer::sum}) don't have synthetic bodies.
+ *
+ * @see LambdaFactory#getBytecodeReport(String, TypeReference)
+ * @see LambdaFactoryConfiguration#withInliningPolicy(InliningPolicy)
+ */
+public final class LambdaBytecodeReport {
+    private static final String LAMBDA_BODY_PREFIX = "lambda$";
+    private static final int DEFAULT_MAX_INLINE_SIZE = 35;
+    private static final int DEFAULT_FREQ_INLINE_SIZE = 325;
+
+    private final Map<String, Integer> lambdaBodySizes;
+    private final int constantPoolSize;
+    private final int maxInlineSize;
+    private final int freqInlineSize;
+
+    private LambdaBytecodeReport(Map<String, Integer> lambdaBodySizes, int constantPoolSize, int maxInlineSize,
+                                 int freqInlineSize) {
+        this.lambdaBodySizes = Collections.unmodifiableMap(lambdaBodySizes);
+        this.constantPoolSize = constantPoolSize;
+        this.maxInlineSize = maxInlineSize;
+        this.freqInlineSize = freqInlineSize;
+    }
+
+    /**
+     * @param classesBytes bytecode of the classes compiled for a lambda by their binary names
+     * @throws IllegalArgumentException if the bytes are not a correct class file
+     */
+    static LambdaBytecodeReport analyze(Map<String, byte[]> classesBytes) {
+        Map<String, Integer> lambdaBodySizes = new TreeMap<>();
+        int constantPoolSize = 0;
+        for (Map.Entry<String, byte[]> classBytes : classesBytes.entrySet()) {
+            try {
+                constantPoolSize += readClass(classBytes.getKey(), classBytes.getValue(), lambdaBodySizes);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed class file of " + classBytes.getKey(), e);
+            }
+        }
+        return new LambdaBytecodeReport(lambdaBodySizes, constantPoolSize, Thresholds.MAX_INLINE_SIZE,
+                Thresholds.FREQ_INLINE_SIZE);
+    }
+
+    /**
+     * Reads the constant pool and the code lengths of lambda bodies from the class file.
+     *
+     * @return number of constant pool entries
+     */
+    private static int readClass(String className, byte[] bytes, Map<String, Integer> lambdaBodySizes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (input.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        input.skipBytes(4); // minor and major version
+        int constantPoolCount = input.readUnsignedShort();
+        Map<Integer, String> utf8Constants = new HashMap<>();
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8Constants.put(i, input.readUTF());
+                    break;
+                case 5: // Long
+                case 6: // Double, both take two entries
+                    input.skipBytes(8);
+                    i++;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    input.skipBytes(4);
+                    break;
+                case 15: // MethodHandle
+                    input.skipBytes(3);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    input.skipBytes(2);
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        input.skipBytes(6); // access flags, this class, super class
+        input.skipBytes(2 * input.readUnsignedShort()); // interfaces
+        int fieldCount = input.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            input.skipBytes(6); // access flags, name, descriptor
+            skipAttributes(input);
+        }
+        int methodCount = input.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            input.skipBytes(2); // access flags
+            String methodName = utf8Constants.get(input.readUnsignedShort());
+            input.skipBytes(2); // descriptor
+            int attributeCount = input.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = utf8Constants.get(input.readUnsignedShort());
+                int attributeLength = input.readInt();
+                if ("Code".equals(attributeName) && methodName != null && methodName.startsWith(LAMBDA_BODY_PREFIX)) {
+                    input.skipBytes(4); // max stack, max locals
+                    lambdaBodySizes.put(className + "." + methodName, input.readInt());
+                    input.skipBytes(attributeLength - 8);
+                } else {
+                    input.skipBytes(attributeLength);
+                }
+            }
+        }
+        return constantPoolCount - 1;
+    }
+
+    private static void skipAttributes(DataInputStream input) throws IOException {
+        int attributeCount = input.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            input.skipBytes(2);
+            input.skipBytes(input.readInt());
+        }
+    }
+
+    /**
+     * Bytecode sizes of the synthetic lambda body methods (more than one if the code contains nested lambdas)
+     * by their names qualified with the names of their classes.
+     */
+    public Map<String, Integer> getLambdaBodySizes() {
+        return lambdaBodySizes;
+    }
+
+    /**
+     * @return bytecode size of the largest lambda body method or 0 if there are none
+     */
+    public int getLargestLambdaBodySize() {
+        return lambdaBodySizes.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    /**
+     * Summed number of constant pool entries of all the classes compiled for the lambda.
+     */
+    public int getConstantPoolSize() {
+        return constantPoolSize;
+    }
+
+    public int getMaxInlineSize() {
+        return maxInlineSize;
+    }
+
+    public int getFreqInlineSize() {
+        return freqInlineSize;
+    }
+
+    /**
+     * True if a lambda body is too large to be inlined unless it's called frequently.
+     */
+    public boolean exceedsMaxInlineSize() {
+        return getLargestLambdaBodySize() > maxInlineSize;
+    }
+
+    /**
+     * True if a lambda body is too large to be inlined at all.
+     */
+    public boolean exceedsFreqInlineSize() {
+        return getLargestLambdaBodySize() > freqInlineSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LambdaBytecodeReport{lambdaBodySizes=%s, constantPoolSize=%d, maxInlineSize=%d, freqInlineSize=%d}",
+                lambdaBodySizes, constantPoolSize, maxInlineSize, freqInlineSize);
+    }
+
+    /**
+     * Holds the inlining thresholds, so that the JVM is asked for them only when a report is created for the first time.
+     */
+    private static class Thresholds {
+        private static final int MAX_INLINE_SIZE = getVmOption("MaxInlineSize", DEFAULT_MAX_INLINE_SIZE);
+        private static final int FREQ_INLINE_SIZE = getVmOption("FreqInlineSize", DEFAULT_FREQ_INLINE_SIZE);
+
+        private static int getVmOption(String name, int defaultValue) {
+            try {
+                HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+                return hotSpot == null ? defaultValue : Integer.parseInt(hotSpot.getVMOption(name).getValue());
+            } catch (RuntimeException | LinkageError e) {
+                // not HotSpot or the option doesn't exist
+                return defaultValue;
+            }
+        }
+    }
+}
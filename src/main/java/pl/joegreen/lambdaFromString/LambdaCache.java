@@ -0,0 +1,182 @@
+package pl.joegreen.lambdaFromString;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of compiled helper classes (represented by their lambda-returning methods) keyed by the helper class source.
+ * Compiler settings are fixed for the lifetime of a LambdaFactory so the source alone identifies a compilation result. <br>
+ * Lookups don't take any lock, they only mark the found entry as used. The eviction order is kept by insertions
+ * (under the lock of the cache, as insertions follow compilations anyway) with the CLOCK approximation of LRU:
+ * entries are queued in the order of insertion and when the cache grows over its maximum size, the oldest entry
+ * is evicted unless it was used since it was queued, in which case it gets a second chance at the end of the queue. <br>
+ * With a Metaspace budget, the queue is split into generations. New entries join the current generation, which is closed
+ * when it uses its part of the budget. When the whole budget is exceeded, the oldest generations are retired at once,
+ * releasing all the class loaders of their entries together, except for the entries used since they joined
+ * the generation, which move to the current one. Retired lambdas are compiled again when they are needed.
+ */
+class LambdaCache {
+    private static final int GENERATION_COUNT = 4;
+
+    private final int maximumSize;
+    private final Optional<MetaspaceBudget> budget;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // modifications of entries, generations and their usage are guarded by the lock of the cache
+    private final Deque<Generation> generations = new ArrayDeque<>();
+    private Generation currentGeneration = new Generation();
+    private long budgetUsage;
+
+    LambdaCache(int maximumSize) {
+        this(maximumSize, Optional.empty());
+    }
+
+    LambdaCache(int maximumSize, Optional<MetaspaceBudget> budget) {
+        this.maximumSize = maximumSize;
+        this.budget = budget;
+        generations.add(currentGeneration);
+    }
+
+    Optional<Method> get(String helperClassSource) {
+        Entry entry = entries.get(helperClassSource);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        // checked first, so frequently used entries aren't written by every lookup
+        if (!entry.used) {
+            entry.used = true;
+        }
+        hits.increment();
+        return Optional.of(entry.lambdaReturningMethod);
+    }
+
+    /**
+     * @param classCount   number of classes created by the compilation of the helper class
+     * @param bytecodeSize total size of their bytecode, 0 if it's unknown (e.g. not reported by a custom class factory)
+     */
+    void put(String helperClassSource, Method lambdaReturningMethod, int classCount, long bytecodeSize) {
+        // every entry holds at least one class, so even entries of unknown size count against the budget
+        long cost = budget.map(b -> Math.max(1, b.measure(classCount, bytecodeSize))).orElse(0L);
+        Entry entry = new Entry(helperClassSource, lambdaReturningMethod, cost);
+        synchronized (this) {
+            Entry previousEntry = entries.put(helperClassSource, entry);
+            if (previousEntry != null) {
+                previousEntry.generation.entries.remove(previousEntry);
+                release(previousEntry);
+            }
+            charge(entry);
+            evictOverMaximumSize();
+            if (budget.isPresent()) {
+                retireGenerationsOverBudget();
+            }
+        }
+    }
+
+    LambdaCacheStatistics getStatistics() {
+        long usage;
+        synchronized (this) {
+            usage = budgetUsage;
+        }
+        return new LambdaCacheStatistics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), usage);
+    }
+
+    /**
+     * Adds the entry to the current generation, closing it first if it has used its part of the budget.
+     */
+    private void charge(Entry entry) {
+        if (budget.isPresent()) {
+            long generationBudget = Math.max(1, budget.get().getLimit() / GENERATION_COUNT);
+            if (currentGeneration.usage >= generationBudget) {
+                // generations whose entries were all moved or evicted don't hold anything
+                generations.removeIf(generation -> generation.entries.isEmpty());
+                currentGeneration = new Generation();
+                generations.add(currentGeneration);
+            }
+        }
+        entry.used = false;
+        entry.generation = currentGeneration;
+        currentGeneration.entries.add(entry);
+        currentGeneration.usage += entry.cost;
+        budgetUsage += entry.cost;
+    }
+
+    private void release(Entry entry) {
+        entry.generation.usage -= entry.cost;
+        budgetUsage -= entry.cost;
+    }
+
+    private void evictOverMaximumSize() {
+        // entries used concurrently could get second chances forever, so their number is limited
+        int secondChances = entries.size();
+        while (entries.size() > maximumSize) {
+            Entry oldestEntry = pollOldestEntry();
+            release(oldestEntry);
+            if (oldestEntry.used && secondChances-- > 0) {
+                charge(oldestEntry);
+            } else {
+                evict(oldestEntry);
+            }
+        }
+    }
+
+    private Entry pollOldestEntry() {
+        while (true) {
+            Generation oldestGeneration = generations.peek();
+            Entry entry = oldestGeneration.entries.poll();
+            if (entry != null) {
+                return entry;
+            }
+            // the current generation is never empty here, as the cache contains entries
+            generations.poll();
+        }
+    }
+
+    private void retireGenerationsOverBudget() {
+        // after all the generations were retired once, entries used in the meantime don't get second chances
+        int retirementsWithSecondChances = generations.size() - 1;
+        while (budgetUsage > budget.get().getLimit() && generations.size() > 1) {
+            boolean secondChances = retirementsWithSecondChances-- > 0;
+            Generation oldestGeneration = generations.poll();
+            for (Entry entry : oldestGeneration.entries) {
+                release(entry);
+                if (entry.used && secondChances) {
+                    charge(entry);
+                } else {
+                    evict(entry);
+                }
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        entries.remove(entry.helperClassSource, entry);
+        evictions.increment();
+    }
+
+    private static class Entry {
+        private final String helperClassSource;
+        private final Method lambdaReturningMethod;
+        private final long cost;
+        private volatile boolean used;
+        private Generation generation;
+
+        private Entry(String helperClassSource, Method lambdaReturningMethod, long cost) {
+            this.helperClassSource = helperClassSource;
+            this.lambdaReturningMethod = lambdaReturningMethod;
+            this.cost = cost;
+        }
+    }
+
+    private static class Generation {
+        private final Deque<Entry> entries = new ArrayDeque<>();
+        private long usage;
+    }
+}
@@ -0,0 +1,64 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Snapshot of the compiled lambda cache counters of a LambdaFactory.
+ * All values are zero when the cache is disabled.
+ */
+public class LambdaCacheStatistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+    private final long metaspaceBudgetUsage;
+
+    LambdaCacheStatistics(long hitCount, long missCount, long evictionCount, long size, long metaspaceBudgetUsage) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.metaspaceBudgetUsage = metaspaceBudgetUsage;
+    }
+
+    /**
+     * Number of lambda creations that reused an already compiled helper class.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Number of lambda creations that had to compile a new helper class.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Number of compiled helper classes removed from the cache because it reached its maximum size
+     * or its Metaspace budget.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Number of compiled helper classes currently held by the cache.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Number of classes or bytes (see {@link MetaspaceBudget}) of the cached helper classes counted against the Metaspace budget,
+     * zero when the budget is not set.
+     */
+    public long getMetaspaceBudgetUsage() {
+        return metaspaceBudgetUsage;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LambdaCacheStatistics{hits=%d, misses=%d, evictions=%d, size=%d, metaspaceBudgetUsage=%d}",
+                hitCount, missCount, evictionCount, size, metaspaceBudgetUsage);
+    }
+}
@@ -0,0 +1,144 @@
+package pl.joegreen.lambdaFromString;
+
+import pl.joegreen.lambdaFromString.classFactory.ClassFactory;
+import pl.joegreen.lambdaFromString.classFactory.CompilationPhase;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Measurements of a single lambda creation reported to {@link LambdaFactoryListener}. All durations are in nanoseconds.
+ * Compilation phases and bytecode are reported only if the helper class was created for this lambda
+ * (see {@link #isCompiled()}) and the class factory reports them (see
+ * {@link ClassFactory#createClass(String, String, javax.tools.JavaCompiler, int, String, java.util.List, ClassLoader, pl.joegreen.lambdaFromString.classFactory.CompilationListener)}).
+ */
+public class LambdaCreationMetrics {
+    private final String code;
+    private final boolean compiled;
+    private final long sourceGenerationNanos;
+    private final long classCreationNanos;
+    private final long lambdaInstantiationNanos;
+    private final long totalNanos;
+    private final Map<CompilationPhase, Long> compilationPhaseNanos;
+    private final int classCount;
+    private final int bytecodeSize;
+    private final int errorCount;
+    private final int warningCount;
+    private final Optional<LambdaBytecodeReport> bytecodeReport;
+
+    LambdaCreationMetrics(String code, boolean compiled, long sourceGenerationNanos, long classCreationNanos,
+                          long lambdaInstantiationNanos, long totalNanos, Map<CompilationPhase, Long> compilationPhaseNanos,
+                          int classCount, int bytecodeSize, int errorCount, int warningCount,
+                          Optional<LambdaBytecodeReport> bytecodeReport) {
+        this.code = code;
+        this.compiled = compiled;
+        this.sourceGenerationNanos = sourceGenerationNanos;
+        this.classCreationNanos = classCreationNanos;
+        this.lambdaInstantiationNanos = lambdaInstantiationNanos;
+        this.totalNanos = totalNanos;
+        this.compilationPhaseNanos = compilationPhaseNanos;
+        this.classCount = classCount;
+        this.bytecodeSize = bytecodeSize;
+        this.errorCount = errorCount;
+        this.warningCount = warningCount;
+        this.bytecodeReport = bytecodeReport;
+    }
+
+    /**
+     * Code of the lambda as it was passed to the factory.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * True if the class factory was called for this lambda, false if the helper class was taken from the cache
+     * or compiled for another thread creating the same lambda at the same time.
+     */
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Time of rendering the helper class source from the template.
+     */
+    public long getSourceGenerationNanos() {
+        return sourceGenerationNanos;
+    }
+
+    /**
+     * Time of getting the helper class: looking it up in the cache, waiting for another thread
+     * or creating it with the class factory.
+     */
+    public long getClassCreationNanos() {
+        return classCreationNanos;
+    }
+
+    /**
+     * Time of the reflective call returning the lambda from the helper class.
+     */
+    public long getLambdaInstantiationNanos() {
+        return lambdaInstantiationNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Durations of class creation phases reported by the class factory.
+     */
+    public Map<CompilationPhase, Long> getCompilationPhaseNanos() {
+        return Collections.unmodifiableMap(compilationPhaseNanos);
+    }
+
+    /**
+     * @return duration of the phase or 0 if it wasn't reported
+     */
+    public long getCompilationPhaseNanos(CompilationPhase phase) {
+        return compilationPhaseNanos.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Number of classes created for the lambda (more than one if the code contains e.g. anonymous classes).
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Summed size of the bytecode of all the classes created for the lambda.
+     */
+    public int getBytecodeSize() {
+        return bytecodeSize;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Number of warnings (including mandatory warnings, e.g. about deprecated methods) reported by the compiler.
+     */
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    /**
+     * Analysis of the bytecode created for the lambda, present only if the factory doesn't use
+     * {@link InliningPolicy#IGNORE} and the class factory reported the bytecode (see {@link #getBytecodeSize()}).
+     */
+    public Optional<LambdaBytecodeReport> getBytecodeReport() {
+        return bytecodeReport;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LambdaCreationMetrics{code='%s', compiled=%s, totalNanos=%d, sourceGenerationNanos=%d, " +
+                        "classCreationNanos=%d, lambdaInstantiationNanos=%d, compilationPhaseNanos=%s, classCount=%d, " +
+                        "bytecodeSize=%d, errorCount=%d, warningCount=%d, bytecodeReport=%s}",
+                code, compiled, totalNanos, sourceGenerationNanos, classCreationNanos, lambdaInstantiationNanos,
+                compilationPhaseNanos, classCount, bytecodeSize, errorCount, warningCount, bytecodeReport);
+    }
+}
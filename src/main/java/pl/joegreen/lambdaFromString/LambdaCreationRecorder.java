@@ -0,0 +1,109 @@
+package pl.joegreen.lambdaFromString;
+
+import pl.joegreen.lambdaFromString.classFactory.CompilationListener;
+import pl.joegreen.lambdaFromString.classFactory.CompilationPhase;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Collects measurements of a single lambda creation, which happens on a single thread.
+ */
+class LambdaCreationRecorder implements CompilationListener {
+    private final long startTime = System.nanoTime();
+    private long sourceGenerationNanos;
+    private long classCreationNanos;
+    private long lambdaInstantiationNanos;
+    private boolean compiled;
+    private final Map<CompilationPhase, Long> compilationPhaseNanos = new EnumMap<>(CompilationPhase.class);
+    private int classCount;
+    private int bytecodeSize;
+    private Map<String, byte[]> classesBytes;
+    private LambdaBytecodeReport bytecodeReport;
+    private int errorCount;
+    private int warningCount;
+
+    void sourceGenerationFinished(long durationNanos) {
+        sourceGenerationNanos = durationNanos;
+    }
+
+    void classCreationFinished(long durationNanos) {
+        classCreationNanos = durationNanos;
+    }
+
+    void lambdaInstantiationFinished(long durationNanos) {
+        lambdaInstantiationNanos = durationNanos;
+    }
+
+    void classCompiled() {
+        compiled = true;
+    }
+
+    void bytecodeAnalyzed(LambdaBytecodeReport bytecodeReport) {
+        this.bytecodeReport = bytecodeReport;
+    }
+
+    @Override
+    public void phaseFinished(CompilationPhase phase, long durationNanos) {
+        compilationPhaseNanos.merge(phase, durationNanos, Long::sum);
+    }
+
+    @Override
+    public void diagnosticsReported(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errorCount++;
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                warningCount++;
+            }
+        }
+    }
+
+    @Override
+    public void classesCreated(Map<String, byte[]> classesBytes) {
+        this.classesBytes = classesBytes;
+        classCount = classesBytes.size();
+        bytecodeSize = classesBytes.values().stream().mapToInt(bytes -> bytes.length).sum();
+    }
+
+    /**
+     * Returns a listener passing only the created classes to this recorder, without the overhead of measuring compilation phases.
+     */
+    CompilationListener createdClassesListener() {
+        return new CompilationListener() {
+            @Override
+            public void classesCreated(Map<String, byte[]> classesBytes) {
+                LambdaCreationRecorder.this.classesCreated(classesBytes);
+            }
+        };
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    int getBytecodeSize() {
+        return bytecodeSize;
+    }
+
+    /**
+     * @return bytecode of the created classes, empty if the class factory didn't report them
+     */
+    Optional<Map<String, byte[]>> getClassesBytes() {
+        return Optional.ofNullable(classesBytes);
+    }
+
+    Optional<LambdaBytecodeReport> getBytecodeReport() {
+        return Optional.ofNullable(bytecodeReport);
+    }
+
+    LambdaCreationMetrics toMetrics(String code) {
+        return new LambdaCreationMetrics(code, compiled, sourceGenerationNanos, classCreationNanos, lambdaInstantiationNanos,
+                System.nanoTime() - startTime, new EnumMap<>(compilationPhaseNanos), classCount, bytecodeSize,
+                errorCount, warningCount, Optional.ofNullable(bytecodeReport));
+    }
+}
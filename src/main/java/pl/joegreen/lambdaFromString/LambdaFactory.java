@@ -1,14 +1,47 @@
 package pl.joegreen.lambdaFromString;
 
+import org.apache.commons.lang3.reflect.TypeUtils;
+import pl.joegreen.lambdaFromString.classFactory.BatchCompilationResult;
 import pl.joegreen.lambdaFromString.classFactory.ClassCompilationException;
 import pl.joegreen.lambdaFromString.classFactory.ClassFactory;
+import pl.joegreen.lambdaFromString.classFactory.CompilationDetails;
+import pl.joegreen.lambdaFromString.classFactory.CompilationListener;
+import pl.joegreen.lambdaFromString.classFactory.CompilerPool;
+import pl.joegreen.lambdaFromString.classFactory.PrecompiledClasses;
+import pl.joegreen.lambdaFromString.interpreter.InterpretedLambda;
+import pl.joegreen.lambdaFromString.interpreter.LambdaInterpreter;
 
 import javax.tools.JavaCompiler;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
-public class LambdaFactory {
+public class LambdaFactory implements AutoCloseable {
+    private static final TypeReference<Runnable> RUNNABLE_TYPE = new TypeReference<Runnable>() {};
+    private static final int WARM_UP_ROUNDS = 10;
+    // codes of the warm-up lambdas contain %d, so that each round compiles different classes
+    private static final Map<String, TypeReference<?>> WARM_UP_LAMBDAS = new LinkedHashMap<>();
+
+    static {
+        WARM_UP_LAMBDAS.put("i -> i * %d + 1", new TypeReference<Function<Integer, Integer>>() {});
+        WARM_UP_LAMBDAS.put("s -> s.length() > %d && s.startsWith(\"a\")", new TypeReference<Predicate<String>>() {});
+        WARM_UP_LAMBDAS.put("() -> java.util.stream.IntStream.range(0, %d).mapToObj(String::valueOf)"
+                + ".collect(java.util.stream.Collectors.toList())", new TypeReference<Supplier<List<String>>>() {});
+    }
 
     /**
      * Returns a LambdaFactory instance with default configuration.
@@ -20,22 +53,21 @@ public class LambdaFactory {
     }
 
     /**
-     * Returns a LambdaFactory instance with the given configuration.
+     * Returns a LambdaFactory instance with the given configuration. <br>
+     * Lambdas precompiled during the build (see {@link LambdaPrecompiler}) and found by the parent class loader
+     * are created without the compiler. If there are any, the factory can be created also without a compiler
+     * and then it fails to create only the lambdas that were not precompiled.
      *
-     * @throws JavaCompilerNotFoundException if the library cannot find any java compiler and it's not provided in the configuration
+     * @throws JavaCompilerNotFoundException if the library cannot find any java compiler, it's not provided
+     *                                       in the configuration and there are no precompiled lambdas
      */
     public static LambdaFactory get(LambdaFactoryConfiguration configuration) {
-        JavaCompiler compiler = Optional.ofNullable(configuration.getJavaCompiler()).orElseThrow(JavaCompilerNotFoundException::new);
-        return new LambdaFactory(
-                configuration.getDefaultHelperClassSourceProvider(),
-                configuration.getClassFactory(),
-                compiler,
-                configuration.getImports(),
-                configuration.getStaticImports(),
-                configuration.getCompilationClassPath(),
-                configuration.getParentClassLoader(),
-                configuration.getCompilerArguments(),
-                configuration.getJavaVersion());
+        PrecompiledClasses precompiledClasses = PrecompiledClasses.load(configuration.getParentClassLoader());
+        JavaCompiler compiler = configuration.getJavaCompiler();
+        if (compiler == null && precompiledClasses.isEmpty()) {
+            throw new JavaCompilerNotFoundException();
+        }
+        return new LambdaFactory(configuration, compiler, precompiledClasses);
     }
 
     private final HelperClassSourceProvider helperProvider;
@@ -47,20 +79,55 @@ public class LambdaFactory {
     private final ClassLoader parentClassLoader;
     private final int javaVersion;
     private final List<String> compilerArguments;
+    private final Optional<LambdaCache> cache;
+    private final CompilationExecutor compilationExecutor;
+    private final Optional<LambdaFactoryListener> listener;
+    private final int tieredCompilationThreshold;
+    private final PrecompiledClasses precompiledClasses;
+    private final Optional<CompilationClassPathPruner> classPathPruner;
+    private final Optional<CompilerPool> compilerPool;
+    private final Map<String, CompletableFuture<Method>> inFlightCompilations = new ConcurrentHashMap<>();
+    private final LongAdder deduplicatedCompilations = new LongAdder();
+    // classes wrapping tiered lambdas, compiled once for each interface, see TieredLambda
+    private final ClassValue<Optional<DelegatingLambdaClass>> delegatingLambdaClasses =
+            new ClassValue<Optional<DelegatingLambdaClass>>() {
+                @Override
+                protected Optional<DelegatingLambdaClass> computeValue(Class<?> interfaceType) {
+                    return createDelegatingLambdaClass(interfaceType);
+                }
+            };
+    private final InliningPolicy inliningPolicy;
+    private volatile boolean warmedUp;
 
-    private LambdaFactory(HelperClassSourceProvider helperProvider, ClassFactory classFactory,
-                          JavaCompiler javaCompiler, List<String> imports, List<String> staticImports,
-                          String compilationClassPath, ClassLoader parentClassLoader, List<String> compilerArguments,
-                          int javaVersion) {
-        this.helperProvider = helperProvider;
-        this.classFactory = classFactory;
+    private LambdaFactory(LambdaFactoryConfiguration configuration, JavaCompiler javaCompiler,
+                          PrecompiledClasses precompiledClasses) {
+        this.helperProvider = configuration.getDefaultHelperClassSourceProvider();
+        this.classFactory = configuration.getClassFactory();
         this.javaCompiler = javaCompiler;
-        this.imports = imports;
-        this.staticImports = staticImports;
-        this.compilationClassPath = compilationClassPath;
-        this.parentClassLoader = parentClassLoader;
-        this.compilerArguments = compilerArguments;
-        this.javaVersion = javaVersion;
+        this.imports = configuration.getImports();
+        this.staticImports = configuration.getStaticImports();
+        this.compilationClassPath = configuration.getCompilationClassPath();
+        this.parentClassLoader = configuration.getParentClassLoader();
+        this.compilerArguments = configuration.getCompilerArguments();
+        this.javaVersion = configuration.getJavaVersion();
+        int lambdaCacheSize = configuration.getLambdaCacheSize();
+        Optional<MetaspaceBudget> metaspaceBudget = Optional.ofNullable(configuration.getMetaspaceBudget());
+        this.cache = lambdaCacheSize > 0 || metaspaceBudget.isPresent()
+                ? Optional.of(new LambdaCache(lambdaCacheSize > 0 ? lambdaCacheSize : Integer.MAX_VALUE, metaspaceBudget))
+                : Optional.empty();
+        this.compilationExecutor = new CompilationExecutor(configuration.getCompilationThreads(),
+                configuration.getCompilationQueueSize());
+        this.listener = Optional.ofNullable(configuration.getListener());
+        this.tieredCompilationThreshold = configuration.getTieredCompilationThreshold();
+        this.inliningPolicy = configuration.getInliningPolicy();
+        this.precompiledClasses = precompiledClasses;
+        this.classPathPruner = configuration.isCompilationClassPathPruningEnabled()
+                ? Optional.of(new CompilationClassPathPruner(compilationClassPath, imports, staticImports, parentClassLoader))
+                : Optional.empty();
+        int compilerPoolSize = configuration.getCompilerPoolSize();
+        this.compilerPool = compilerPoolSize > 0 && javaCompiler != null
+                ? Optional.of(new CompilerPool(javaCompiler, compilerPoolSize)) : Optional.empty();
+        compilerPool.ifPresent(this::warmUpInBackground);
     }
 
     /**
@@ -72,16 +139,69 @@ public class LambdaFactory {
      * @param <T>           type of the lambda you want to get
      * @throws LambdaCreationException when anything goes wrong (no other exceptions are thrown including runtimes),
      *                                 if the exception was caused by compilation failure it will contain a CompilationDetails instance describing them
+     * @see LambdaFactoryConfiguration#withTieredCompilation(int)
      */
     public <T> T createLambda(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        if (tieredCompilationThreshold > 0) {
+            Optional<InterpretedLambda> interpretedLambda = LambdaInterpreter.interpret(code, typeReference.getType());
+            if (interpretedLambda.isPresent()) {
+                @SuppressWarnings("unchecked")
+                // the interpreter checked that the code is a correct lambda of that type
+                T lambda = (T) TieredLambda.create(interpretedLambda.get(), code, tieredCompilationThreshold,
+                        () -> compilationExecutor.submit(() -> createCompiledLambda(code, typeReference)),
+                        () -> createCompiledLambda(code, typeReference),
+                        delegatingLambdaClasses.get(interpretedLambda.get().getInterfaceType()));
+                return lambda;
+            }
+        }
+        return createCompiledLambda(code, typeReference);
+    }
+
+    private <T> T createCompiledLambda(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        return withMetrics(code, recorder -> createLambda(code, typeReference, recorder));
+    }
+
+    /**
+     * Runs the creation of a lambda from the code with a new recorder, reports its metrics to the listener
+     * and warns about the created classes that are too large to be inlined (see {@link InliningPolicy#WARN}).
+     */
+    private <T> T withMetrics(String code, RecordedCreation<T> creation) throws LambdaCreationException {
+        return withMetrics(code, true, creation);
+    }
+
+    /**
+     * @param reportCompilationErrors false if failures caused by compilation errors should not be reported to the listener
+     * @see #withMetrics(String, RecordedCreation)
+     */
+    private <T> T withMetrics(String code, boolean reportCompilationErrors, RecordedCreation<T> creation)
+            throws LambdaCreationException {
+        LambdaCreationRecorder recorder = new LambdaCreationRecorder();
+        try {
+            T result = creation.create(recorder);
+            listener.ifPresent(l -> notifyListener(() -> l.lambdaCreated(recorder.toMetrics(code))));
+            warnAboutInlining(code, recorder.getBytecodeReport());
+            return result;
+        } catch (LambdaCreationException e) {
+            if (reportCompilationErrors || !e.getCompilationDetails().isPresent()) {
+                listener.ifPresent(l -> notifyListener(() -> l.lambdaCreationFailed(recorder.toMetrics(code), e)));
+            }
+            throw e;
+        }
+    }
+
+    private <T> T createLambda(String code, TypeReference<T> typeReference, LambdaCreationRecorder recorder) throws LambdaCreationException {
+        long sourceGenerationStartTime = System.nanoTime();
         String helperClassSource = helperProvider.getHelperClassSource(typeReference.toString(), code, imports, staticImports);
+        recorder.sourceGenerationFinished(System.nanoTime() - sourceGenerationStartTime);
         try {
-            Class<?> helperClass = classFactory.createClass(helperProvider.getHelperClassName(), helperClassSource,
-                    javaCompiler,javaVersion, compilationClassPath, compilerArguments, parentClassLoader);
-            Method lambdaReturningMethod = helperClass.getMethod(helperProvider.getLambdaReturningMethodName());
+            long classCreationStartTime = System.nanoTime();
+            Method lambdaReturningMethod = getLambdaReturningMethod(helperClassSource, typeReference, recorder);
+            recorder.classCreationFinished(System.nanoTime() - classCreationStartTime);
+            long lambdaInstantiationStartTime = System.nanoTime();
             @SuppressWarnings("unchecked")
             // the whole point of the class template and runtime compilation is to make this cast work well :-)
             T lambda = (T) lambdaReturningMethod.invoke(null);
+            recorder.lambdaInstantiationFinished(System.nanoTime() - lambdaInstantiationStartTime);
             return lambda;
         } catch (ReflectiveOperationException | RuntimeException | NoClassDefFoundError e) {
             // NoClassDefFoundError can be thrown if provided parent class loader cannot load classes used by the lambda
@@ -92,6 +212,701 @@ public class LambdaFactory {
         }
     }
 
+    /**
+     * Checks if the code is a correct lambda of the given type without creating it. The compiler stops after
+     * the analysis of the code (see {@link ClassFactory#analyzeClass}), so no classes are generated nor loaded
+     * and nothing is stored in the compiled lambda cache. Lambdas are always checked by the compiler,
+     * even if they were precompiled.
+     *
+     * @return details of the compilation, containing warnings if there were any
+     * @throws LambdaCreationException if the code is incorrect, with the same CompilationDetails as
+     *                                 {@link #createLambda(String, TypeReference)} would report, or when anything else goes wrong
+     */
+    public CompilationDetails validate(String code, TypeReference<?> typeReference) throws LambdaCreationException {
+        String helperClassSource = helperProvider.getHelperClassSource(typeReference.toString(), code, imports, staticImports);
+        try {
+            if (javaCompiler == null) {
+                throw new JavaCompilerNotFoundException();
+            }
+            String classPath = classPathPruner.map(pruner -> pruner.getClassPath(typeReference)).orElse(compilationClassPath);
+            try {
+                return compile(compiler -> classFactory.analyzeClass(helperProvider.getHelperClassName(), helperClassSource,
+                        compiler, javaVersion, classPath, compilerArguments));
+            } catch (ClassCompilationException e) {
+                if (classPath.equals(compilationClassPath)) {
+                    throw e;
+                }
+                // see createHelperClass
+                return compile(compiler -> classFactory.analyzeClass(helperProvider.getHelperClassName(), helperClassSource,
+                        compiler, javaVersion, compilationClassPath, compilerArguments));
+            }
+        } catch (RuntimeException e) {
+            throw new LambdaCreationException(e);
+        } catch (ClassCompilationException e) {
+            throw new LambdaCreationException(e);
+        }
+    }
+
+    /**
+     * Compiles the code and analyzes the created classes (see {@link LambdaBytecodeReport}), regardless of
+     * the inlining policy ({@link LambdaFactoryConfiguration#withInliningPolicy(InliningPolicy)}). The code is compiled
+     * even if the lambda is cached or precompiled and the compiled class is not stored in the compiled lambda cache.
+     *
+     * @throws LambdaCreationException if the code cannot be compiled (see {@link #createLambda(String, TypeReference)})
+     *                                 or the class factory doesn't report the created bytecode
+     */
+    public LambdaBytecodeReport getBytecodeReport(String code, TypeReference<?> typeReference) throws LambdaCreationException {
+        String helperClassSource = helperProvider.getHelperClassSource(typeReference.toString(), code, imports, staticImports);
+        try {
+            if (javaCompiler == null) {
+                throw new JavaCompilerNotFoundException();
+            }
+            LambdaCreationRecorder recorder = new LambdaCreationRecorder();
+            createHelperClass(helperClassSource, typeReference, recorder.createdClassesListener());
+            return LambdaBytecodeReport.analyze(recorder.getClassesBytes().orElseThrow(() ->
+                    new IllegalStateException("Class factory didn't report the bytecode of the created classes")));
+        } catch (RuntimeException | NoClassDefFoundError e) {
+            throw new LambdaCreationException(e);
+        } catch (ClassCompilationException e) {
+            throw new LambdaCreationException(e);
+        }
+    }
+
+    /**
+     * Creates lambda from the given code compiled against the primitive functional interface matching the given type,
+     * so that hot paths can call it without boxing. For example, code of {@code Function<Integer, Integer>} is compiled
+     * as {@code IntUnaryOperator} and code of {@code BinaryOperator<Double>} as {@code DoubleBinaryOperator}.
+     * The lambda of the given type unboxes its arguments and calls the primitive one, so it throws NullPointerException
+     * for null arguments even if the code handles them. For example {@code x -> java.util.Objects.hashCode(x)} returns 0
+     * for null when it's created with {@link #createLambda(String, TypeReference)}, but not when it's specialized.
+     * Lambdas that have to accept nulls should be created with {@link #createLambda(String, TypeReference)}. <br>
+     * Function, UnaryOperator, BiFunction, BinaryOperator, Predicate, Supplier and Consumer of Integer, Long and Double
+     * (also with Boolean results) have primitive counterparts. If the type has none or the code cannot be compiled against
+     * it (e.g. it calls methods of the boxes or returns null), it's created as with
+     * {@link #createLambda(String, TypeReference)} and the result is not specialized.
+     *
+     * @see #createLambda(String, TypeReference)
+     */
+    public <T> SpecializedLambda<T> createSpecializedLambda(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        Optional<PrimitiveSpecialization> specialization = PrimitiveSpecialization.find(typeReference.getType());
+        if (specialization.isPresent()) {
+            // the code may compile only with the boxed type (or not at all), which is reported by the creation below
+            Optional<Object> primitiveLambda = tryCreateCompiledLambda(code, specialization.get().getPrimitiveTypeReference());
+            if (primitiveLambda.isPresent()) {
+                @SuppressWarnings("unchecked")
+                // the adapter implements the type the primitive interface was chosen for
+                T lambda = (T) specialization.get().adapt(primitiveLambda.get());
+                return new SpecializedLambda<>(lambda, primitiveLambda, Optional.of(specialization.get().getPrimitiveInterface()));
+            }
+        }
+        return new SpecializedLambda<>(createLambda(code, typeReference), Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Creates a compiled lambda or returns an empty Optional if its code cannot be compiled. Compilation errors are not
+     * reported to the listener, so it can be used to try a faster variant of code before the regular one. Other failures
+     * (e.g. a missing compiler or a lambda rejected by the inlining policy) are reported and thrown as usual.
+     */
+    <T> Optional<T> tryCreateCompiledLambda(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        try {
+            return Optional.of(withMetrics(code, false, recorder -> createLambda(code, typeReference, recorder)));
+        } catch (LambdaCreationException e) {
+            if (e.getCompilationDetails().isPresent()) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a kernel applying the element expression to ranges of double arrays. The expression is inlined into
+     * a loop in the generated class, so the kernel is called once per range instead of once per element and the JIT
+     * can unroll and vectorize the loop.
+     *
+     * @param elementCode lambda computing an output element from an input element, with an expression body,
+     *                    for example {@code x -> Math.sqrt(x) * 2}
+     * @throws LambdaCreationException if the code is not a lambda with one parameter and an expression body
+     *                                 or when anything else goes wrong (see {@link #createLambda(String, TypeReference)})
+     */
+    public DoubleArrayKernel createDoubleArrayKernel(String elementCode) throws LambdaCreationException {
+        return createArrayKernel(elementCode, "double", new TypeReference<DoubleArrayKernel>() {});
+    }
+
+    /**
+     * Creates a kernel applying the element expression to ranges of long arrays.
+     *
+     * @see #createDoubleArrayKernel(String)
+     */
+    public LongArrayKernel createLongArrayKernel(String elementCode) throws LambdaCreationException {
+        return createArrayKernel(elementCode, "long", new TypeReference<LongArrayKernel>() {});
+    }
+
+    /**
+     * Creates a kernel applying the element expression to ranges of int arrays.
+     *
+     * @see #createDoubleArrayKernel(String)
+     */
+    public IntArrayKernel createIntArrayKernel(String elementCode) throws LambdaCreationException {
+        return createArrayKernel(elementCode, "int", new TypeReference<IntArrayKernel>() {});
+    }
+
+    private <K> K createArrayKernel(String elementCode, String elementType, TypeReference<K> kernelType) throws LambdaCreationException {
+        String kernelCode;
+        try {
+            kernelCode = ArrayKernelSource.render(elementCode, elementType);
+        } catch (IllegalArgumentException e) {
+            throw new LambdaCreationException(e);
+        }
+        // kernels are never interpreted, the interpreted loop would be slower than calling an interpreted lambda
+        return createCompiledLambda(kernelCode, kernelType);
+    }
+
+    /**
+     * Compiles lambda code using named parameters, whose values are bound later by
+     * {@link ParameterizedLambda#bind(Object...)}. The code is compiled once, binding creates new instances
+     * of the compiled lambda, so lambdas of the same shape with different constants don't need separate compilations:
+     * <pre>
+     * {@code
+     * ParameterizedLambda<Predicate<Integer>> rule = factory.createParameterizedLambda("x -> x > threshold",
+     *         new TypeReference<Predicate<Integer>>() {}, LambdaParameter.of("threshold", int.class));
+     * Predicate<Integer> greaterThan10 = rule.bind(10);
+     * }
+     * </pre>
+     * Parameterized lambdas are never interpreted (see {@link LambdaFactoryConfiguration#withTieredCompilation(int)}).
+     *
+     * @param parameters parameters used in the code as final local variables
+     * @throws LambdaCreationException if parameter names are not distinct Java identifiers or when anything else
+     *                                 goes wrong (see {@link #createLambda(String, TypeReference)})
+     */
+    public <T> ParameterizedLambda<T> createParameterizedLambda(String code, TypeReference<T> typeReference,
+                                                                LambdaParameter<?>... parameters) throws LambdaCreationException {
+        List<LambdaParameter<?>> parameterList = new ArrayList<>();
+        // the name of the array starts with $, so it doesn't collide with names used in the code
+        StringBuilder shapeCode = new StringBuilder("$parameterValues -> {\n");
+        for (LambdaParameter<?> parameter : parameters) {
+            if (parameterList.stream().anyMatch(p -> p.getName().equals(parameter.getName()))) {
+                throw new LambdaCreationException(new IllegalArgumentException("Duplicated parameter name: " + parameter.getName()));
+            }
+            shapeCode.append("    ").append(parameter.renderDeclaration("$parameterValues", parameterList.size())).append("\n");
+            parameterList.add(parameter);
+        }
+        shapeCode.append("    return ").append(code).append("\n;\n}");
+        TypeReference<Function<Object[], T>> shapeType = new TypeReference<Function<Object[], T>>(
+                TypeUtils.parameterize(Function.class, Object[].class, typeReference.getType())) {
+        };
+        return new ParameterizedLambda<>(createCompiledLambda(shapeCode.toString(), shapeType), parameterList);
+    }
+
+    /**
+     * Creates lambda from the given code with a handle that allows unloading its class (see {@link LambdaHandle}).
+     * The lambda class is created for that handle only: it's neither taken from nor stored in the compiled lambda cache,
+     * compilations of the same code are not shared with other threads and the lambda is never interpreted
+     * (see {@link LambdaFactoryConfiguration#withTieredCompilation(int)}).
+     *
+     * @see #createLambda(String, TypeReference)
+     */
+    public <T> LambdaHandle<T> createLambdaHandle(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        return withMetrics(code, recorder -> createLambdaHandle(code, typeReference, recorder));
+    }
+
+    private <T> LambdaHandle<T> createLambdaHandle(String code, TypeReference<T> typeReference, LambdaCreationRecorder recorder)
+            throws LambdaCreationException {
+        long sourceGenerationStartTime = System.nanoTime();
+        String helperClassSource = helperProvider.getHelperClassSource(typeReference.toString(), code, imports, staticImports);
+        recorder.sourceGenerationFinished(System.nanoTime() - sourceGenerationStartTime);
+        try {
+            long classCreationStartTime = System.nanoTime();
+            Optional<Method> precompiledMethod = getPrecompiledLambdaReturningMethod(helperClassSource, recorder);
+            Method lambdaReturningMethod;
+            if (precompiledMethod.isPresent()) {
+                lambdaReturningMethod = precompiledMethod.get();
+            } else if (javaCompiler == null) {
+                throw new JavaCompilerNotFoundException();
+            } else {
+                recorder.classCompiled();
+                lambdaReturningMethod = createHelperClass(helperClassSource, typeReference, recorder)
+                        .getMethod(helperProvider.getLambdaReturningMethodName());
+            }
+            analyzeBytecode(recorder);
+            recorder.classCreationFinished(System.nanoTime() - classCreationStartTime);
+            long lambdaInstantiationStartTime = System.nanoTime();
+            @SuppressWarnings("unchecked")
+            T lambda = (T) lambdaReturningMethod.invoke(null);
+            recorder.lambdaInstantiationFinished(System.nanoTime() - lambdaInstantiationStartTime);
+            return new LambdaHandle<>(lambda, lambdaReturningMethod.getDeclaringClass().getClassLoader(),
+                    recorder.getBytecodeSize());
+        } catch (ReflectiveOperationException | RuntimeException | NoClassDefFoundError e) {
+            throw new LambdaCreationException(e);
+        } catch (ClassCompilationException classCompilationException) {
+            throw new LambdaCreationException(classCompilationException);
+        }
+    }
+
+    /**
+     * Creates lambda from the given code and returns a method handle calling its functional interface method,
+     * bound to the lambda instance. The handle type has the parameter and return types resolved from the lambda type,
+     * for example {@code (Integer)Integer} for {@code Function<Integer, Integer>} and {@code (int,int)int}
+     * for {@code IntBinaryOperator}, so it can be called with {@code invokeExact}. <br>
+     * A call site calling many different lambdas through their interface is megamorphic and the JIT compiler doesn't
+     * inline any of them. A handle that is a constant for the JIT compiler (kept in a static final field
+     * or in a {@link ConstantCallSite}, see {@link #createCallSite(String, TypeReference)}) is inlined together with
+     * the lambda it's bound to, no matter how many other lambdas are called by similar code. Handles that are not
+     * constants are slower to call than the lambdas themselves. <br>
+     * The lambda is always compiled, even if tiered compilation is enabled
+     * (see {@link LambdaFactoryConfiguration#withTieredCompilation(int)}).
+     *
+     * @throws LambdaCreationException if the lambda cannot be created (see {@link #createLambda(String, TypeReference)})
+     *                                 or its interface is not public
+     */
+    public <T> MethodHandle createMethodHandle(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        T lambda = createCompiledLambda(code, typeReference);
+        try {
+            return LambdaMethodHandles.bind(lambda, typeReference.getType());
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new LambdaCreationException(e);
+        }
+    }
+
+    /**
+     * Creates lambda from the given code and returns a constant call site targeting the method handle created
+     * like with {@link #createMethodHandle(String, TypeReference)}. It can be returned from bootstrap methods
+     * of invokedynamic instructions in generated code, its {@link CallSite#dynamicInvoker()} can be used as
+     * an invoker of that single lambda.
+     *
+     * @see #createMethodHandle(String, TypeReference)
+     */
+    public <T> ConstantCallSite createCallSite(String code, TypeReference<T> typeReference) throws LambdaCreationException {
+        return new ConstantCallSite(createMethodHandle(code, typeReference));
+    }
+
+    /**
+     * Creates lambda from the given code in the background, so that the calling thread doesn't wait for the compiler.
+     * Compilations run on a bounded number of threads owned by this factory (see
+     * {@link LambdaFactoryConfiguration#withCompilationThreads(int)}). If too many compilations are already waiting
+     * ({@link LambdaFactoryConfiguration#withCompilationQueueSize(int)}), the returned future fails immediately.
+     * Cancelling the future removes the compilation from the queue if it hasn't started yet.
+     *
+     * @see #createLambda(String, TypeReference)
+     * @return future completed with the lambda or with LambdaCreationException (also when the queue is full)
+     */
+    public <T> CompletableFuture<T> createLambdaAsync(String code, TypeReference<T> typeReference) {
+        return compilationExecutor.submit(() -> createLambda(code, typeReference));
+    }
+
+    /**
+     * Stops the background compilation threads of this factory: waiting {@link #createLambdaAsync asynchronous creations}
+     * and the background warm-up are cancelled, running ones are interrupted and asynchronous creations started later fail
+     * immediately. Tiered lambdas which are not compiled yet stay interpreted. Lambdas already created keep working
+     * and lambdas can still be created on the calling thread.
+     */
+    @Override
+    public void close() {
+        compilationExecutor.shutdown();
+    }
+
+    /**
+     * Compiles a few representative lambdas, so that the classes of the compiler are loaded and compiled by the JIT
+     * before real lambdas are created. The first compilations are much slower than the following ones, calling that
+     * method when the application starts moves that cost out of the first {@link #createLambda(String, TypeReference)}
+     * calls. Warm-up lambdas are compiled and loaded by the class factory, but they are not cached nor reported
+     * to the listener (except for {@link LambdaFactoryListener#warmUpFinished(long)}). If the factory has no compiler
+     * (see {@link #get(LambdaFactoryConfiguration)}), there is nothing to warm up.
+     *
+     * @throws LambdaCreationException if a warm-up lambda cannot be compiled, which means that the compiler
+     *                                 or the class factory don't work
+     */
+    public void warmUp() throws LambdaCreationException {
+        long startTime = System.nanoTime();
+        if (javaCompiler != null) {
+            for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+                for (Map.Entry<String, TypeReference<?>> lambda : WARM_UP_LAMBDAS.entrySet()) {
+                    String helperClassSource = helperProvider.getHelperClassSource(lambda.getValue().toString(),
+                            String.format(lambda.getKey(), round), imports, staticImports);
+                    try {
+                        createHelperClass(helperClassSource, lambda.getValue(), CompilationListener.NONE);
+                    } catch (ClassCompilationException e) {
+                        throw new LambdaCreationException(e);
+                    } catch (RuntimeException e) {
+                        throw new LambdaCreationException(e);
+                    }
+                }
+            }
+        }
+        warmedUp = true;
+        long duration = System.nanoTime() - startTime;
+        listener.ifPresent(l -> notifyListener(() -> l.warmUpFinished(duration)));
+    }
+
+    /**
+     * Runs {@link #warmUp()} on a compilation thread (see {@link #createLambdaAsync(String, TypeReference)}).
+     *
+     * @return future completed when the warm-up is finished, or completed exceptionally with LambdaCreationException
+     */
+    public CompletableFuture<Void> warmUpAsync() {
+        return compilationExecutor.submit(() -> {
+            warmUp();
+            return null;
+        });
+    }
+
+    /**
+     * Returns true if a warm-up (see {@link #warmUp()}) was finished successfully.
+     */
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * Creates many lambdas of the same type at once. All the codes are compiled by a single compiler invocation
+     * and loaded by a single class loader, which is much faster than creating the lambdas one by one.
+     * An incorrect code doesn't prevent other lambdas from being created. Batches need distinct helper class names,
+     * so with a custom {@link HelperClassSourceProvider} that isn't a {@link DefaultHelperClassSourceProvider}
+     * the lambdas are created one by one.
+     *
+     * @param codes         sources of the lambdas (see {@link #createLambda(String, TypeReference)}) by arbitrary keys
+     * @param typeReference a subclass of TypeReference class with the generic argument representing the type of the lambdas
+     * @param <K>           type of the keys identifying lambda codes
+     * @param <T>           type of the lambdas you want to get
+     * @return created lambdas and failures by the keys of their codes, if a failure was caused by compilation errors
+     * the exception contains a CompilationDetails instance describing only errors of that code
+     */
+    public <K, T> LambdaBatchResult<K, T> createLambdas(Map<K, String> codes, TypeReference<T> typeReference) {
+        if (!(helperProvider instanceof DefaultHelperClassSourceProvider)) {
+            // helper classes of other providers have a single name, so they cannot be compiled together
+            return createLambdasSeparately(codes, typeReference);
+        }
+        DefaultHelperClassSourceProvider batchHelperProvider = (DefaultHelperClassSourceProvider) helperProvider;
+        Map<K, LambdaCreationException> failures = new LinkedHashMap<>();
+        // identical codes are compiled only once so the keys are grouped by the generated helper class source
+        Map<String, List<K>> keysByHelperClassSource = new LinkedHashMap<>();
+        Map<String, Method> lambdaReturningMethods = new HashMap<>();
+        Map<String, String> batchSourceCodes = new LinkedHashMap<>();
+        Map<String, String> helperClassSourcesByBatchClassName = new HashMap<>();
+        codes.forEach((key, code) -> {
+            String helperClassSource = helperProvider.getHelperClassSource(typeReference.toString(), code, imports, staticImports);
+            List<K> keys = keysByHelperClassSource.computeIfAbsent(helperClassSource, source -> new ArrayList<>());
+            keys.add(key);
+            if (keys.size() > 1) {
+                return;
+            }
+            Optional<Method> cachedMethod = cache.flatMap(c -> c.get(helperClassSource));
+            if (cachedMethod.isPresent()) {
+                lambdaReturningMethods.put(helperClassSource, cachedMethod.get());
+                return;
+            }
+            LambdaCreationRecorder precompiledClassesRecorder = new LambdaCreationRecorder();
+            Optional<Method> precompiledMethod = getPrecompiledLambdaReturningMethod(helperClassSource,
+                    precompiledClassesRecorder.createdClassesListener());
+            if (precompiledMethod.isPresent()) {
+                try {
+                    warnAboutInlining(code, analyzeBytecode(precompiledClassesRecorder.getClassesBytes()));
+                } catch (InliningLimitExceededException e) {
+                    failures.put(key, new LambdaCreationException(e));
+                    return;
+                }
+                cache.ifPresent(c -> c.put(helperClassSource, precompiledMethod.get(),
+                        precompiledClassesRecorder.getClassCount(), precompiledClassesRecorder.getBytecodeSize()));
+                lambdaReturningMethods.put(helperClassSource, precompiledMethod.get());
+                return;
+            }
+            String batchClassName = helperProvider.getHelperClassName() + batchSourceCodes.size();
+            try {
+                batchSourceCodes.put(batchClassName, batchHelperProvider.getHelperClassSource(
+                        batchClassName, typeReference.toString(), code, imports, staticImports));
+                helperClassSourcesByBatchClassName.put(batchClassName, helperClassSource);
+            } catch (RuntimeException e) {
+                failures.put(key, new LambdaCreationException(e));
+            }
+        });
+
+        if (!batchSourceCodes.isEmpty() && javaCompiler == null) {
+            helperClassSourcesByBatchClassName.values().forEach(helperClassSource -> keysByHelperClassSource.get(helperClassSource)
+                    .forEach(key -> failures.put(key, new LambdaCreationException(new JavaCompilerNotFoundException()))));
+        } else if (!batchSourceCodes.isEmpty()) {
+            BatchCompilationResult batchResult = createHelperClasses(batchSourceCodes, typeReference);
+            helperClassSourcesByBatchClassName.forEach((batchClassName, helperClassSource) -> {
+                List<K> keys = keysByHelperClassSource.get(helperClassSource);
+                try {
+                    Class<?> helperClass = batchResult.getClasses().get(batchClassName);
+                    if (helperClass == null) {
+                        ClassCompilationException failure = batchResult.getFailures().get(batchClassName);
+                        keys.forEach(key -> failures.put(key, new LambdaCreationException(failure)));
+                        return;
+                    }
+                    Method lambdaReturningMethod = helperClass.getMethod(helperProvider.getLambdaReturningMethodName());
+                    Optional<Map<String, byte[]>> classBytes = batchResult.getClassBytes(batchClassName);
+                    Optional<LambdaBytecodeReport> report = analyzeBytecode(classBytes);
+                    keys.forEach(key -> warnAboutInlining(codes.get(key), report));
+                    cache.ifPresent(c -> c.put(helperClassSource, lambdaReturningMethod,
+                            classBytes.map(Map::size).orElse(1),
+                            classBytes.map(LambdaFactory::getBytecodeSize).orElse(0L)));
+                    lambdaReturningMethods.put(helperClassSource, lambdaReturningMethod);
+                } catch (ReflectiveOperationException | RuntimeException | NoClassDefFoundError e) {
+                    keys.forEach(key -> failures.put(key, new LambdaCreationException(e)));
+                }
+            });
+        }
+
+        Map<K, T> lambdas = new LinkedHashMap<>();
+        lambdaReturningMethods.forEach((helperClassSource, lambdaReturningMethod) -> {
+            for (K key : keysByHelperClassSource.get(helperClassSource)) {
+                try {
+                    @SuppressWarnings("unchecked")
+                    T lambda = (T) lambdaReturningMethod.invoke(null);
+                    lambdas.put(key, lambda);
+                } catch (ReflectiveOperationException | RuntimeException | NoClassDefFoundError e) {
+                    failures.put(key, new LambdaCreationException(e));
+                }
+            }
+        });
+        return new LambdaBatchResult<>(lambdas, failures);
+    }
+
+    private <K, T> LambdaBatchResult<K, T> createLambdasSeparately(Map<K, String> codes, TypeReference<T> typeReference) {
+        Map<K, T> lambdas = new LinkedHashMap<>();
+        Map<K, LambdaCreationException> failures = new LinkedHashMap<>();
+        codes.forEach((key, code) -> {
+            try {
+                lambdas.put(key, createCompiledLambda(code, typeReference));
+            } catch (LambdaCreationException e) {
+                failures.put(key, e);
+            }
+        });
+        return new LambdaBatchResult<>(lambdas, failures);
+    }
+
+    /**
+     * Returns the number of compilations that were avoided because the same lambda was already being compiled
+     * for another thread, which then shared the result.
+     */
+    public long getDeduplicatedCompilationCount() {
+        return deduplicatedCompilations.sum();
+    }
+
+    /**
+     * Returns current counters of the compiled lambda cache (see {@link LambdaFactoryConfiguration#withLambdaCacheSize(int)}).
+     */
+    public LambdaCacheStatistics getCacheStatistics() {
+        return cache.map(LambdaCache::getStatistics).orElseGet(() -> new LambdaCacheStatistics(0, 0, 0, 0, 0));
+    }
+
+    private static long getBytecodeSize(Map<String, byte[]> classesBytes) {
+        return classesBytes.values().stream().mapToLong(bytes -> bytes.length).sum();
+    }
+
+    private void analyzeBytecode(LambdaCreationRecorder recorder) {
+        analyzeBytecode(recorder.getClassesBytes()).ifPresent(recorder::bytecodeAnalyzed);
+    }
+
+    /**
+     * @return report of the created classes, empty if the inlining policy is IGNORE or the class factory didn't report the bytecode
+     * @throws InliningLimitExceededException if the policy is REJECT and the lambda body is too large to be inlined
+     */
+    private Optional<LambdaBytecodeReport> analyzeBytecode(Optional<Map<String, byte[]>> classesBytes) {
+        if (inliningPolicy == InliningPolicy.IGNORE) {
+            return Optional.empty();
+        }
+        Optional<LambdaBytecodeReport> report = classesBytes.map(LambdaBytecodeReport::analyze);
+        if (inliningPolicy == InliningPolicy.REJECT && report.filter(LambdaBytecodeReport::exceedsFreqInlineSize).isPresent()) {
+            throw new InliningLimitExceededException(report.get());
+        }
+        return report;
+    }
+
+    private void warnAboutInlining(String code, Optional<LambdaBytecodeReport> report) {
+        if (inliningPolicy == InliningPolicy.WARN) {
+            report.filter(LambdaBytecodeReport::exceedsFreqInlineSize).ifPresent(r ->
+                    listener.ifPresent(l -> notifyListener(() -> l.inliningLimitExceeded(code, r))));
+        }
+    }
+
+    private static void notifyListener(Runnable notification) {
+        try {
+            notification.run();
+        } catch (RuntimeException e) {
+            // a failing listener must not break lambda creation, which throws only LambdaCreationException
+        }
+    }
+
+    private Method getLambdaReturningMethod(String helperClassSource, TypeReference<?> typeReference, LambdaCreationRecorder recorder)
+            throws ClassCompilationException, NoSuchMethodException {
+        Optional<Method> cachedMethod = cache.flatMap(c -> c.get(helperClassSource));
+        if (cachedMethod.isPresent()) {
+            return cachedMethod.get();
+        }
+        Optional<Method> precompiledMethod = getPrecompiledLambdaReturningMethod(helperClassSource, recorder);
+        if (precompiledMethod.isPresent()) {
+            analyzeBytecode(recorder);
+            cache.ifPresent(c -> c.put(helperClassSource, precompiledMethod.get(),
+                    recorder.getClassCount(), recorder.getBytecodeSize()));
+            return precompiledMethod.get();
+        }
+        if (javaCompiler == null) {
+            throw new JavaCompilerNotFoundException();
+        }
+        // concurrent creations of the same lambda wait for a single compilation instead of running their own
+        CompletableFuture<Method> compilation = new CompletableFuture<>();
+        CompletableFuture<Method> inFlightCompilation = inFlightCompilations.putIfAbsent(helperClassSource, compilation);
+        if (inFlightCompilation != null) {
+            deduplicatedCompilations.increment();
+            return awaitCompilation(inFlightCompilation);
+        }
+        try {
+            recorder.classCompiled();
+            Class<?> helperClass = createHelperClass(helperClassSource, typeReference,
+                    listener.isPresent() ? recorder : recorder.createdClassesListener());
+            Method lambdaReturningMethod = helperClass.getMethod(helperProvider.getLambdaReturningMethodName());
+            analyzeBytecode(recorder);
+            cache.ifPresent(c -> c.put(helperClassSource, lambdaReturningMethod,
+                    recorder.getClassCount(), recorder.getBytecodeSize()));
+            compilation.complete(lambdaReturningMethod);
+            return lambdaReturningMethod;
+        } catch (ClassCompilationException | NoSuchMethodException | RuntimeException | Error e) {
+            compilation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCompilations.remove(helperClassSource, compilation);
+        }
+    }
+
+    private Class<?> createHelperClass(String helperClassSource, TypeReference<?> typeReference,
+                                       CompilationListener compilationListener) throws ClassCompilationException {
+        String classPath = classPathPruner.map(pruner -> pruner.getClassPath(typeReference)).orElse(compilationClassPath);
+        try {
+            return compile(compiler -> classFactory.createClass(helperProvider.getHelperClassName(), helperClassSource,
+                    compiler, javaVersion, classPath, compilerArguments, parentClassLoader, compilationListener));
+        } catch (ClassCompilationException e) {
+            if (classPath.equals(compilationClassPath)) {
+                throw e;
+            }
+            // the code may refer to classes outside of the reduced class path by their qualified names
+            Class<?> helperClass = compile(compiler -> classFactory.createClass(helperProvider.getHelperClassName(),
+                    helperClassSource, compiler, javaVersion, compilationClassPath, compilerArguments, parentClassLoader,
+                    compilationListener));
+            classPathPruner.ifPresent(pruner -> pruner.useFullClassPath(typeReference));
+            return helperClass;
+        }
+    }
+
+    private Optional<DelegatingLambdaClass> createDelegatingLambdaClass(Class<?> interfaceType) {
+        Optional<String> source = DelegatingLambdaClass.getSource(interfaceType);
+        if (!source.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> delegatingClass = compile(compiler -> classFactory.createClass(DelegatingLambdaClass.CLASS_NAME,
+                    source.get(), compiler, javaVersion, compilationClassPath, compilerArguments, parentClassLoader));
+            return Optional.of(new DelegatingLambdaClass(delegatingClass, interfaceType));
+        } catch (ClassCompilationException | ReflectiveOperationException | RuntimeException e) {
+            // e.g. the interface is not on the compilation class path, tiered lambdas of the interface are proxies then
+            return Optional.empty();
+        }
+    }
+
+    private BatchCompilationResult createHelperClasses(Map<String, String> sourceCodes, TypeReference<?> typeReference) {
+        String classPath = classPathPruner.map(pruner -> pruner.getClassPath(typeReference)).orElse(compilationClassPath);
+        BatchCompilationResult result = compileBatch(sourceCodes, classPath);
+        if (result.getFailures().isEmpty() || classPath.equals(compilationClassPath)) {
+            return result;
+        }
+        // failed classes are compiled again with the full class path, see createHelperClass
+        Map<String, String> failedSourceCodes = new LinkedHashMap<>();
+        result.getFailures().keySet().forEach(className -> failedSourceCodes.put(className, sourceCodes.get(className)));
+        BatchCompilationResult retryResult = compileBatch(failedSourceCodes, compilationClassPath);
+        if (!retryResult.getClasses().isEmpty()) {
+            classPathPruner.ifPresent(pruner -> pruner.useFullClassPath(typeReference));
+        }
+        Map<String, Class<?>> classes = new HashMap<>(result.getClasses());
+        classes.putAll(retryResult.getClasses());
+        Map<String, byte[]> classesBytes = new HashMap<>();
+        result.getClasses().keySet().forEach(className -> result.getClassBytes(className).ifPresent(classesBytes::putAll));
+        retryResult.getClasses().keySet().forEach(className -> retryResult.getClassBytes(className).ifPresent(classesBytes::putAll));
+        return new BatchCompilationResult(classes, retryResult.getFailures(), classesBytes);
+    }
+
+    private BatchCompilationResult compileBatch(Map<String, String> sourceCodes, String classPath) {
+        try {
+            return compile(compiler -> classFactory.createClasses(sourceCodes, compiler, javaVersion,
+                    classPath, compilerArguments, parentClassLoader));
+        } catch (ClassCompilationException e) {
+            Map<String, ClassCompilationException> failures = new HashMap<>();
+            sourceCodes.keySet().forEach(className -> failures.put(className, e));
+            return new BatchCompilationResult(new HashMap<>(), failures);
+        }
+    }
+
+    /**
+     * Runs the compilation with the compiler from the pool if it's enabled.
+     */
+    private <T> T compile(CompilerPool.Compilation<T, ClassCompilationException> compilation) throws ClassCompilationException {
+        if (!compilerPool.isPresent()) {
+            return compilation.compile(javaCompiler);
+        }
+        try {
+            return compilerPool.get().compile(compilation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClassCompilationException(e);
+        }
+    }
+
+    private void warmUpInBackground(CompilerPool pool) {
+        // a trivial lambda makes each compiler load its classes and open the class path
+        String helperClassSource = helperProvider.getHelperClassSource(Runnable.class.getName(), "() -> {}", imports, staticImports);
+        String classPath = classPathPruner.map(pruner -> pruner.getClassPath(RUNNABLE_TYPE)).orElse(compilationClassPath);
+        compilationExecutor.submit(() -> {
+            try {
+                pool.warmUp(compiler -> {
+                    try {
+                        classFactory.createClass(helperProvider.getHelperClassName(), helperClassSource, compiler,
+                                javaVersion, classPath, compilerArguments, parentClassLoader);
+                    } catch (ClassCompilationException | RuntimeException e) {
+                        // real compilations will report the problem
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+    }
+
+    private Optional<Method> getPrecompiledLambdaReturningMethod(String helperClassSource, CompilationListener compilationListener) {
+        if (precompiledClasses.isEmpty()) {
+            return Optional.empty();
+        }
+        String helperClassName = helperProvider.getHelperClassName();
+        Optional<Map<String, byte[]>> classes = precompiledClasses.get(
+                PrecompiledClasses.getKey(helperClassName, helperClassSource, javaVersion, compilerArguments));
+        if (!classes.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            compilationListener.classesCreated(classes.get());
+            Class<?> helperClass = classFactory.defineClass(helperClassName, classes.get(), parentClassLoader);
+            return Optional.of(helperClass.getMethod(helperProvider.getLambdaReturningMethodName()));
+        } catch (ClassCompilationException | NoSuchMethodException | RuntimeException e) {
+            // e.g. the class references classes missing from the parent class loader, it's compiled again
+            return Optional.empty();
+        }
+    }
+
+    private static Method awaitCompilation(CompletableFuture<Method> compilation) throws ClassCompilationException, NoSuchMethodException {
+        try {
+            return compilation.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClassCompilationException) {
+                throw (ClassCompilationException) cause;
+            } else if (cause instanceof NoSuchMethodException) {
+                throw (NoSuchMethodException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
     /**
      * Convenience wrapper for {@link #createLambda(String, TypeReference)}
      * which throws unchecked exception instead of checked one.
@@ -105,4 +920,12 @@ public class LambdaFactory {
             throw new LambdaCreationRuntimeException(e);
         }
     }
+
+    /**
+     * Creation of a lambda (or an object holding it) recording its metrics, see {@link #withMetrics(String, RecordedCreation)}.
+     */
+    @FunctionalInterface
+    private interface RecordedCreation<T> {
+        T create(LambdaCreationRecorder recorder) throws LambdaCreationException;
+    }
 }
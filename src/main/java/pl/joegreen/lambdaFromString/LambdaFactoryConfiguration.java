@@ -11,8 +11,8 @@ import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.concat;
 
 public class LambdaFactoryConfiguration {
-    protected static Optional<JavaCompiler> DEFAULT_COMPILER = JavaCompilerProvider.findDefaultJavaCompiler();
     protected static final int FALLBACK_JAVA_VERSION = 8;
+    protected static final int DEFAULT_COMPILATION_QUEUE_SIZE = 256;
 
 
     private HelperClassSourceProvider helperClassSourceProvider;
@@ -22,8 +22,18 @@ public class LambdaFactoryConfiguration {
     private String compilationClassPath;
     private ClassLoader parentClassLoader;
     private JavaCompiler javaCompiler;
+    private boolean defaultJavaCompiler;
     private List<String> compilerArguments;
     private int javaVersion;
+    private int lambdaCacheSize;
+    private int compilationThreads;
+    private int compilationQueueSize;
+    private LambdaFactoryListener listener;
+    private int tieredCompilationThreshold;
+    private boolean compilationClassPathPruning;
+    private int compilerPoolSize;
+    private MetaspaceBudget metaspaceBudget;
+    private InliningPolicy inliningPolicy;
 
     public static LambdaFactoryConfiguration get() {
         return new LambdaFactoryConfiguration();
@@ -36,9 +46,19 @@ public class LambdaFactoryConfiguration {
         imports = Collections.unmodifiableList(new ArrayList<>());
         compilationClassPath = ClassPathExtractor.getJavaPropertyClassPath();
         parentClassLoader = this.getClass().getClassLoader();
-        javaCompiler = DEFAULT_COMPILER.orElse(null);
+        javaCompiler = null;
+        defaultJavaCompiler = true;
         compilerArguments = Collections.unmodifiableList(new ArrayList<>());
         javaVersion = getJavaVersionSafe();
+        lambdaCacheSize = 0;
+        compilationThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        compilationQueueSize = DEFAULT_COMPILATION_QUEUE_SIZE;
+        listener = null;
+        tieredCompilationThreshold = 0;
+        compilationClassPathPruning = false;
+        compilerPoolSize = 0;
+        metaspaceBudget = null;
+        inliningPolicy = InliningPolicy.IGNORE;
     }
 
     private static int getJavaVersionSafe() {
@@ -57,9 +77,18 @@ public class LambdaFactoryConfiguration {
                 .setImports(imports)
                 .setCompilationClassPath(compilationClassPath)
                 .setParentClassLoader(parentClassLoader)
-                .setJavaCompiler(javaCompiler)
+                .setJavaCompiler(javaCompiler, defaultJavaCompiler)
                 .setCompilerArguments(compilerArguments)
-                .setJavaVersion(javaVersion);
+                .setJavaVersion(javaVersion)
+                .setLambdaCacheSize(lambdaCacheSize)
+                .setCompilationThreads(compilationThreads)
+                .setCompilationQueueSize(compilationQueueSize)
+                .setListener(listener)
+                .setTieredCompilationThreshold(tieredCompilationThreshold)
+                .setCompilationClassPathPruning(compilationClassPathPruning)
+                .setCompilerPoolSize(compilerPoolSize)
+                .setMetaspaceBudget(metaspaceBudget)
+                .setInliningPolicy(inliningPolicy);
     }
 
 
@@ -87,8 +116,12 @@ public class LambdaFactoryConfiguration {
         return parentClassLoader;
     }
 
+    /**
+     * Returns the compiler set with {@link #withJavaCompiler(JavaCompiler)} or the default one, which is looked up
+     * (and its classes are loaded) only when it's needed for the first time.
+     */
     public JavaCompiler getJavaCompiler() {
-        return javaCompiler;
+        return defaultJavaCompiler ? DefaultJavaCompilerHolder.DEFAULT_COMPILER.orElse(null) : javaCompiler;
     }
 
     public List<String> getCompilerArguments() {
@@ -99,6 +132,42 @@ public class LambdaFactoryConfiguration {
         return javaVersion;
     }
 
+    public int getLambdaCacheSize() {
+        return lambdaCacheSize;
+    }
+
+    public int getCompilationThreads() {
+        return compilationThreads;
+    }
+
+    public int getCompilationQueueSize() {
+        return compilationQueueSize;
+    }
+
+    public LambdaFactoryListener getListener() {
+        return listener;
+    }
+
+    public int getTieredCompilationThreshold() {
+        return tieredCompilationThreshold;
+    }
+
+    public boolean isCompilationClassPathPruningEnabled() {
+        return compilationClassPathPruning;
+    }
+
+    public int getCompilerPoolSize() {
+        return compilerPoolSize;
+    }
+
+    public MetaspaceBudget getMetaspaceBudget() {
+        return metaspaceBudget;
+    }
+
+    public InliningPolicy getInliningPolicy() {
+        return inliningPolicy;
+    }
+
     /**
      * Changes helperClassSourceProvider which provides a code template for the class to be compiled. <br>
      * Should be used only in rare cases when you cannot get the exact functionality
@@ -168,7 +237,7 @@ public class LambdaFactoryConfiguration {
      * that some changes will have to be made in the class factory ({@link #withClassFactory(ClassFactory)}).
      */
     public LambdaFactoryConfiguration withJavaCompiler(JavaCompiler javaCompiler) {
-        return copy().setJavaCompiler(javaCompiler);
+        return copy().setJavaCompiler(javaCompiler, false);
     }
 
     /**
@@ -187,6 +256,126 @@ public class LambdaFactoryConfiguration {
         return copy().setJavaVersion(javaVersion);
     }
 
+    /**
+     * Enables the cache of compiled helper classes. Creating a lambda from code that was already compiled
+     * by the same LambdaFactory (with the same type) will reuse the compiled class instead of running the compiler again.
+     * When the cache holds more than the given number of classes, the least recently used ones are evicted.
+     * By default the cache size is 0 which means that the cache is disabled.
+     */
+    public LambdaFactoryConfiguration withLambdaCacheSize(int lambdaCacheSize) {
+        if (lambdaCacheSize < 0) {
+            throw new IllegalArgumentException("Lambda cache size cannot be negative: " + lambdaCacheSize);
+        }
+        return copy().setLambdaCacheSize(lambdaCacheSize);
+    }
+
+    /**
+     * Sets the maximum number of threads compiling lambdas created with
+     * {@link LambdaFactory#createLambdaAsync(String, TypeReference)}. By default it's half of the available processors.
+     */
+    public LambdaFactoryConfiguration withCompilationThreads(int compilationThreads) {
+        if (compilationThreads < 1) {
+            throw new IllegalArgumentException("Number of compilation threads has to be positive: " + compilationThreads);
+        }
+        return copy().setCompilationThreads(compilationThreads);
+    }
+
+    /**
+     * Sets the maximum number of asynchronous lambda creations waiting for a compilation thread.
+     * When the queue is full, new asynchronous creations fail immediately. The default is
+     * {@value #DEFAULT_COMPILATION_QUEUE_SIZE}.
+     */
+    public LambdaFactoryConfiguration withCompilationQueueSize(int compilationQueueSize) {
+        if (compilationQueueSize < 1) {
+            throw new IllegalArgumentException("Compilation queue size has to be positive: " + compilationQueueSize);
+        }
+        return copy().setCompilationQueueSize(compilationQueueSize);
+    }
+
+    /**
+     * Sets a listener receiving metrics of every created lambda: durations of creation phases (including javac phases
+     * when the JDK compiler is used), bytecode size and numbers of compiler errors and warnings.
+     * By default there is no listener.
+     */
+    public LambdaFactoryConfiguration withListener(LambdaFactoryListener listener) {
+        return copy().setListener(listener);
+    }
+
+    /**
+     * Enables tiered compilation. Lambdas with code supported by the interpreter (expressions with arithmetic, comparison,
+     * logical and conditional operators on int, long, double and boolean values, see
+     * {@link pl.joegreen.lambdaFromString.interpreter.LambdaInterpreter}) are returned immediately without compilation
+     * and interpreted. After the given number of invocations, such a lambda is compiled in the background (like with
+     * {@link LambdaFactory#createLambdaAsync(String, TypeReference)}) and then the compiled code is used.
+     * Other lambdas are compiled immediately, as usual. <br>
+     * Tiered lambdas delegate their calls through a volatile field of a class generated for the interface, which points
+     * to the compiled lambda after the compilation. Only lambdas of non-public interfaces are implemented with
+     * {@link java.lang.reflect.Proxy}, so each of their calls has a small reflective overhead also after the compilation.
+     * The listener ({@link #withListener(LambdaFactoryListener)}) is notified when the lambda is compiled. By default the threshold is 0 which means that tiered compilation is disabled.
+     */
+    public LambdaFactoryConfiguration withTieredCompilation(int invocationThreshold) {
+        if (invocationThreshold < 0) {
+            throw new IllegalArgumentException("Tiered compilation threshold cannot be negative: " + invocationThreshold);
+        }
+        return copy().setTieredCompilationThreshold(invocationThreshold);
+    }
+
+    /**
+     * Enables or disables compilation class path pruning. When it's enabled, lambdas are compiled with the compilation
+     * class path ({@link #withCompilationClassPath(String)}) reduced to the entries that contain the imported classes
+     * and packages and the classes used in the lambda type (with their supertypes), which makes compilation faster
+     * when the class path is long. The reduced class path is computed once for each lambda type. If a lambda cannot
+     * be compiled with the reduced class path (e.g. because it refers to another class by its qualified name),
+     * it's compiled again with the full one, which is then used for all lambdas of that type.
+     * By default pruning is disabled.
+     */
+    public LambdaFactoryConfiguration withCompilationClassPathPruning(boolean enabled) {
+        return copy().setCompilationClassPathPruning(enabled);
+    }
+
+    /**
+     * Enables the pool of compilers (see {@link pl.joegreen.lambdaFromString.classFactory.CompilerPool}) with the given
+     * number of compiler instances. Each compilation borrows its own compiler (with its own file managers), so parallel
+     * compilations don't contend for them, and at most that many compilations run in parallel. The compilers are warmed up
+     * in the background when the factory is created. A good size is the number of cores that can be used for compilation.
+     * By default the size is 0 which means that the pool is disabled and all compilations share the same compiler
+     * without any limit.
+     */
+    public LambdaFactoryConfiguration withCompilerPoolSize(int compilerPoolSize) {
+        if (compilerPoolSize < 0) {
+            throw new IllegalArgumentException("Compiler pool size cannot be negative: " + compilerPoolSize);
+        }
+        return copy().setCompilerPoolSize(compilerPoolSize);
+    }
+
+    /**
+     * Limits classes held by the cache of compiled helper classes (see {@link #withLambdaCacheSize(int)}) to the given number
+     * of classes or bytes of bytecode. Cached classes are grouped into generations and when the budget is exceeded
+     * the least recently used generations are removed from the cache together, so their classes can be unloaded
+     * as soon as the application doesn't use their lambdas. Removed lambdas are compiled again when they are created.
+     * The budget enables the cache also when its size is not set. By default there is no budget.
+     *
+     * @param metaspaceBudget budget or null to remove it
+     */
+    public LambdaFactoryConfiguration withMetaspaceBudget(MetaspaceBudget metaspaceBudget) {
+        return copy().setMetaspaceBudget(metaspaceBudget);
+    }
+
+    /**
+     * Sets what happens when the body of a compiled lambda is too large to be inlined by the JIT compiler. Unless
+     * the policy is {@link InliningPolicy#IGNORE}, the classes compiled or precompiled for each lambda are analyzed
+     * (see {@link LambdaBytecodeReport}) before the lambda is created. Lambdas taken from the compiled lambda cache
+     * are not analyzed again. Lambdas created by class factories which don't report the created bytecode
+     * (see {@link pl.joegreen.lambdaFromString.classFactory.CompilationListener#classesCreated(java.util.Map)})
+     * are never analyzed. By default the policy is {@link InliningPolicy#IGNORE}.
+     */
+    public LambdaFactoryConfiguration withInliningPolicy(InliningPolicy inliningPolicy) {
+        if (inliningPolicy == null) {
+            throw new IllegalArgumentException("Inlining policy cannot be null, use InliningPolicy.IGNORE to disable it");
+        }
+        return copy().setInliningPolicy(inliningPolicy);
+    }
+
     private LambdaFactoryConfiguration setDefaultHelperClassSourceProvider(HelperClassSourceProvider helperClassSourceProvider) {
         this.helperClassSourceProvider = helperClassSourceProvider;
         return this;
@@ -217,8 +406,9 @@ public class LambdaFactoryConfiguration {
         return this;
     }
 
-    private LambdaFactoryConfiguration setJavaCompiler(JavaCompiler javaCompiler) {
+    private LambdaFactoryConfiguration setJavaCompiler(JavaCompiler javaCompiler, boolean defaultJavaCompiler) {
         this.javaCompiler = javaCompiler;
+        this.defaultJavaCompiler = defaultJavaCompiler;
         return this;
     }
 
@@ -232,6 +422,51 @@ public class LambdaFactoryConfiguration {
         return this;
     }
 
+    private LambdaFactoryConfiguration setLambdaCacheSize(int lambdaCacheSize) {
+        this.lambdaCacheSize = lambdaCacheSize;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setCompilationThreads(int compilationThreads) {
+        this.compilationThreads = compilationThreads;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setCompilationQueueSize(int compilationQueueSize) {
+        this.compilationQueueSize = compilationQueueSize;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setListener(LambdaFactoryListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setTieredCompilationThreshold(int tieredCompilationThreshold) {
+        this.tieredCompilationThreshold = tieredCompilationThreshold;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setCompilationClassPathPruning(boolean compilationClassPathPruning) {
+        this.compilationClassPathPruning = compilationClassPathPruning;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setCompilerPoolSize(int compilerPoolSize) {
+        this.compilerPoolSize = compilerPoolSize;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setMetaspaceBudget(MetaspaceBudget metaspaceBudget) {
+        this.metaspaceBudget = metaspaceBudget;
+        return this;
+    }
+
+    private LambdaFactoryConfiguration setInliningPolicy(InliningPolicy inliningPolicy) {
+        this.inliningPolicy = inliningPolicy;
+        return this;
+    }
+
     private static <T> List<T> listWithNewElements(List<T> oldList, T... newElements) {
         return Collections.unmodifiableList(concat(oldList.stream(), Arrays.stream(newElements)).collect(toList()));
     }
@@ -242,18 +477,39 @@ public class LambdaFactoryConfiguration {
         if (o == null || getClass() != o.getClass()) return false;
         LambdaFactoryConfiguration that = (LambdaFactoryConfiguration) o;
         return javaVersion == that.javaVersion &&
+                lambdaCacheSize == that.lambdaCacheSize &&
+                compilationThreads == that.compilationThreads &&
+                compilationQueueSize == that.compilationQueueSize &&
+                tieredCompilationThreshold == that.tieredCompilationThreshold &&
+                compilationClassPathPruning == that.compilationClassPathPruning &&
+                compilerPoolSize == that.compilerPoolSize &&
                 Objects.equals(helperClassSourceProvider, that.helperClassSourceProvider) &&
                 Objects.equals(classFactory, that.classFactory) &&
                 Objects.equals(staticImports, that.staticImports) &&
                 Objects.equals(imports, that.imports) &&
                 Objects.equals(compilationClassPath, that.compilationClassPath) &&
                 Objects.equals(parentClassLoader, that.parentClassLoader) &&
+                // the configured compiler is compared, so comparing configurations doesn't look up the default one
+                defaultJavaCompiler == that.defaultJavaCompiler &&
                 Objects.equals(javaCompiler, that.javaCompiler) &&
-                Objects.equals(compilerArguments, that.compilerArguments);
+                Objects.equals(compilerArguments, that.compilerArguments) &&
+                Objects.equals(listener, that.listener) &&
+                Objects.equals(metaspaceBudget, that.metaspaceBudget) &&
+                inliningPolicy == that.inliningPolicy;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(helperClassSourceProvider, classFactory, staticImports, imports, compilationClassPath, parentClassLoader, javaCompiler, compilerArguments, javaVersion);
+        return Objects.hash(helperClassSourceProvider, classFactory, staticImports, imports, compilationClassPath, parentClassLoader, javaCompiler, defaultJavaCompiler, compilerArguments, javaVersion, lambdaCacheSize,
+                compilationThreads, compilationQueueSize, listener, tieredCompilationThreshold,
+                compilationClassPathPruning, compilerPoolSize, metaspaceBudget, inliningPolicy);
+    }
+
+    /**
+     * Holds the default compiler, so that it's looked up when it's used for the first time instead of
+     * when the configuration class is loaded.
+     */
+    private static class DefaultJavaCompilerHolder {
+        private static final Optional<JavaCompiler> DEFAULT_COMPILER = JavaCompilerProvider.findDefaultJavaCompiler();
     }
 }
@@ -0,0 +1,39 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Receives metrics of every lambda created by {@link LambdaFactory#createLambda(String, TypeReference)}
+ * (also when it's called by {@link LambdaFactory#createLambdaAsync(String, TypeReference)}). It can be used to
+ * find slow compilations and the lambda codes causing them. <br>
+ * Methods are called on the thread creating the lambda, so they should return quickly. Exceptions thrown by them
+ * are ignored.
+ */
+public interface LambdaFactoryListener {
+    /**
+     * Called after a lambda was created successfully.
+     */
+    default void lambdaCreated(LambdaCreationMetrics metrics) {
+    }
+
+    /**
+     * Called after a lambda creation failed, before the exception is thrown to the caller.
+     * Metrics contain the phases which were finished before the failure.
+     */
+    default void lambdaCreationFailed(LambdaCreationMetrics metrics, LambdaCreationException exception) {
+    }
+
+    /**
+     * Called after {@link LambdaFactory#warmUp()} (or {@link LambdaFactory#warmUpAsync()}) compiled all the warm-up lambdas.
+     *
+     * @param durationNanos duration of the whole warm-up
+     */
+    default void warmUpFinished(long durationNanos) {
+    }
+
+    /**
+     * Called when the body of a created lambda is too large to be inlined by the JIT compiler,
+     * if the factory uses {@link InliningPolicy#WARN}. Also called for lambdas created by
+     * {@link LambdaFactory#createLambdas(java.util.Map, TypeReference)}.
+     */
+    default void inliningLimitExceeded(String code, LambdaBytecodeReport report) {
+    }
+}
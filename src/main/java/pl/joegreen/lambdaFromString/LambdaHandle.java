@@ -0,0 +1,66 @@
+package pl.joegreen.lambdaFromString;
+
+/**
+ * Lambda created by {@link LambdaFactory#createLambdaHandle(String, TypeReference)} together with the class loader
+ * of its class and the size of its bytecode. The factory doesn't keep any references to the class of such lambda,
+ * so after {@link #close()} the class (and its class loader) can be unloaded as soon as the application drops
+ * its own references to the lambda and the objects created by it.
+ *
+ * @param <T> type of the lambda
+ */
+public final class LambdaHandle<T> implements AutoCloseable {
+    private volatile T lambda;
+    private volatile ClassLoader classLoader;
+    private final int bytecodeSize;
+
+    LambdaHandle(T lambda, ClassLoader classLoader, int bytecodeSize) {
+        this.lambda = lambda;
+        this.classLoader = classLoader;
+        this.bytecodeSize = bytecodeSize;
+    }
+
+    /**
+     * @throws IllegalStateException if the handle is closed
+     */
+    public T getLambda() {
+        T lambda = this.lambda;
+        if (lambda == null) {
+            throw new IllegalStateException("Lambda handle is closed");
+        }
+        return lambda;
+    }
+
+    /**
+     * Returns the class loader that defined the helper class of the lambda.
+     *
+     * @throws IllegalStateException if the handle is closed
+     */
+    public ClassLoader getClassLoader() {
+        ClassLoader classLoader = this.classLoader;
+        if (classLoader == null) {
+            throw new IllegalStateException("Lambda handle is closed");
+        }
+        return classLoader;
+    }
+
+    /**
+     * Returns the total size in bytes of the classes created for the lambda, which approximates the metaspace
+     * they occupy.
+     */
+    public int getBytecodeSize() {
+        return bytecodeSize;
+    }
+
+    public boolean isClosed() {
+        return lambda == null;
+    }
+
+    /**
+     * Drops the references to the lambda and its class loader. Closing a closed handle has no effect.
+     */
+    @Override
+    public void close() {
+        lambda = null;
+        classLoader = null;
+    }
+}
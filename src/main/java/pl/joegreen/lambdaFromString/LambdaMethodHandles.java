@@ -0,0 +1,74 @@
+package pl.joegreen.lambdaFromString;
+
+import org.apache.commons.lang3.reflect.TypeUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Creates method handles calling the functional interface method of compiled lambdas.
+ */
+final class LambdaMethodHandles {
+
+    private LambdaMethodHandles() {
+    }
+
+    /**
+     * Returns a handle calling the interface method of the lambda, with the parameter and return types resolved
+     * from the lambda type (e.g. {@code (Integer)Integer} for {@code Function<Integer, Integer>}). Type arguments
+     * which are wildcards or type variables are erased to their bounds.
+     *
+     * @throws IllegalArgumentException if the type is not a functional interface
+     * @throws IllegalAccessException   if the interface is not public
+     */
+    static MethodHandle bind(Object lambda, Type lambdaType) throws IllegalAccessException {
+        Class<?> interfaceType = TypeUtils.getRawType(lambdaType, null);
+        Method interfaceMethod = findInterfaceMethod(interfaceType);
+        Type[] genericParameterTypes = interfaceMethod.getGenericParameterTypes();
+        Class<?>[] parameterTypes = new Class<?>[genericParameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = resolveType(genericParameterTypes[i], lambdaType, interfaceMethod.getParameterTypes()[i]);
+        }
+        Class<?> returnType = resolveType(interfaceMethod.getGenericReturnType(), lambdaType, interfaceMethod.getReturnType());
+        return MethodHandles.publicLookup().unreflect(interfaceMethod)
+                .bindTo(lambda)
+                .asType(MethodType.methodType(returnType, parameterTypes));
+    }
+
+    private static Method findInterfaceMethod(Class<?> interfaceType) {
+        if (interfaceType == null || !interfaceType.isInterface()) {
+            throw new IllegalArgumentException("Not a functional interface: " + interfaceType);
+        }
+        List<Method> abstractMethods = Arrays.stream(interfaceType.getMethods())
+                .filter(method -> Modifier.isAbstract(method.getModifiers()))
+                // interfaces can redeclare methods of Object (e.g. Comparator#equals)
+                .filter(method -> !isObjectMethod(method))
+                .collect(Collectors.toList());
+        if (abstractMethods.size() != 1) {
+            throw new IllegalArgumentException("Not a functional interface: " + interfaceType);
+        }
+        return abstractMethods.get(0);
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> resolveType(Type type, Type lambdaType, Class<?> erasedType) {
+        // null for wildcards and for type variables not bound by the lambda type
+        return Optional.<Class<?>>ofNullable(TypeUtils.getRawType(type, lambdaType)).orElse(erasedType);
+    }
+}
@@ -0,0 +1,80 @@
+package pl.joegreen.lambdaFromString;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.TypeUtils;
+
+import javax.lang.model.SourceVersion;
+import java.lang.reflect.Type;
+
+/**
+ * Named and typed parameter of a parameterized lambda (see
+ * {@link LambdaFactory#createParameterizedLambda(String, TypeReference, LambdaParameter[])}).
+ * The code of the lambda uses it as a final local variable.
+ *
+ * @param <T> type of the parameter values
+ */
+public final class LambdaParameter<T> {
+    private final String name;
+    private final Type type;
+
+    private LambdaParameter(String name, Type type) {
+        if (!SourceVersion.isName(name) || name.contains(".")) {
+            throw new IllegalArgumentException("Parameter name has to be a Java identifier: " + name);
+        }
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * @param type class of the parameter, can be primitive (e.g. {@code int.class}) and then the values are its boxes
+     * @throws IllegalArgumentException if the name is not a Java identifier
+     */
+    public static <T> LambdaParameter<T> of(String name, Class<T> type) {
+        return new LambdaParameter<>(name, type);
+    }
+
+    /**
+     * @param type generic type of the parameter, for example {@code new TypeReference<List<String>>() {}}
+     * @throws IllegalArgumentException if the name is not a Java identifier
+     */
+    public static <T> LambdaParameter<T> of(String name, TypeReference<T> type) {
+        return new LambdaParameter<>(name, type.getType());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns true if the value can be bound to this parameter. Only the raw class of generic types is checked.
+     */
+    boolean accepts(Object value) {
+        Class<?> rawType = TypeUtils.getRawType(type, null);
+        if (rawType == null) {
+            return true;
+        }
+        if (rawType.isPrimitive()) {
+            return value != null && ClassUtils.primitiveToWrapper(rawType).isInstance(value);
+        }
+        return value == null || rawType.isInstance(value);
+    }
+
+    /**
+     * Returns the declaration of the local variable reading the parameter value from the array with the given name.
+     */
+    String renderDeclaration(String valuesArrayName, int index) {
+        String typeName = TypeUtils.toString(type);
+        String castTypeName = type instanceof Class && ((Class<?>) type).isPrimitive()
+                ? ClassUtils.primitiveToWrapper((Class<?>) type).getName() : typeName;
+        return "final " + typeName + " " + name + " = (" + castTypeName + ") " + valuesArrayName + "[" + index + "];";
+    }
+
+    @Override
+    public String toString() {
+        return TypeUtils.toString(type) + " " + name;
+    }
+}
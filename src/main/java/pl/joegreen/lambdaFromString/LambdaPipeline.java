@@ -0,0 +1,244 @@
+package pl.joegreen.lambdaFromString;
+
+import org.apache.commons.lang3.reflect.TypeUtils;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Chain of map and filter stages written as lambdas with expression bodies, compiled into a single lambda.
+ * Expressions of all the stages are inlined into one method of one helper class, so each element goes through
+ * a single call instead of a call for each stage. Intermediate results of boxed primitive types (e.g. Integer)
+ * are kept in primitive variables if the expressions allow it. <br>
+ * Pipelines are immutable, each stage returns a new pipeline:
+ * <pre>
+ * {@code
+ * Function<Iterable<? extends Integer>, Long> sumOfSquares = LambdaPipeline.of(new TypeReference<Integer>() {})
+ *         .filter("x -> x % 2 == 0")
+ *         .map("x -> (long) x * x", new TypeReference<Long>() {})
+ *         .createReduction(factory, "0L", "(sum, x) -> sum + x", new TypeReference<Long>() {});
+ * }
+ * </pre>
+ *
+ * @param <I> type of the pipeline input elements
+ * @param <O> type of the elements produced by the last stage
+ */
+public final class LambdaPipeline<I, O> {
+    private static final Map<Class<?>, String> PRIMITIVES_BY_BOXES = new HashMap<>();
+
+    static {
+        PRIMITIVES_BY_BOXES.put(Integer.class, "int");
+        PRIMITIVES_BY_BOXES.put(Long.class, "long");
+        PRIMITIVES_BY_BOXES.put(Double.class, "double");
+        PRIMITIVES_BY_BOXES.put(Float.class, "float");
+        PRIMITIVES_BY_BOXES.put(Short.class, "short");
+        PRIMITIVES_BY_BOXES.put(Byte.class, "byte");
+        PRIMITIVES_BY_BOXES.put(Character.class, "char");
+        PRIMITIVES_BY_BOXES.put(Boolean.class, "boolean");
+    }
+
+    private final Type inputType;
+    private final Type outputType;
+    private final List<Stage> stages;
+
+    private LambdaPipeline(Type inputType, Type outputType, List<Stage> stages) {
+        this.inputType = inputType;
+        this.outputType = outputType;
+        this.stages = stages;
+    }
+
+    /**
+     * Creates a pipeline without any stages for elements of the given type.
+     */
+    public static <I> LambdaPipeline<I, I> of(TypeReference<I> inputType) {
+        return new LambdaPipeline<>(inputType.getType(), inputType.getType(), Collections.emptyList());
+    }
+
+    /**
+     * Adds a stage transforming each element.
+     *
+     * @param code       lambda with one parameter and an expression body, for example {@code x -> x * 2}
+     * @param outputType type of the expression
+     * @throws IllegalArgumentException if the code is not a lambda with one parameter and an expression body
+     */
+    public <R> LambdaPipeline<I, R> map(String code, TypeReference<R> outputType) {
+        return new LambdaPipeline<>(inputType, outputType.getType(),
+                withStage(new Stage(ExpressionLambdaCode.parse(code, 1), Optional.of(outputType.getType()))));
+    }
+
+    /**
+     * Adds a stage passing only the elements for which the expression is true to the next stages.
+     *
+     * @param code lambda with one parameter and a boolean expression body, for example {@code x -> x > 0}
+     * @throws IllegalArgumentException if the code is not a lambda with one parameter and an expression body
+     */
+    public LambdaPipeline<I, O> filter(String code) {
+        return new LambdaPipeline<>(inputType, outputType, withStage(new Stage(ExpressionLambdaCode.parse(code, 1), Optional.empty())));
+    }
+
+    /**
+     * Compiles the pipeline into a function returning the result of the last stage for an element.
+     *
+     * @throws IllegalStateException   if the pipeline contains filters (use {@link #createConsumer} or {@link #createReduction})
+     * @throws LambdaCreationException if the stages cannot be compiled (see {@link LambdaFactory#createLambda(String, TypeReference)})
+     */
+    public Function<I, O> createFunction(LambdaFactory factory) throws LambdaCreationException {
+        if (stages.stream().anyMatch(Stage::isFilter)) {
+            throw new IllegalStateException("Pipeline with filters cannot be compiled into a function");
+        }
+        TypeReference<Function<I, O>> type = new TypeReference<Function<I, O>>(
+                TypeUtils.parameterize(Function.class, inputType, outputType)) {
+        };
+        return create(factory, type, primitiveLocals -> {
+            StringBuilder code = new StringBuilder("$0 -> {\n");
+            String result = renderStages(code, "    ", primitiveLocals, "return null;");
+            return code.append("    return ").append(result).append(";\n}").toString();
+        });
+    }
+
+    /**
+     * Compiles the pipeline into a consumer passing the results of the last stage for elements that went through
+     * all the filters to the downstream consumer.
+     *
+     * @throws LambdaCreationException if the stages cannot be compiled (see {@link LambdaFactory#createLambda(String, TypeReference)})
+     */
+    public Consumer<I> createConsumer(LambdaFactory factory, Consumer<? super O> downstream) throws LambdaCreationException {
+        // the compiled lambda doesn't depend on the downstream consumer, which is passed to it after the creation
+        TypeReference<Function<Consumer<? super O>, Consumer<I>>> type = new TypeReference<Function<Consumer<? super O>, Consumer<I>>>(
+                TypeUtils.parameterize(Function.class,
+                        TypeUtils.parameterize(Consumer.class, TypeUtils.wildcardType().withLowerBounds(outputType).build()),
+                        TypeUtils.parameterize(Consumer.class, inputType))) {
+        };
+        return create(factory, type, primitiveLocals -> {
+            StringBuilder code = new StringBuilder("$downstream -> $0 -> {\n");
+            String result = renderStages(code, "    ", primitiveLocals, "return;");
+            return code.append("    $downstream.accept(").append(result).append(");\n}").toString();
+        }).apply(downstream);
+    }
+
+    /**
+     * Compiles the pipeline into a function reducing results of the last stage for all the elements that went through
+     * all the filters. The whole loop over the elements is in the compiled method.
+     *
+     * @param identityCode    expression of the initial result, for example {@code 0}
+     * @param accumulatorCode lambda with two parameters (the current result and the result of the last stage)
+     *                        and an expression body, for example {@code (sum, x) -> sum + x}
+     * @param resultType      type of the result
+     * @throws IllegalArgumentException if the accumulator is not a lambda with two parameters and an expression body
+     * @throws LambdaCreationException  if the stages cannot be compiled (see {@link LambdaFactory#createLambda(String, TypeReference)})
+     */
+    public <R> Function<Iterable<? extends I>, R> createReduction(LambdaFactory factory, String identityCode, String accumulatorCode,
+                                                                  TypeReference<R> resultType) throws LambdaCreationException {
+        ExpressionLambdaCode accumulator = ExpressionLambdaCode.parse(accumulatorCode, 2);
+        TypeReference<Function<Iterable<? extends I>, R>> type = new TypeReference<Function<Iterable<? extends I>, R>>(
+                TypeUtils.parameterize(Function.class,
+                        TypeUtils.parameterize(Iterable.class, TypeUtils.wildcardType().withUpperBounds(inputType).build()),
+                        resultType.getType())) {
+        };
+        return create(factory, type, primitiveLocals -> {
+            String resultTypeName = getTypeName(resultType.getType(), primitiveLocals);
+            StringBuilder code = new StringBuilder("$elements -> {\n")
+                    .append("    ").append(resultTypeName).append(" $result = (").append(identityCode).append("\n);\n")
+                    .append("    for (").append(getTypeName(inputType, false)).append(" $0 : $elements) {\n");
+            String result = renderStages(code, "        ", primitiveLocals, "continue;");
+            code.append("        {\n")
+                    .append("            ").append(resultTypeName).append(" ")
+                    .append(accumulator.getParameterNames().get(0)).append(" = $result;\n")
+                    .append("            ").append(getTypeName(outputType, primitiveLocals)).append(" ")
+                    .append(accumulator.getParameterNames().get(1)).append(" = ").append(result).append(";\n")
+                    .append("            $result = ").append(accumulator.getParenthesizedBody()).append(";\n")
+                    .append("        }\n")
+                    .append("    }\n")
+                    .append("    return $result;\n")
+                    .append("}");
+            return code.toString();
+        });
+    }
+
+    private <T> T create(LambdaFactory factory, TypeReference<T> type, Function<Boolean, String> codeRenderer)
+            throws LambdaCreationException {
+        if (hasBoxedPrimitiveTypes()) {
+            // expressions may use methods of the boxes or nulls, then the code with boxed variables is compiled
+            Optional<T> lambda = factory.tryCreateCompiledLambda(codeRenderer.apply(true), type);
+            if (lambda.isPresent()) {
+                return lambda.get();
+            }
+        }
+        return factory.createLambda(codeRenderer.apply(false), type);
+    }
+
+    /**
+     * Appends the stages reading the input element from the $0 variable. Each stage is in its own block,
+     * so stages can use the same parameter names. Results of map stages are stored in $1, $2 etc.
+     *
+     * @return name of the variable with the result of the last stage
+     */
+    private String renderStages(StringBuilder code, String indentation, boolean primitiveLocals, String rejectionStatement) {
+        String currentVariable = "$0";
+        Type currentType = inputType;
+        int mapStageCount = 0;
+        for (Stage stage : stages) {
+            String parameter = getTypeName(currentType, primitiveLocals) + " " + stage.code.getParameterNames().get(0)
+                    + " = " + currentVariable + ";\n";
+            if (stage.isFilter()) {
+                code.append(indentation).append("{\n")
+                        .append(indentation).append("    ").append(parameter)
+                        .append(indentation).append("    if (!").append(stage.code.getParenthesizedBody()).append(") ")
+                        .append(rejectionStatement).append("\n")
+                        .append(indentation).append("}\n");
+            } else {
+                String resultVariable = "$" + ++mapStageCount;
+                Type resultType = stage.outputType.get();
+                code.append(indentation).append(getTypeName(resultType, primitiveLocals)).append(" ").append(resultVariable).append(";\n")
+                        .append(indentation).append("{\n")
+                        .append(indentation).append("    ").append(parameter)
+                        .append(indentation).append("    ").append(resultVariable).append(" = ")
+                        .append(stage.code.getParenthesizedBody()).append(";\n")
+                        .append(indentation).append("}\n");
+                currentVariable = resultVariable;
+                currentType = resultType;
+            }
+        }
+        return currentVariable;
+    }
+
+    private boolean hasBoxedPrimitiveTypes() {
+        return PRIMITIVES_BY_BOXES.containsKey(inputType)
+                || stages.stream().anyMatch(stage -> stage.outputType.filter(PRIMITIVES_BY_BOXES::containsKey).isPresent());
+    }
+
+    private static String getTypeName(Type type, boolean primitiveLocals) {
+        if (primitiveLocals && PRIMITIVES_BY_BOXES.containsKey(type)) {
+            return PRIMITIVES_BY_BOXES.get(type);
+        }
+        return TypeUtils.toString(type);
+    }
+
+    private List<Stage> withStage(Stage stage) {
+        List<Stage> newStages = new ArrayList<>(stages);
+        newStages.add(stage);
+        return Collections.unmodifiableList(newStages);
+    }
+
+    private static class Stage {
+        private final ExpressionLambdaCode code;
+        // empty for filters
+        private final Optional<Type> outputType;
+
+        private Stage(ExpressionLambdaCode code, Optional<Type> outputType) {
+            this.code = code;
+            this.outputType = outputType;
+        }
+
+        private boolean isFilter() {
+            return !outputType.isPresent();
+        }
+    }
+}
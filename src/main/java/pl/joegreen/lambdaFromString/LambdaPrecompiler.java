@@ -0,0 +1,384 @@
+package pl.joegreen.lambdaFromString;
+
+import org.apache.commons.lang3.reflect.TypeUtils;
+import pl.joegreen.lambdaFromString.classFactory.ClassCompilationException;
+import pl.joegreen.lambdaFromString.classFactory.CompilationListener;
+import pl.joegreen.lambdaFromString.classFactory.PrecompiledClasses;
+
+import javax.tools.JavaCompiler;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles lambdas that are known before the application starts (e.g. during the build) and writes their bytecode
+ * to a class path resource (see {@link PrecompiledClasses}). {@link LambdaFactory} finds lambdas in that resource
+ * before it runs the compiler, so the application doesn't have to compile them and it can even run without
+ * a compiler if all its lambdas were precompiled. <br>
+ * Lambdas are found by their helper class source (which contains the code, the type and imports), the target Java version
+ * and the compiler arguments, so the precompiler has to use the same helper class source provider, imports, static imports,
+ * Java version and compiler arguments as the factory, and the lambda type has to be the same as in the TypeReference
+ * used to create it. Lambdas precompiled with other settings are compiled again by the factory.
+ * <br>
+ * It can be run as a command line tool (e.g. by exec-maven-plugin in the {@code process-classes} phase),
+ * see {@link #main(String[])}.
+ */
+public class LambdaPrecompiler {
+    private static final String USAGE = "Usage: LambdaPrecompiler [--import NAME]... [--static-import NAME]... "
+            + "[--java-version VERSION] [--class-path CLASS_PATH] OUTPUT_DIRECTORY INPUT_FILE...\n"
+            + "Each non-empty line of an input file that doesn't start with # contains a lambda in the format: TYPE = CODE";
+    private static final Pattern TYPE_TOKEN = Pattern.compile("\\s*([\\w.$]+|\\?|<|>|,|\\[\\s*])");
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+    static {
+        for (Class<?> primitiveType : Arrays.asList(boolean.class, byte.class, char.class, short.class,
+                int.class, long.class, float.class, double.class)) {
+            PRIMITIVE_TYPES.put(primitiveType.getName(), primitiveType);
+        }
+    }
+
+    /**
+     * Returns a LambdaPrecompiler instance with the given configuration, it should be the same as the configuration
+     * of the factory that will create the lambdas (apart from the compilation class path and the parent class loader).
+     *
+     * @throws JavaCompilerNotFoundException if the library cannot find any java compiler and it's not provided in the configuration
+     */
+    public static LambdaPrecompiler get(LambdaFactoryConfiguration configuration) {
+        JavaCompiler compiler = Optional.ofNullable(configuration.getJavaCompiler()).orElseThrow(JavaCompilerNotFoundException::new);
+        return new LambdaPrecompiler(configuration, compiler);
+    }
+
+    private final LambdaFactoryConfiguration configuration;
+    private final JavaCompiler javaCompiler;
+    private final Map<String, Map<String, byte[]>> classesByKeys = new LinkedHashMap<>();
+
+    private LambdaPrecompiler(LambdaFactoryConfiguration configuration, JavaCompiler javaCompiler) {
+        this.configuration = configuration;
+        this.javaCompiler = javaCompiler;
+    }
+
+    /**
+     * Compiles the lambda and adds it to the precompiled lambdas.
+     *
+     * @see LambdaFactory#createLambda(String, TypeReference)
+     * @throws LambdaCreationException when the lambda cannot be compiled, if the exception was caused by compilation
+     *                                 failure it will contain a CompilationDetails instance describing them
+     */
+    public LambdaPrecompiler add(String code, TypeReference<?> typeReference) throws LambdaCreationException {
+        HelperClassSourceProvider helperProvider = configuration.getDefaultHelperClassSourceProvider();
+        String helperClassName = helperProvider.getHelperClassName();
+        String helperClassSource = helperProvider.getHelperClassSource(typeReference.toString(), code,
+                configuration.getImports(), configuration.getStaticImports());
+        String key = PrecompiledClasses.getKey(helperClassName, helperClassSource, configuration.getJavaVersion(),
+                configuration.getCompilerArguments());
+        if (classesByKeys.containsKey(key)) {
+            return this;
+        }
+        AtomicReference<Map<String, byte[]>> createdClasses = new AtomicReference<>();
+        try {
+            configuration.getClassFactory().createClass(helperClassName, helperClassSource, javaCompiler,
+                    configuration.getJavaVersion(), configuration.getCompilationClassPath(),
+                    configuration.getCompilerArguments(), configuration.getParentClassLoader(),
+                    new CompilationListener() {
+                        @Override
+                        public void classesCreated(Map<String, byte[]> classes) {
+                            createdClasses.set(classes);
+                        }
+                    });
+        } catch (ClassCompilationException e) {
+            throw new LambdaCreationException(e);
+        } catch (RuntimeException e) {
+            throw new LambdaCreationException(e);
+        }
+        if (createdClasses.get() == null) {
+            throw new LambdaCreationException(new IllegalStateException(
+                    "Class factory " + configuration.getClassFactory().getClass().getName() + " doesn't report created classes"));
+        }
+        classesByKeys.put(key, createdClasses.get());
+        return this;
+    }
+
+    /**
+     * Compiles the lambda and adds it to the precompiled lambdas. The type is parsed from its name,
+     * e.g. {@code Function<Integer, Integer>}. Classes can be referenced by their qualified names, by simple names
+     * if they are imported or in the java.lang package, and nested classes also as {@code Outer.Nested}.
+     *
+     * @see #add(String, TypeReference)
+     */
+    public LambdaPrecompiler add(String code, String lambdaType) throws LambdaCreationException {
+        Type type;
+        try {
+            type = parseType(lambdaType);
+        } catch (IllegalArgumentException e) {
+            throw new LambdaCreationException(e);
+        }
+        return add(code, new TypeReference<Object>(type) {
+        });
+    }
+
+    /**
+     * @return number of precompiled lambdas
+     */
+    public int size() {
+        return classesByKeys.size();
+    }
+
+    /**
+     * Writes all the precompiled lambdas as a resource in the given directory (e.g. {@code target/classes}),
+     * so that it's packaged with the application.
+     *
+     * @return path of the written resource
+     */
+    public Path write(Path outputDirectory) throws IOException {
+        return PrecompiledClasses.write(outputDirectory, classesByKeys);
+    }
+
+    /**
+     * Precompiles lambdas from the input files and writes them to the output directory. Compilation errors
+     * are printed and make the tool exit with status 1. Run without arguments to print usage.
+     */
+    public static void main(String[] args) {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        LambdaFactoryConfiguration configuration = LambdaFactoryConfiguration.get();
+        List<String> positionalArguments = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (!option.startsWith("--")) {
+                    positionalArguments.add(option);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--import":
+                        configuration = configuration.withImports(value);
+                        break;
+                    case "--static-import":
+                        configuration = configuration.withStaticImports(value);
+                        break;
+                    case "--java-version":
+                        configuration = configuration.withJavaVersion(Integer.parseInt(value));
+                        break;
+                    case "--class-path":
+                        configuration = configuration.withCompilationClassPath(value)
+                                .withParentClassLoader(createClassLoader(value, configuration.getParentClassLoader()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (positionalArguments.size() < 2) {
+                throw new IllegalArgumentException("Output directory and input files are required");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 1;
+        }
+
+        LambdaPrecompiler precompiler = get(configuration);
+        boolean failed = false;
+        for (String inputFile : positionalArguments.subList(1, positionalArguments.size())) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(Paths.get(inputFile), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                err.println("Cannot read " + inputFile + ": " + e);
+                return 1;
+            }
+            for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+                String line = lines.get(lineNumber - 1).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int separatorIndex = line.indexOf('=');
+                try {
+                    if (separatorIndex < 0) {
+                        throw new LambdaCreationException(new IllegalArgumentException("Expected TYPE = CODE"));
+                    }
+                    precompiler.add(line.substring(separatorIndex + 1).trim(), line.substring(0, separatorIndex).trim());
+                } catch (LambdaCreationException e) {
+                    failed = true;
+                    err.println(inputFile + ":" + lineNumber + ": " + Optional.ofNullable(e.getCompilationDetails())
+                            .map(Object::toString).orElseGet(() -> String.valueOf(e.getCause())));
+                }
+            }
+        }
+        if (failed) {
+            return 1;
+        }
+        try {
+            Path index = precompiler.write(Paths.get(positionalArguments.get(0)));
+            out.println("Precompiled " + precompiler.size() + " lambdas to " + index);
+            return 0;
+        } catch (IOException e) {
+            err.println("Cannot write precompiled lambdas: " + e);
+            return 1;
+        }
+    }
+
+    private static ClassLoader createClassLoader(String classPath, ClassLoader parentClassLoader) {
+        List<URL> urls = new ArrayList<>();
+        for (String classPathEntry : classPath.split(File.pathSeparator)) {
+            try {
+                urls.add(new File(classPathEntry).toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Incorrect class path entry " + classPathEntry, e);
+            }
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), parentClassLoader);
+    }
+
+    private Type parseType(String typeName) {
+        String trimmedTypeName = typeName.trim();
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TYPE_TOKEN.matcher(trimmedTypeName);
+        while (matcher.regionStart() < trimmedTypeName.length()) {
+            if (!matcher.lookingAt()) {
+                throw new IllegalArgumentException("Cannot parse type " + typeName);
+            }
+            tokens.add(matcher.group(1).replaceAll("\\s", ""));
+            matcher.region(matcher.end(), trimmedTypeName.length());
+        }
+        TypeParser parser = new TypeParser(tokens, typeName);
+        Type type = parser.parseType();
+        if (parser.position != tokens.size()) {
+            throw new IllegalArgumentException("Cannot parse type " + typeName);
+        }
+        return type;
+    }
+
+    private Class<?> resolveClass(String name) {
+        if (PRIMITIVE_TYPES.containsKey(name)) {
+            return PRIMITIVE_TYPES.get(name);
+        }
+        List<String> candidates = new ArrayList<>();
+        candidates.add(name);
+        String firstSegment = name.split("\\.")[0];
+        String remainingSegments = name.substring(firstSegment.length());
+        candidates.add("java.lang." + name);
+        for (String imported : configuration.getImports()) {
+            if (imported.endsWith("." + firstSegment)) {
+                candidates.add(imported + remainingSegments);
+            } else if (imported.endsWith(".*")) {
+                candidates.add(imported.substring(0, imported.length() - 1) + name);
+            }
+        }
+        for (String candidate : candidates) {
+            // nested classes are also tried with $ separators, starting with the innermost one
+            String binaryName = candidate;
+            while (true) {
+                Optional<Class<?>> resolvedClass = loadClass(binaryName);
+                if (resolvedClass.isPresent()) {
+                    return resolvedClass.get();
+                }
+                int lastDot = binaryName.lastIndexOf('.');
+                if (lastDot < 0) {
+                    break;
+                }
+                binaryName = binaryName.substring(0, lastDot) + "$" + binaryName.substring(lastDot + 1);
+            }
+        }
+        throw new IllegalArgumentException("Cannot find class " + name);
+    }
+
+    private Optional<Class<?>> loadClass(String binaryName) {
+        try {
+            return Optional.of(Class.forName(binaryName, false, configuration.getParentClassLoader()));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return Optional.empty();
+        }
+    }
+
+    private class TypeParser {
+        private final List<String> tokens;
+        private final String typeName;
+        private int position;
+
+        private TypeParser(List<String> tokens, String typeName) {
+            this.tokens = tokens;
+            this.typeName = typeName;
+        }
+
+        private Type parseType() {
+            Class<?> rawType = resolveClass(next());
+            Type type = rawType;
+            if (peek("<")) {
+                next();
+                List<Type> typeArguments = new ArrayList<>();
+                typeArguments.add(parseTypeArgument());
+                while (peek(",")) {
+                    next();
+                    typeArguments.add(parseTypeArgument());
+                }
+                expect(">");
+                type = TypeUtils.parameterize(rawType, typeArguments.toArray(new Type[0]));
+            }
+            while (peek("[]")) {
+                next();
+                type = type instanceof Class ? Array.newInstance((Class<?>) type, 0).getClass() : TypeUtils.genericArrayType(type);
+            }
+            return type;
+        }
+
+        private Type parseTypeArgument() {
+            if (!peek("?")) {
+                return parseType();
+            }
+            next();
+            if (peek("extends")) {
+                next();
+                return TypeUtils.wildcardType().withUpperBounds(parseType()).build();
+            } else if (peek("super")) {
+                next();
+                return TypeUtils.wildcardType().withLowerBounds(parseType()).build();
+            }
+            return TypeUtils.wildcardType().build();
+        }
+
+        private boolean peek(String token) {
+            return position < tokens.size() && tokens.get(position).equals(token);
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Cannot parse type " + typeName);
+            }
+            return tokens.get(position++);
+        }
+
+        private void expect(String token) {
+            if (!token.equals(next())) {
+                throw new IllegalArgumentException("Cannot parse type " + typeName);
+            }
+        }
+    }
+}
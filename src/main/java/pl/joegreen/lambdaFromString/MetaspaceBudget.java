@@ -0,0 +1,75 @@
+package pl.joegreen.lambdaFromString;
+
+import java.util.Objects;
+
+/**
+ * Limit of classes held by the compiled lambda cache (see {@link LambdaFactoryConfiguration#withMetaspaceBudget(MetaspaceBudget)}),
+ * either as the number of classes or as their total bytecode size. Bytecode size is measured when the classes are
+ * compiled, so it approximates the Metaspace they occupy.
+ */
+public final class MetaspaceBudget {
+    private final long limit;
+    private final boolean bytecodeSize;
+
+    private MetaspaceBudget(long limit, boolean bytecodeSize) {
+        this.limit = limit;
+        this.bytecodeSize = bytecodeSize;
+    }
+
+    /**
+     * Budget of the number of classes compiled for cached lambdas (helper classes and their nested classes).
+     * Classes spun at runtime for the lambda expressions live in the same class loaders and are unloaded with them.
+     */
+    public static MetaspaceBudget ofClassCount(int maximumClassCount) {
+        if (maximumClassCount < 1) {
+            throw new IllegalArgumentException("Maximum class count has to be positive: " + maximumClassCount);
+        }
+        return new MetaspaceBudget(maximumClassCount, false);
+    }
+
+    /**
+     * Budget of the total bytecode size (in bytes) of classes compiled for cached lambdas.
+     */
+    public static MetaspaceBudget ofBytecodeSize(long maximumBytecodeSize) {
+        if (maximumBytecodeSize < 1) {
+            throw new IllegalArgumentException("Maximum bytecode size has to be positive: " + maximumBytecodeSize);
+        }
+        return new MetaspaceBudget(maximumBytecodeSize, true);
+    }
+
+    /**
+     * Returns the maximum number of classes or bytes, depending on {@link #isBytecodeSize()}.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns true if the budget limits the bytecode size, false if it limits the number of classes.
+     */
+    public boolean isBytecodeSize() {
+        return bytecodeSize;
+    }
+
+    long measure(int classCount, long bytecodeSize) {
+        return this.bytecodeSize ? bytecodeSize : classCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MetaspaceBudget that = (MetaspaceBudget) o;
+        return limit == that.limit && bytecodeSize == that.bytecodeSize;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(limit, bytecodeSize);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MetaspaceBudget{%d %s}", limit, bytecodeSize ? "bytes" : "classes");
+    }
+}
@@ -0,0 +1,72 @@
+package pl.joegreen.lambdaFromString;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Lambda code compiled once with named parameters, created by
+ * {@link LambdaFactory#createParameterizedLambda(String, TypeReference, LambdaParameter[])}. Binding parameter values
+ * doesn't run the compiler nor define any classes, it only creates a new instance of the compiled lambda,
+ * so lambdas differing only in constants (e.g. thresholds of rules) cost a single compilation.
+ *
+ * @param <T> type of the lambda
+ */
+public final class ParameterizedLambda<T> {
+    private final Function<Object[], T> lambdaFactory;
+    private final List<LambdaParameter<?>> parameters;
+
+    ParameterizedLambda(Function<Object[], T> lambdaFactory, List<LambdaParameter<?>> parameters) {
+        this.lambdaFactory = lambdaFactory;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    public List<LambdaParameter<?>> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Creates the lambda with the given parameter values.
+     *
+     * @param values values of all the parameters in the order of their declaration
+     * @throws IllegalArgumentException if the number of values or their types don't match the parameters
+     */
+    public T bind(Object... values) {
+        if (values.length != parameters.size()) {
+            throw new IllegalArgumentException("Expected " + parameters.size() + " parameter value(s), got " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!parameters.get(i).accepts(values[i])) {
+                throw new IllegalArgumentException("Value " + values[i] + " cannot be bound to parameter " + parameters.get(i));
+            }
+        }
+        return lambdaFactory.apply(values.clone());
+    }
+
+    /**
+     * Creates the lambda with the given parameter values.
+     *
+     * @param values values of all the parameters by their names
+     * @throws IllegalArgumentException if a value is missing, there is a value of an unknown parameter or a value
+     *                                  has a wrong type
+     */
+    public T bind(Map<String, ?> values) {
+        Set<String> unknownNames = new HashSet<>(values.keySet());
+        Object[] orderedValues = new Object[parameters.size()];
+        for (int i = 0; i < orderedValues.length; i++) {
+            String name = parameters.get(i).getName();
+            if (!values.containsKey(name)) {
+                throw new IllegalArgumentException("Missing value of parameter " + parameters.get(i));
+            }
+            orderedValues[i] = values.get(name);
+            unknownNames.remove(name);
+        }
+        if (!unknownNames.isEmpty()) {
+            throw new IllegalArgumentException("Unknown parameters: " + unknownNames);
+        }
+        return bind(orderedValues);
+    }
+}
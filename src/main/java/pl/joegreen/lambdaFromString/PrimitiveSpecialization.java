@@ -0,0 +1,142 @@
+package pl.joegreen.lambdaFromString;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Primitive functional interface (e.g. IntUnaryOperator) that can be used instead of a functional interface of boxed
+ * primitives (e.g. {@code Function<Integer, Integer>}), with an adapter implementing the boxed interface with it.
+ * Only types built from java.util.function interfaces and Integer, Long, Double (and Boolean results) are specialized.
+ */
+final class PrimitiveSpecialization {
+    private static final Map<List<Class<?>>, PrimitiveSpecialization> SPECIALIZATIONS = new HashMap<>();
+
+    static {
+        add(IntUnaryOperator.class, o -> (Function<Integer, Integer>) o::applyAsInt, Function.class, Integer.class, Integer.class);
+        add(IntUnaryOperator.class, o -> (UnaryOperator<Integer>) o::applyAsInt, UnaryOperator.class, Integer.class);
+        add(IntBinaryOperator.class, o -> (BiFunction<Integer, Integer, Integer>) o::applyAsInt,
+                BiFunction.class, Integer.class, Integer.class, Integer.class);
+        add(IntBinaryOperator.class, o -> (BinaryOperator<Integer>) o::applyAsInt, BinaryOperator.class, Integer.class);
+        add(IntPredicate.class, o -> (Predicate<Integer>) o::test, Predicate.class, Integer.class);
+        add(IntPredicate.class, o -> (Function<Integer, Boolean>) o::test, Function.class, Integer.class, Boolean.class);
+        add(IntSupplier.class, o -> (Supplier<Integer>) o::getAsInt, Supplier.class, Integer.class);
+        add(IntConsumer.class, o -> (Consumer<Integer>) o::accept, Consumer.class, Integer.class);
+        add(IntToLongFunction.class, o -> (Function<Integer, Long>) o::applyAsLong, Function.class, Integer.class, Long.class);
+        add(IntToDoubleFunction.class, o -> (Function<Integer, Double>) o::applyAsDouble, Function.class, Integer.class, Double.class);
+
+        add(LongUnaryOperator.class, o -> (Function<Long, Long>) o::applyAsLong, Function.class, Long.class, Long.class);
+        add(LongUnaryOperator.class, o -> (UnaryOperator<Long>) o::applyAsLong, UnaryOperator.class, Long.class);
+        add(LongBinaryOperator.class, o -> (BiFunction<Long, Long, Long>) o::applyAsLong,
+                BiFunction.class, Long.class, Long.class, Long.class);
+        add(LongBinaryOperator.class, o -> (BinaryOperator<Long>) o::applyAsLong, BinaryOperator.class, Long.class);
+        add(LongPredicate.class, o -> (Predicate<Long>) o::test, Predicate.class, Long.class);
+        add(LongPredicate.class, o -> (Function<Long, Boolean>) o::test, Function.class, Long.class, Boolean.class);
+        add(LongSupplier.class, o -> (Supplier<Long>) o::getAsLong, Supplier.class, Long.class);
+        add(LongConsumer.class, o -> (Consumer<Long>) o::accept, Consumer.class, Long.class);
+        add(LongToIntFunction.class, o -> (Function<Long, Integer>) o::applyAsInt, Function.class, Long.class, Integer.class);
+        add(LongToDoubleFunction.class, o -> (Function<Long, Double>) o::applyAsDouble, Function.class, Long.class, Double.class);
+
+        add(DoubleUnaryOperator.class, o -> (Function<Double, Double>) o::applyAsDouble, Function.class, Double.class, Double.class);
+        add(DoubleUnaryOperator.class, o -> (UnaryOperator<Double>) o::applyAsDouble, UnaryOperator.class, Double.class);
+        add(DoubleBinaryOperator.class, o -> (BiFunction<Double, Double, Double>) o::applyAsDouble,
+                BiFunction.class, Double.class, Double.class, Double.class);
+        add(DoubleBinaryOperator.class, o -> (BinaryOperator<Double>) o::applyAsDouble, BinaryOperator.class, Double.class);
+        add(DoublePredicate.class, o -> (Predicate<Double>) o::test, Predicate.class, Double.class);
+        add(DoublePredicate.class, o -> (Function<Double, Boolean>) o::test, Function.class, Double.class, Boolean.class);
+        add(DoubleSupplier.class, o -> (Supplier<Double>) o::getAsDouble, Supplier.class, Double.class);
+        add(DoubleConsumer.class, o -> (Consumer<Double>) o::accept, Consumer.class, Double.class);
+        add(DoubleToIntFunction.class, o -> (Function<Double, Integer>) o::applyAsInt, Function.class, Double.class, Integer.class);
+        add(DoubleToLongFunction.class, o -> (Function<Double, Long>) o::applyAsLong, Function.class, Double.class, Long.class);
+
+        add(BooleanSupplier.class, o -> (Supplier<Boolean>) o::getAsBoolean, Supplier.class, Boolean.class);
+    }
+
+    private final Class<?> primitiveInterface;
+    private final Function<Object, Object> adapter;
+
+    private PrimitiveSpecialization(Class<?> primitiveInterface, Function<Object, Object> adapter) {
+        this.primitiveInterface = primitiveInterface;
+        this.adapter = adapter;
+    }
+
+    /**
+     * @return specialization of the lambda type or an empty Optional if it has no primitive counterpart
+     */
+    static Optional<PrimitiveSpecialization> find(Type lambdaType) {
+        List<Class<?>> key = new ArrayList<>();
+        if (lambdaType instanceof Class) {
+            key.add((Class<?>) lambdaType);
+        } else if (lambdaType instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) lambdaType;
+            key.add((Class<?>) parameterizedType.getRawType());
+            for (Type typeArgument : parameterizedType.getActualTypeArguments()) {
+                // wildcards and type variables are not specialized
+                if (!(typeArgument instanceof Class)) {
+                    return Optional.empty();
+                }
+                key.add((Class<?>) typeArgument);
+            }
+        }
+        return Optional.ofNullable(SPECIALIZATIONS.get(key));
+    }
+
+    Class<?> getPrimitiveInterface() {
+        return primitiveInterface;
+    }
+
+    TypeReference<Object> getPrimitiveTypeReference() {
+        return new TypeReference<Object>(primitiveInterface) {
+        };
+    }
+
+    /**
+     * @return lambda of the boxed type calling the given lambda of the primitive interface
+     */
+    Object adapt(Object primitiveLambda) {
+        return adapter.apply(primitiveLambda);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <P> void add(Class<P> primitiveInterface, Function<P, Object> adapter,
+                                Class<?> rawType, Class<?>... typeArguments) {
+        List<Class<?>> key = new ArrayList<>();
+        key.add(rawType);
+        key.addAll(Arrays.asList(typeArguments));
+        SPECIALIZATIONS.put(key, new PrimitiveSpecialization(primitiveInterface, (Function<Object, Object>) adapter));
+    }
+}
@@ -0,0 +1,63 @@
+package pl.joegreen.lambdaFromString;
+
+import java.util.Optional;
+
+/**
+ * Result of {@link LambdaFactory#createSpecializedLambda(String, TypeReference)}: lambda of the requested type and,
+ * if the code was compiled against the matching primitive functional interface, the primitive lambda. <br>
+ * Calls of the primitive lambda don't box or unbox arguments and results. Calls of the lambda of the requested type
+ * go through a thin adapter that unboxes the arguments and calls the primitive lambda.
+ *
+ * @param <T> type of the lambda
+ */
+public final class SpecializedLambda<T> {
+    private final T lambda;
+    private final Optional<Object> primitiveLambda;
+    private final Optional<Class<?>> primitiveInterface;
+
+    SpecializedLambda(T lambda, Optional<Object> primitiveLambda, Optional<Class<?>> primitiveInterface) {
+        this.lambda = lambda;
+        this.primitiveLambda = primitiveLambda;
+        this.primitiveInterface = primitiveInterface;
+    }
+
+    /**
+     * Returns the lambda of the requested type. If the lambda is specialized, it throws NullPointerException
+     * for null arguments (see {@link LambdaFactory#createSpecializedLambda(String, TypeReference)}).
+     */
+    public T getLambda() {
+        return lambda;
+    }
+
+    /**
+     * Returns true if the lambda was compiled against a primitive functional interface.
+     */
+    public boolean isSpecialized() {
+        return primitiveLambda.isPresent();
+    }
+
+    /**
+     * Returns the primitive functional interface (e.g. IntUnaryOperator) the lambda was compiled against.
+     */
+    public Optional<Class<?>> getPrimitiveInterface() {
+        return primitiveInterface;
+    }
+
+    /**
+     * Returns the lambda compiled against the primitive functional interface.
+     *
+     * @param primitiveInterface expected primitive functional interface, for example {@code IntUnaryOperator.class}
+     * @throws IllegalStateException    if the lambda is not specialized
+     * @throws IllegalArgumentException if the lambda was compiled against another interface
+     */
+    public <P> P getPrimitiveLambda(Class<P> primitiveInterface) {
+        if (!primitiveLambda.isPresent()) {
+            throw new IllegalStateException("Lambda is not specialized");
+        }
+        if (!primitiveInterface.isInstance(primitiveLambda.get())) {
+            throw new IllegalArgumentException("Lambda was compiled against " + this.primitiveInterface.get().getName()
+                    + ", not " + primitiveInterface.getName());
+        }
+        return primitiveInterface.cast(primitiveLambda.get());
+    }
+}
@@ -0,0 +1,151 @@
+package pl.joegreen.lambdaFromString;
+
+import pl.joegreen.lambdaFromString.interpreter.InterpretedLambda;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of a lambda that is interpreted until it's invoked the given number of times. Then the lambda is
+ * compiled in the background and, when the compilation is finished, all the following invocations are delegated
+ * to the compiled lambda. If the background compilation fails (e.g. because the compilation queue is full),
+ * the lambda stays interpreted and tries again after the next threshold invocations. If the compilation fails
+ * with compilation errors, the lambda stays interpreted for good, as compiling it again would fail the same way. <br>
+ * The interpreted lambda is a proxy handled by this class. It's wrapped in an instance of a class compiled for
+ * the interface (see {@link DelegatingLambdaClass}), whose delegate is replaced with the compiled lambda, so after
+ * the compilation the calls don't go through the proxy and reflection. Proxies are returned directly only for interfaces
+ * which the class cannot be compiled for (e.g. non-public ones). <br>
+ * Abstract methods of the interface other than the implemented one (e.g. bridge methods) are always called
+ * on the compiled lambda, which is compiled immediately if it's not available yet.
+ */
+class TieredLambda implements InvocationHandler {
+    private final InterpretedLambda interpretedLambda;
+    private final String code;
+    private final int compilationThreshold;
+    private final Supplier<CompletableFuture<Object>> backgroundCompilation;
+    private final CompilationExecutor.LambdaCreation<Object> compilation;
+    private final AtomicInteger interpretedInvocations = new AtomicInteger();
+    private volatile boolean compilationFailed;
+    private volatile Object compiledLambda;
+    private DelegatingLambdaClass delegatingClass;
+    private Object delegatingLambda;
+
+    private TieredLambda(InterpretedLambda interpretedLambda, String code, int compilationThreshold,
+                         Supplier<CompletableFuture<Object>> backgroundCompilation,
+                         CompilationExecutor.LambdaCreation<Object> compilation) {
+        this.interpretedLambda = interpretedLambda;
+        this.code = code;
+        this.compilationThreshold = compilationThreshold;
+        this.backgroundCompilation = backgroundCompilation;
+        this.compilation = compilation;
+    }
+
+    /**
+     * @param backgroundCompilation starts compilation of the lambda in the background
+     * @param compilation           compiles the lambda on the calling thread
+     * @param delegatingClass       class for the interface of the lambda, empty if it could not be compiled
+     * @return lambda implementing the functional interface of the interpreted lambda
+     */
+    static Object create(InterpretedLambda interpretedLambda, String code, int compilationThreshold,
+                         Supplier<CompletableFuture<Object>> backgroundCompilation,
+                         CompilationExecutor.LambdaCreation<Object> compilation,
+                         Optional<DelegatingLambdaClass> delegatingClass) {
+        Class<?> interfaceType = interpretedLambda.getInterfaceType();
+        ClassLoader classLoader = interfaceType.getClassLoader() != null
+                ? interfaceType.getClassLoader() : TieredLambda.class.getClassLoader();
+        TieredLambda tieredLambda = new TieredLambda(interpretedLambda, code, compilationThreshold,
+                backgroundCompilation, compilation);
+        Object proxy = Proxy.newProxyInstance(classLoader, new Class<?>[]{interfaceType}, tieredLambda);
+        if (!delegatingClass.isPresent()) {
+            return proxy;
+        }
+        // set before the lambda is returned, so before it's invoked and compiled
+        tieredLambda.delegatingClass = delegatingClass.get();
+        tieredLambda.delegatingLambda = delegatingClass.get().newInstance(proxy, tieredLambda.toString());
+        return tieredLambda.delegatingLambda;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+        Object currentCompiledLambda = compiledLambda;
+        if (method.equals(interpretedLambda.getInterfaceMethod())) {
+            if (currentCompiledLambda != null) {
+                return invokeCompiled(currentCompiledLambda, method, arguments);
+            }
+            if (!compilationFailed && interpretedInvocations.incrementAndGet() == compilationThreshold) {
+                backgroundCompilation.get().whenComplete((lambda, throwable) -> {
+                    if (lambda != null) {
+                        setCompiledLambda(lambda);
+                    } else if (isCompilationError(throwable)) {
+                        compilationFailed = true;
+                    } else {
+                        interpretedInvocations.set(0);
+                    }
+                });
+            }
+            return interpretedLambda.invoke(arguments == null ? new Object[0] : arguments);
+        }
+        switch (method.getName()) {
+            case "equals":
+                if (method.getParameterCount() == 1) {
+                    return proxy == arguments[0];
+                }
+                break;
+            case "hashCode":
+                if (method.getParameterCount() == 0) {
+                    return System.identityHashCode(proxy);
+                }
+                break;
+            case "toString":
+                if (method.getParameterCount() == 0) {
+                    return toString();
+                }
+                break;
+            default:
+                break;
+        }
+        return invokeCompiled(currentCompiledLambda != null ? currentCompiledLambda : compileNow(), method, arguments);
+    }
+
+    private Object compileNow() {
+        try {
+            Object lambda = compilation.create();
+            setCompiledLambda(lambda);
+            return lambda;
+        } catch (LambdaCreationException e) {
+            throw new LambdaCreationRuntimeException(e);
+        }
+    }
+
+    private static boolean isCompilationError(Throwable throwable) {
+        return throwable instanceof LambdaCreationException
+                && ((LambdaCreationException) throwable).getCompilationDetails().isPresent();
+    }
+
+    private void setCompiledLambda(Object lambda) {
+        // the delegate is replaced first, so when the proxy sees the compiled lambda, calls don't reach the proxy anymore
+        if (delegatingClass != null) {
+            delegatingClass.setDelegate(delegatingLambda, lambda);
+        }
+        compiledLambda = lambda;
+    }
+
+    @Override
+    public String toString() {
+        return "TieredLambda[" + code + "]";
+    }
+
+    private static Object invokeCompiled(Object lambda, Method method, Object[] arguments) throws Throwable {
+        try {
+            return method.invoke(lambda, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Result of {@link ClassFactory#createClasses}. Every requested class name is present either in the loaded classes
+ * or in the failures, never in both.
+ */
+public class BatchCompilationResult {
+    private final Map<String, Class<?>> classes;
+    private final Map<String, ClassCompilationException> failures;
+    private final Map<String, byte[]> classesBytes;
+
+    public BatchCompilationResult(Map<String, Class<?>> classes, Map<String, ClassCompilationException> failures) {
+        this(classes, failures, Collections.emptyMap());
+    }
+
+    /**
+     * @param classesBytes bytecode of all the created classes (including nested classes) by their qualified names
+     */
+    public BatchCompilationResult(Map<String, Class<?>> classes, Map<String, ClassCompilationException> failures,
+                                  Map<String, byte[]> classesBytes) {
+        this.classes = classes;
+        this.failures = failures;
+        this.classesBytes = classesBytes;
+    }
+
+    /**
+     * Loaded classes by their qualified names.
+     */
+    public Map<String, Class<?>> getClasses() {
+        return Collections.unmodifiableMap(classes);
+    }
+
+    /**
+     * Exceptions describing why the classes could not be created, by qualified class names.
+     */
+    public Map<String, ClassCompilationException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Bytecode of the class and its nested classes by their qualified names, or an empty Optional if the class
+     * factory didn't report it.
+     */
+    public Optional<Map<String, byte[]>> getClassBytes(String fullClassName) {
+        if (!classes.containsKey(fullClassName) || !classesBytes.containsKey(fullClassName)) {
+            return Optional.empty();
+        }
+        Map<String, byte[]> classBytes = new HashMap<>();
+        classesBytes.forEach((className, bytes) -> {
+            if (className.equals(fullClassName) || className.startsWith(fullClassName + "$")) {
+                classBytes.put(className, bytes);
+            }
+        });
+        return Optional.of(classBytes);
+    }
+}
@@ -0,0 +1,28 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persistent storage of compiled classes used by {@link DefaultClassFactory} to skip the compilation of classes
+ * that were already compiled (possibly by another JVM process).
+ * Keys are computed by the class factory and change whenever anything that influences the compilation changes
+ * (source code, java version, compiler, compiler options or the content of the compilation class path),
+ * so implementations don't have to validate stored entries. <br>
+ * Implementations have to be threadsafe. Failures should not be propagated, a cache that cannot load
+ * an entry should just report that it doesn't have it.
+ */
+public interface BytecodeCache {
+    /**
+     * @param key key of the compilation result, consists only of characters that are safe to use in file names
+     * @return bytecode of all the classes created by the compilation by their qualified names or an empty Optional if
+     * the cache doesn't contain the entry
+     */
+    Optional<Map<String, byte[]>> load(String key);
+
+    /**
+     * @param key     key of the compilation result, consists only of characters that are safe to use in file names
+     * @param classes bytecode of all the classes created by the compilation by their qualified names
+     */
+    void store(String key, Map<String, byte[]> classes);
+}
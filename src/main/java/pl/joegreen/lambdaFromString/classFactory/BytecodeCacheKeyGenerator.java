@@ -0,0 +1,114 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import javax.tools.JavaCompiler;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Computes {@link BytecodeCache} keys as SHA-256 hashes of everything that influences the compilation result.
+ * The compilation class path is represented by sizes and modification times of its files. They are computed once
+ * for each class path string, so changes made while the application is running are noticed only after a restart.
+ */
+class BytecodeCacheKeyGenerator {
+    private static final String KEY_FORMAT_VERSION = "1";
+
+    private final Map<String, String> classPathFingerprints = new ConcurrentHashMap<>();
+
+    String generateKey(String fullClassName, String sourceCode, JavaCompiler compiler, int javaVersion,
+                       String compilationClassPath, List<String> compilerOptions) {
+        MessageDigest digest = createDigest();
+        update(digest, KEY_FORMAT_VERSION);
+        update(digest, fullClassName);
+        update(digest, sourceCode);
+        update(digest, String.valueOf(javaVersion));
+        update(digest, getCompilerIdentity(compiler));
+        compilerOptions.forEach(option -> update(digest, option));
+        update(digest, classPathFingerprints.computeIfAbsent(compilationClassPath, BytecodeCacheKeyGenerator::fingerprintClassPath));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Generates a key that doesn't depend on the compiler and the class path, for classes compiled in another
+     * environment (see {@link PrecompiledClasses}).
+     */
+    static String generateSourceKey(String fullClassName, String sourceCode, int javaVersion, List<String> compilerOptions) {
+        MessageDigest digest = createDigest();
+        update(digest, KEY_FORMAT_VERSION);
+        update(digest, fullClassName);
+        update(digest, sourceCode);
+        update(digest, String.valueOf(javaVersion));
+        compilerOptions.forEach(option -> update(digest, option));
+        return toHex(digest.digest());
+    }
+
+    private static String getCompilerIdentity(JavaCompiler compiler) {
+        if (compiler instanceof PooledJavaCompiler) {
+            return getCompilerIdentity(((PooledJavaCompiler) compiler).getDelegate());
+        }
+        String implementationVersion = Optional.ofNullable(compiler.getClass().getPackage())
+                .map(Package::getImplementationVersion).orElse("");
+        // JDK compiler doesn't have an implementation version, it's always the version of the running JDK
+        return compiler.getClass().getName() + ":" + implementationVersion + ":" + System.getProperty("java.version");
+    }
+
+    private static String fingerprintClassPath(String compilationClassPath) {
+        MessageDigest digest = createDigest();
+        for (String classPathEntry : compilationClassPath.split(File.pathSeparator)) {
+            update(digest, classPathEntry);
+            Path entryPath = new File(classPathEntry).toPath();
+            if (Files.isDirectory(entryPath)) {
+                try (Stream<Path> files = Files.walk(entryPath)) {
+                    files.filter(Files::isRegularFile).sorted()
+                            .forEach(file -> update(digest, entryPath.relativize(file) + ":" + describeFile(file)));
+                } catch (IOException | UncheckedIOException e) {
+                    update(digest, "unreadable");
+                }
+            } else {
+                update(digest, describeFile(entryPath));
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String describeFile(Path file) {
+        File ioFile = file.toFile();
+        return ioFile.exists() ? ioFile.length() + ":" + ioFile.lastModified() : "missing";
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implementation is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -1,7 +1,10 @@
 package pl.joegreen.lambdaFromString.classFactory;
 
 import javax.tools.JavaCompiler;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -25,4 +28,92 @@ public interface ClassFactory {
     Class<?> createClass(String fullClassName, String sourceCode, JavaCompiler compiler,
                          int javaVersion, String compilationClassPath,
                          List<String> additionalCompilerOptions, ClassLoader parentClassLoader) throws ClassCompilationException;
+
+    /**
+     * Compiles class from its source code and loads it into JVM, reporting measurements of the creation to the listener.
+     * <br>
+     * The default implementation calls {@link #createClass(String, String, JavaCompiler, int, String, List, ClassLoader)}
+     * without reporting anything.
+     *
+     * @param compilationListener listener receiving durations of creation phases, compiler messages and bytecode
+     * @see #createClass(String, String, JavaCompiler, int, String, List, ClassLoader)
+     */
+    default Class<?> createClass(String fullClassName, String sourceCode, JavaCompiler compiler,
+                                 int javaVersion, String compilationClassPath,
+                                 List<String> additionalCompilerOptions, ClassLoader parentClassLoader,
+                                 CompilationListener compilationListener) throws ClassCompilationException {
+        return createClass(fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                additionalCompilerOptions, parentClassLoader);
+    }
+
+    /**
+     * Checks the class source with the compiler without loading the class into JVM. Compilers that support it
+     * should stop after the analysis of the source and not generate bytecode at all.
+     * <br>
+     * The default implementation creates the class with
+     * {@link #createClass(String, String, JavaCompiler, int, String, List, ClassLoader)} and drops it.
+     *
+     * @return details of the successful compilation, containing warnings if there were any
+     * @throws ClassCompilationException in case of compilation failure, it should contain CompilationDetails
+     *                                   instance describing errors if possible
+     * @see #createClass(String, String, JavaCompiler, int, String, List, ClassLoader)
+     */
+    default CompilationDetails analyzeClass(String fullClassName, String sourceCode, JavaCompiler compiler,
+                                            int javaVersion, String compilationClassPath,
+                                            List<String> additionalCompilerOptions) throws ClassCompilationException {
+        // classes used by the code are not resolved when the class is loaded, so any parent class loader works
+        createClass(fullClassName, sourceCode, compiler, javaVersion, compilationClassPath, additionalCompilerOptions,
+                ClassFactory.class.getClassLoader());
+        return new CompilationDetails(fullClassName, sourceCode, Collections.emptyList(), "");
+    }
+
+    /**
+     * Loads classes that were already compiled (e.g. during the build, see {@link PrecompiledClasses}) into JVM.
+     * <br>
+     * The default implementation loads them with a new class loader.
+     *
+     * @param fullClassName     qualified name of the class that should be returned
+     * @param classes           bytecode of the class and all the classes it needs (e.g. its inner classes) by their qualified names
+     * @param parentClassLoader parent class loader that should be used to load external classes
+     * @throws ClassCompilationException if the class cannot be loaded (e.g. bytecode version is not supported by the JVM)
+     */
+    default Class<?> defineClass(String fullClassName, Map<String, byte[]> classes,
+                                 ClassLoader parentClassLoader) throws ClassCompilationException {
+        Map<String, CompiledClassJavaObject> compiledClasses = new HashMap<>();
+        classes.forEach((className, bytes) -> compiledClasses.put(className, new CompiledClassJavaObject(className, bytes)));
+        try {
+            return new InMemoryClassLoader(compiledClasses, parentClassLoader).loadClass(fullClassName);
+        } catch (ClassNotFoundException | RuntimeException | LinkageError e) {
+            throw new ClassCompilationException(e);
+        }
+    }
+
+    /**
+     * Compiles many classes and loads them into JVM. A failure of one class must not prevent other classes
+     * from being created. <br>
+     * The default implementation calls {@link #createClass} for each class separately.
+     *
+     * @param sourceCodes   source codes of the classes by their qualified names
+     * @param compiler      java compiler that should be used to compile class code
+     * @param compilationClassPath class path that should be used when compiling the class code
+     * @param javaVersion java version to be used
+     * @param additionalCompilerOptions additional options to pass to the compiler
+     * @param parentClassLoader parent class loader that should be used to load external classes
+     * @return loaded classes and failures (with CompilationDetails if possible) by qualified class names
+     */
+    default BatchCompilationResult createClasses(Map<String, String> sourceCodes, JavaCompiler compiler,
+                                                 int javaVersion, String compilationClassPath,
+                                                 List<String> additionalCompilerOptions, ClassLoader parentClassLoader) {
+        Map<String, Class<?>> classes = new HashMap<>();
+        Map<String, ClassCompilationException> failures = new HashMap<>();
+        sourceCodes.forEach((fullClassName, sourceCode) -> {
+            try {
+                classes.put(fullClassName, createClass(fullClassName, sourceCode, compiler, javaVersion,
+                        compilationClassPath, additionalCompilerOptions, parentClassLoader));
+            } catch (ClassCompilationException e) {
+                failures.put(fullClassName, e);
+            }
+        });
+        return new BatchCompilationResult(classes, failures);
+    }
 }
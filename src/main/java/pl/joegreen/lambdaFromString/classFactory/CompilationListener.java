@@ -0,0 +1,40 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives measurements of a single class creation. Methods are called on the thread creating the class.
+ * <br>
+ * <strong>This interface may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public interface CompilationListener {
+    /**
+     * Listener ignoring all the measurements.
+     */
+    CompilationListener NONE = new CompilationListener() {
+    };
+
+    /**
+     * Called when a phase is finished. Phases that run many times during one compilation (e.g. javac analysis
+     * of each class) are reported once with the summed duration.
+     */
+    default void phaseFinished(CompilationPhase phase, long durationNanos) {
+    }
+
+    /**
+     * Called with messages of the compiler, also when the compilation fails.
+     */
+    default void diagnosticsReported(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    }
+
+    /**
+     * Called with bytecode of all the classes (by their qualified names) before they are loaded,
+     * whether they were compiled or loaded from the bytecode cache.
+     */
+    default void classesCreated(Map<String, byte[]> classesBytes) {
+    }
+}
@@ -0,0 +1,35 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+/**
+ * Phases of class creation reported to {@link CompilationListener}.
+ */
+public enum CompilationPhase {
+    /**
+     * Looking for already compiled classes in the bytecode cache.
+     */
+    BYTECODE_CACHE_LOOKUP,
+    /**
+     * Whole compiler invocation, including the javac phases below.
+     */
+    COMPILATION,
+    /**
+     * javac: parsing the source code.
+     */
+    PARSE,
+    /**
+     * javac: entering symbols of the parsed classes.
+     */
+    ENTER,
+    /**
+     * javac: attribution and flow analysis.
+     */
+    ANALYZE,
+    /**
+     * javac: generating the bytecode.
+     */
+    GENERATE,
+    /**
+     * Defining the compiled classes in the JVM.
+     */
+    CLASS_LOADING
+}
@@ -13,6 +13,11 @@ public class CompiledClassJavaObject extends SimpleJavaFileObject {
         super(URI.create("mem:///" + className + Kind.CLASS.extension), Kind.CLASS);
     }
 
+    CompiledClassJavaObject(String className, byte[] classBytes) {
+        this(className);
+        byteArrayOutputStream.write(classBytes, 0, classBytes.length);
+    }
+
     public byte[] getBytes() {
         return byteArrayOutputStream.toByteArray();
     }
@@ -0,0 +1,296 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import pl.joegreen.lambdaFromString.classFactory.CompilerDaemonProtocol.CompilationRequest;
+import pl.joegreen.lambdaFromString.classFactory.DefaultClassFactory.CompilationOutcome;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiles classes for {@link RemoteClassFactory} instances in a separate JVM, so that the memory and CPU used
+ * by the compiler don't affect the application creating lambdas. The daemon listens on a loopback port only
+ * and compiles the sources with the class path sent by the application, so it has to run on the same host.
+ * Each connection is served by its own thread.
+ * <br>
+ * Other users of the host can connect to the port too, so the daemon writes a random token to a file readable
+ * only by its owner (on file systems supporting POSIX permissions) and closes connections of clients which
+ * cannot prove they know it. The daemon proves it knows the token too, so clients don't trust another process
+ * listening on the port when the daemon is down. The token itself is never sent. Annotation processing is disabled ({@code -proc:none}) and requests with compiler options
+ * loading processors or compiler plugins are rejected, so no code from the request class path is run.
+ * <br>
+ * The daemon is started from the command line with the library and its dependencies on the class path:
+ * <pre>
+ * {@code java -cp lambda-from-string.jar:commons-lang3.jar pl.joegreen.lambdaFromString.classFactory.CompilerDaemon [port [tokenFile]]}
+ * </pre>
+ * The default port is {@link RemoteClassFactory#DEFAULT_PORT}, the default token file is
+ * {@link #getDefaultTokenFile(int)}.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public final class CompilerDaemon implements AutoCloseable {
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+    private static final Set<String> DISALLOWED_OPTIONS = new HashSet<>(Arrays.asList(
+            "-processor", "-processorpath", "--processor-path", "--processor-module-path", "-Xplugin"));
+
+    private final ServerSocket serverSocket;
+    private final Path tokenFile;
+    private final byte[] token;
+    private final JavaCompiler compiler;
+    private final DefaultClassFactory classFactory = new DefaultClassFactory();
+    private final ExecutorService connectionExecutor;
+    private final Set<Socket> openConnections = ConcurrentHashMap.newKeySet();
+    private final LongAdder compilations = new LongAdder();
+    private final Thread acceptingThread;
+
+    private CompilerDaemon(ServerSocket serverSocket, Path tokenFile, byte[] token, JavaCompiler compiler) {
+        this.serverSocket = serverSocket;
+        this.tokenFile = tokenFile;
+        this.token = token;
+        this.compiler = compiler;
+        AtomicLong threadCounter = new AtomicLong();
+        this.connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "lambda-from-string-daemon-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptingThread = new Thread(this::acceptConnections, "lambda-from-string-daemon-acceptor");
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : RemoteClassFactory.DEFAULT_PORT;
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("Java compiler not found, the daemon has to be started with JDK");
+            System.exit(1);
+        }
+        CompilerDaemon daemon = args.length > 1 ? start(port, compiler, Paths.get(args[1])) : start(port, compiler);
+        System.out.println("Compiler daemon listening on port " + daemon.getPort()
+                + ", token written to " + daemon.getTokenFile());
+    }
+
+    /**
+     * Starts a daemon accepting connections on a background thread, writing its token to
+     * {@link #getDefaultTokenFile(int)} of the port it listens on.
+     *
+     * @param port loopback port to listen on, 0 to choose any free port (see {@link #getPort()})
+     */
+    public static CompilerDaemon start(int port, JavaCompiler compiler) throws IOException {
+        return start(port, compiler, null);
+    }
+
+    /**
+     * Starts a daemon accepting connections on a background thread.
+     *
+     * @param port      loopback port to listen on, 0 to choose any free port (see {@link #getPort()})
+     * @param tokenFile file the token is written to (replacing the file if it exists), clients have to read it
+     */
+    public static CompilerDaemon start(int port, JavaCompiler compiler, Path tokenFile) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        try {
+            Path actualTokenFile = tokenFile != null ? tokenFile : getDefaultTokenFile(serverSocket.getLocalPort());
+            byte[] token = new byte[CompilerDaemonProtocol.TOKEN_LENGTH];
+            new SecureRandom().nextBytes(token);
+            writeToken(actualTokenFile, token);
+            CompilerDaemon daemon = new CompilerDaemon(serverSocket, actualTokenFile, token, compiler);
+            daemon.acceptingThread.start();
+            return daemon;
+        } catch (IOException | RuntimeException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the token file used by default by the daemon listening on the given port and by
+     * {@link RemoteClassFactory} connecting to it: {@code ~/.lambda-from-string/compiler-daemon-<port>.token}.
+     */
+    public static Path getDefaultTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".lambda-from-string", "compiler-daemon-" + port + ".token");
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Path getTokenFile() {
+        return tokenFile;
+    }
+
+    /**
+     * Returns the number of finished compilations (each of them can contain many classes).
+     */
+    public long getCompilationCount() {
+        return compilations.sum();
+    }
+
+    /**
+     * Stops accepting connections (so that another daemon can listen on the port when this method returns),
+     * closes the open ones and deletes the token file (unless another daemon has replaced it).
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        try {
+            // on newer JVMs the socket is released by the thread blocked in accept, so the port can be reused after it ends
+            acceptingThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connectionExecutor.shutdownNow();
+        // threads reading from sockets are not interrupted, they stop when their sockets are closed
+        for (Socket connection : openConnections) {
+            connection.close();
+        }
+        try {
+            if (Arrays.equals(readToken(tokenFile), token)) {
+                Files.delete(tokenFile);
+            }
+        } catch (IOException e) {
+            // the file was already deleted or replaced with an incorrect one
+        }
+    }
+
+    /**
+     * Returns the first option that would make the compiler load and run classes from the request
+     * (annotation processors or compiler plugins).
+     */
+    static Optional<String> findDisallowedOption(List<String> compilerOptions) {
+        return compilerOptions.stream()
+                .filter(option -> DISALLOWED_OPTIONS.contains(option) || option.startsWith("-Xplugin:")
+                        || (option.startsWith("-proc:") && !option.equals("-proc:none")))
+                .findFirst();
+    }
+
+    /**
+     * Reads the token written by a daemon to the file.
+     *
+     * @throws IOException if the file cannot be read or doesn't contain a token
+     */
+    static byte[] readToken(Path tokenFile) throws IOException {
+        String hex = new String(Files.readAllBytes(tokenFile), StandardCharsets.US_ASCII).trim();
+        if (hex.length() != 2 * CompilerDaemonProtocol.TOKEN_LENGTH) {
+            throw new IOException("Invalid token in " + tokenFile);
+        }
+        byte[] token = new byte[CompilerDaemonProtocol.TOKEN_LENGTH];
+        for (int i = 0; i < token.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Invalid token in " + tokenFile);
+            }
+            token[i] = (byte) (high << 4 | low);
+        }
+        return token;
+    }
+
+    /**
+     * Writes the token to a temporary file created with owner-only permissions and moves it in place,
+     * so the token is never readable by other users.
+     */
+    private static void writeToken(Path tokenFile, byte[] token) throws IOException {
+        Path directory = tokenFile.toAbsolutePath().getParent();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (!Files.isDirectory(directory)) {
+            if (posix) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : token) {
+            hex.append(String.format("%02x", b));
+        }
+        // temporary files are created with owner-only permissions on POSIX file systems
+        Path temporaryFile = Files.createTempFile(directory, tokenFile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporaryFile, hex.toString().getBytes(StandardCharsets.US_ASCII));
+            Files.move(temporaryFile, tokenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                openConnections.add(socket);
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (IOException | RuntimeException e) {
+                // the socket was closed or the connection failed before it was accepted
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            // clients which don't authenticate quickly don't keep their connections and threads
+            connection.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            if (!CompilerDaemonProtocol.authenticateClient(input, output, token)) {
+                return;
+            }
+            connection.setSoTimeout(0);
+            while (!serverSocket.isClosed()) {
+                CompilationRequest request = CompilerDaemonProtocol.readRequest(input);
+                Optional<String> disallowedOption = findDisallowedOption(request.compilerOptions);
+                if (disallowedOption.isPresent()) {
+                    CompilerDaemonProtocol.writeFailure(output, "Compiler option " + disallowedOption.get()
+                            + " is not allowed, the daemon doesn't run annotation processors and compiler plugins");
+                    continue;
+                }
+                List<String> compilerOptions = new ArrayList<>(request.compilerOptions);
+                compilerOptions.add("-proc:none");
+                CompilationOutcome outcome;
+                try {
+                    outcome = classFactory.compile(request.classSources, compiler, request.javaVersion,
+                            request.compilationClassPath, compilerOptions, CompilationListener.NONE, request.analysisOnly);
+                } catch (RuntimeException | Error e) {
+                    // e.g. a compiler bug or running out of memory, the daemon keeps serving other requests
+                    CompilerDaemonProtocol.writeFailure(output, e.toString());
+                    continue;
+                }
+                compilations.increment();
+                CompilerDaemonProtocol.writeOutcome(output, outcome, request);
+            }
+        } catch (EOFException | SocketException e) {
+            // the client closed the connection or the daemon is closing
+        } catch (IOException e) {
+            // the connection is broken, the client didn't authenticate or sent a malformed request, the client notices it
+        } finally {
+            openConnections.remove(socket);
+        }
+    }
+}
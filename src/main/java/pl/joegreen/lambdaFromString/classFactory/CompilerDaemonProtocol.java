@@ -0,0 +1,355 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import pl.joegreen.lambdaFromString.classFactory.DefaultClassFactory.CompilationOutcome;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Messages exchanged by {@link RemoteClassFactory} and {@link CompilerDaemon}. A connection starts with a handshake
+ * (the protocol version and mutual authentication with the daemon token) and then carries any number
+ * of request-response pairs.
+ * A request contains class sources and compilation settings, a response contains the compilation outcome
+ * (class bytes and compiler messages) or the reason why the daemon couldn't compile.
+ * Strings are written as UTF-8 bytes preceded by their length, as sources can exceed the limit of writeUTF.
+ * Lengths and counts are checked before anything is allocated for them.
+ */
+final class CompilerDaemonProtocol {
+    static final int VERSION = 3;
+    static final int TOKEN_LENGTH = 32;
+    private static final int NONCE_LENGTH = 32;
+    private static final String AUTHENTICATION_ALGORITHM = "HmacSHA256";
+    private static final int AUTHENTICATION_CODE_LENGTH = 32;
+    private static final byte DAEMON_ROLE = 0;
+    private static final byte CLIENT_ROLE = 1;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int MAX_LENGTH = 16 * 1024 * 1024;
+    private static final int MAX_COUNT = 64 * 1024;
+    private static final byte COMPILED = 0;
+    private static final byte FAILED = 1;
+
+    private CompilerDaemonProtocol() {
+    }
+
+    /**
+     * Proves to the daemon that the client knows the token and checks that the daemon knows it too, without sending
+     * the token: both sides send a random nonce and an HMAC of both nonces keyed with the token, so a process
+     * listening on the port instead of the daemon learns nothing about the token and cannot answer the challenge.
+     *
+     * @throws IOException if the daemon doesn't know the token or uses another version of the protocol
+     */
+    static void authenticateDaemon(DataInputStream input, DataOutputStream output, byte[] token) throws IOException {
+        byte[] clientNonce = randomNonce();
+        output.writeInt(VERSION);
+        output.write(clientNonce);
+        output.flush();
+        byte[] daemonNonce = new byte[NONCE_LENGTH];
+        input.readFully(daemonNonce);
+        byte[] daemonCode = new byte[AUTHENTICATION_CODE_LENGTH];
+        input.readFully(daemonCode);
+        if (!MessageDigest.isEqual(authenticationCode(token, DAEMON_ROLE, clientNonce, daemonNonce), daemonCode)) {
+            throw new IOException("Compiler daemon doesn't know the token, it may be another process listening on its port");
+        }
+        output.write(authenticationCode(token, CLIENT_ROLE, clientNonce, daemonNonce));
+        output.flush();
+    }
+
+    /**
+     * The daemon side of {@link #authenticateDaemon(DataInputStream, DataOutputStream, byte[])}.
+     *
+     * @return true if the client knows the token
+     * @throws IOException if the client uses another version of the protocol
+     */
+    static boolean authenticateClient(DataInputStream input, DataOutputStream output, byte[] token) throws IOException {
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version + ", expected " + VERSION);
+        }
+        byte[] clientNonce = new byte[NONCE_LENGTH];
+        input.readFully(clientNonce);
+        byte[] daemonNonce = randomNonce();
+        output.write(daemonNonce);
+        output.write(authenticationCode(token, DAEMON_ROLE, clientNonce, daemonNonce));
+        output.flush();
+        byte[] clientCode = new byte[AUTHENTICATION_CODE_LENGTH];
+        input.readFully(clientCode);
+        return MessageDigest.isEqual(authenticationCode(token, CLIENT_ROLE, clientNonce, daemonNonce), clientCode);
+    }
+
+    private static byte[] randomNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * The role makes the codes of the client and the daemon different, so neither of them can be replayed by the other side.
+     */
+    private static byte[] authenticationCode(byte[] token, byte role, byte[] clientNonce, byte[] daemonNonce) {
+        try {
+            Mac mac = Mac.getInstance(AUTHENTICATION_ALGORITHM);
+            mac.init(new SecretKeySpec(token, AUTHENTICATION_ALGORITHM));
+            mac.update(role);
+            mac.update(clientNonce);
+            return mac.doFinal(daemonNonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(AUTHENTICATION_ALGORITHM + " is not available", e);
+        }
+    }
+
+    static void writeRequest(DataOutputStream output, CompilationRequest request) throws IOException {
+        output.writeInt(request.classSources.size());
+        for (ClassSourceJavaObject classSource : request.classSources) {
+            writeString(output, classSource.getClassName());
+            writeString(output, classSource.getCharContent(true).toString());
+        }
+        output.writeInt(request.javaVersion);
+        writeString(output, request.compilationClassPath);
+        output.writeInt(request.compilerOptions.size());
+        for (String option : request.compilerOptions) {
+            writeString(output, option);
+        }
+        output.writeBoolean(request.analysisOnly);
+        output.flush();
+    }
+
+    /**
+     * @throws IOException if the request is malformed
+     */
+    static CompilationRequest readRequest(DataInputStream input) throws IOException {
+        int classCount = readCount(input);
+        List<ClassSourceJavaObject> classSources = new ArrayList<>();
+        for (int i = 0; i < classCount; i++) {
+            classSources.add(new ClassSourceJavaObject(readString(input), readString(input)));
+        }
+        int javaVersion = input.readInt();
+        String compilationClassPath = readString(input);
+        int optionCount = readCount(input);
+        List<String> compilerOptions = new ArrayList<>();
+        for (int i = 0; i < optionCount; i++) {
+            compilerOptions.add(readString(input));
+        }
+        return new CompilationRequest(classSources, javaVersion, compilationClassPath, compilerOptions, input.readBoolean());
+    }
+
+    /**
+     * Writes the outcome of compiling the sources of the request. Sources of diagnostics are written as class names.
+     */
+    static void writeOutcome(DataOutputStream output, CompilationOutcome outcome, CompilationRequest request) throws IOException {
+        // compilers may wrap the source objects, so they are matched by URI (like in DefaultClassFactory)
+        Map<URI, String> classNamesByUri = new HashMap<>();
+        request.classSources.forEach(classSource -> classNamesByUri.put(classSource.toUri(), classSource.getClassName()));
+        output.writeByte(COMPILED);
+        output.writeBoolean(outcome.isSuccessful());
+        output.writeInt(outcome.getClasses().size());
+        for (Map.Entry<String, CompiledClassJavaObject> compiledClass : outcome.getClasses().entrySet()) {
+            writeString(output, compiledClass.getKey());
+            byte[] bytes = compiledClass.getValue().getBytes();
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        output.writeInt(outcome.getDiagnostics().size());
+        for (Diagnostic<? extends JavaFileObject> diagnostic : outcome.getDiagnostics()) {
+            writeString(output, diagnostic.getKind().name());
+            writeString(output, diagnostic.getSource() == null ? ""
+                    : classNamesByUri.getOrDefault(diagnostic.getSource().toUri(), ""));
+            output.writeLong(diagnostic.getPosition());
+            output.writeLong(diagnostic.getStartPosition());
+            output.writeLong(diagnostic.getEndPosition());
+            output.writeLong(diagnostic.getLineNumber());
+            output.writeLong(diagnostic.getColumnNumber());
+            writeString(output, Optional.ofNullable(diagnostic.getCode()).orElse(""));
+            writeString(output, Optional.ofNullable(diagnostic.getMessage(Locale.getDefault())).orElse(""));
+        }
+        writeString(output, outcome.getStandardError());
+        output.flush();
+    }
+
+    static void writeFailure(DataOutputStream output, String reason) throws IOException {
+        output.writeByte(FAILED);
+        writeString(output, reason);
+        output.flush();
+    }
+
+    /**
+     * Reads the outcome of compiling the sources of the request. Diagnostics refer to the request sources.
+     * If the daemon couldn't compile the sources, the outcome is unsuccessful and its standard error contains the reason.
+     *
+     * @throws IOException if the response is malformed
+     */
+    static CompilationOutcome readOutcome(DataInputStream input, CompilationRequest request) throws IOException {
+        if (input.readByte() == FAILED) {
+            return new CompilationOutcome(false, Collections.emptyMap(), Collections.emptyList(),
+                    "Compiler daemon couldn't compile the sources: " + readString(input));
+        }
+        boolean successful = input.readBoolean();
+        int classCount = readCount(input);
+        Map<String, CompiledClassJavaObject> classes = new HashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            String className = readString(input);
+            byte[] bytes = new byte[readLength(input)];
+            input.readFully(bytes);
+            classes.put(className, new CompiledClassJavaObject(className, bytes));
+        }
+        Map<String, ClassSourceJavaObject> sourcesByClassName = new HashMap<>();
+        request.classSources.forEach(classSource -> sourcesByClassName.put(classSource.getClassName(), classSource));
+        int diagnosticCount = readCount(input);
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+        for (int i = 0; i < diagnosticCount; i++) {
+            Diagnostic.Kind kind = readDiagnosticKind(input);
+            JavaFileObject source = sourcesByClassName.get(readString(input));
+            diagnostics.add(new RemoteDiagnostic(kind, source, input.readLong(), input.readLong(), input.readLong(),
+                    input.readLong(), input.readLong(), readString(input), readString(input)));
+        }
+        return new CompilationOutcome(successful, classes, diagnostics, readString(input));
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[readLength(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid length " + length + ", the maximum is " + MAX_LENGTH);
+        }
+        return length;
+    }
+
+    private static int readCount(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count " + count + ", the maximum is " + MAX_COUNT);
+        }
+        return count;
+    }
+
+    private static Diagnostic.Kind readDiagnosticKind(DataInputStream input) throws IOException {
+        String kind = readString(input);
+        try {
+            return Diagnostic.Kind.valueOf(kind);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown diagnostic kind " + kind, e);
+        }
+    }
+
+    static class CompilationRequest {
+        final List<ClassSourceJavaObject> classSources;
+        final int javaVersion;
+        final String compilationClassPath;
+        final List<String> compilerOptions;
+        final boolean analysisOnly;
+
+        CompilationRequest(List<ClassSourceJavaObject> classSources, int javaVersion, String compilationClassPath,
+                           List<String> compilerOptions, boolean analysisOnly) {
+            this.classSources = classSources;
+            this.javaVersion = javaVersion;
+            this.compilationClassPath = compilationClassPath;
+            this.compilerOptions = compilerOptions;
+            this.analysisOnly = analysisOnly;
+        }
+    }
+
+    /**
+     * Compiler message received from the daemon, with the message already formatted in the daemon's locale.
+     */
+    private static class RemoteDiagnostic implements Diagnostic<JavaFileObject> {
+        private final Kind kind;
+        private final JavaFileObject source;
+        private final long position;
+        private final long startPosition;
+        private final long endPosition;
+        private final long lineNumber;
+        private final long columnNumber;
+        private final String code;
+        private final String message;
+
+        private RemoteDiagnostic(Kind kind, JavaFileObject source, long position, long startPosition, long endPosition,
+                                 long lineNumber, long columnNumber, String code, String message) {
+            this.kind = kind;
+            this.source = source;
+            this.position = position;
+            this.startPosition = startPosition;
+            this.endPosition = endPosition;
+            this.lineNumber = lineNumber;
+            this.columnNumber = columnNumber;
+            this.code = code;
+            this.message = message;
+        }
+
+        @Override
+        public Kind getKind() {
+            return kind;
+        }
+
+        @Override
+        public JavaFileObject getSource() {
+            return source;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public long getStartPosition() {
+            return startPosition;
+        }
+
+        @Override
+        public long getEndPosition() {
+            return endPosition;
+        }
+
+        @Override
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public long getColumnNumber() {
+            return columnNumber;
+        }
+
+        @Override
+        public String getCode() {
+            return code;
+        }
+
+        @Override
+        public String getMessage(Locale locale) {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return kind + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import javax.tools.JavaCompiler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.Consumer;
+
+/**
+ * Pool of compiler instances used by concurrent compilations. Each compilation borrows a compiler exclusively,
+ * so compilations running in parallel don't contend for compiler state (e.g. ECJ synchronizes its instances)
+ * and for file managers (class factories keep file managers for each compiler instance, see {@link DefaultClassFactory}).
+ * The number of parallel compilations is limited by the pool size, other compilations wait for a free compiler.
+ * <br>
+ * A thread gets the compiler it used the last time if it's free, so the compiler and its file managers are warm
+ * for that thread. Compiler instances are created with the no-arg constructor of the given compiler class.
+ * When that's not possible (e.g. javac on Java 9+ is not accessible outside of its module) each slot gets
+ * a distinct compiler delegating to the given one, which is safe for javac as it creates a new context for each
+ * compilation, and which still gives each slot its own file managers.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public class CompilerPool {
+    private final List<Slot> slots;
+    // recently used slots are at the front, the slots which weren't used for the longest time are at the end
+    private final BlockingDeque<Slot> freeSlots = new LinkedBlockingDeque<>();
+    private final ThreadLocal<Slot> lastUsedSlots = new ThreadLocal<>();
+
+    public CompilerPool(JavaCompiler compiler, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Compiler pool size has to be positive: " + size);
+        }
+        List<Slot> slots = new ArrayList<>();
+        slots.add(new Slot(compiler));
+        for (int i = 1; i < size; i++) {
+            slots.add(new Slot(createCompiler(compiler)));
+        }
+        this.slots = Collections.unmodifiableList(slots);
+        freeSlots.addAll(slots);
+    }
+
+    public int getSize() {
+        return slots.size();
+    }
+
+    /**
+     * Runs the compilation with a compiler borrowed from the pool, waiting for a free compiler if needed.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting for a compiler
+     */
+    public <T, E extends Exception> T compile(Compilation<T, E> compilation) throws E, InterruptedException {
+        Slot slot = acquireSlot();
+        try {
+            return compilation.compile(slot.compiler);
+        } finally {
+            freeSlots.offerFirst(slot);
+        }
+    }
+
+    /**
+     * Runs the action (e.g. a small compilation) with every compiler of the pool, so that their first compilations
+     * are faster. Compilers that are busy are waited for.
+     */
+    public void warmUp(Consumer<JavaCompiler> warmUpAction) throws InterruptedException {
+        Set<Slot> warmSlots = Collections.newSetFromMap(new IdentityHashMap<>());
+        // slots taken again when only warm slots were free, kept until the cold ones are released by compilations
+        List<Slot> heldSlots = new ArrayList<>();
+        try {
+            while (warmSlots.size() < slots.size()) {
+                // warm slots are released to the front, so cold slots are taken from the end first
+                Slot slot = freeSlots.takeLast();
+                if (!warmSlots.add(slot)) {
+                    heldSlots.add(slot);
+                    continue;
+                }
+                try {
+                    warmUpAction.accept(slot.compiler);
+                } finally {
+                    freeSlots.offerFirst(slot);
+                }
+            }
+        } finally {
+            heldSlots.forEach(freeSlots::offerFirst);
+        }
+    }
+
+    private Slot acquireSlot() throws InterruptedException {
+        Slot lastUsedSlot = lastUsedSlots.get();
+        if (lastUsedSlot != null && freeSlots.remove(lastUsedSlot)) {
+            return lastUsedSlot;
+        }
+        Slot slot = freeSlots.takeFirst();
+        lastUsedSlots.set(slot);
+        return slot;
+    }
+
+    private static JavaCompiler createCompiler(JavaCompiler compiler) {
+        try {
+            return compiler.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new PooledJavaCompiler(compiler);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Compilation<T, E extends Exception> {
+        T compile(JavaCompiler compiler) throws E;
+    }
+
+    private static class Slot {
+        private final JavaCompiler compiler;
+
+        private Slot(JavaCompiler compiler) {
+            this.compiler = compiler;
+        }
+    }
+}
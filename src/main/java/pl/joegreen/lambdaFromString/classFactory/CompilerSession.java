@@ -0,0 +1,112 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps standard file managers of a compiler between compilations. Creating a file manager and letting it open
+ * and index class path archives is a significant part of the compilation time, so file managers are reused.
+ * A file manager is not threadsafe, so each compilation acquires one exclusively and releases it when it's done.
+ * File managers of some compilers (e.g. javac 8) keep using the class path of their first compilation,
+ * so a separate session is needed for each compilation class path. When a session is closed, its idle file managers
+ * are closed and file managers released later are closed instead of being kept.
+ */
+class CompilerSession {
+    private static final int MAXIMUM_IDLE_FILE_MANAGERS = Runtime.getRuntime().availableProcessors();
+
+    private final JavaCompiler compiler;
+    private final Queue<StandardJavaFileManager> idleFileManagers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleFileManagersCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    CompilerSession(JavaCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    StandardJavaFileManager acquireFileManager() {
+        StandardJavaFileManager fileManager = idleFileManagers.poll();
+        if (fileManager != null) {
+            idleFileManagersCount.decrementAndGet();
+            return fileManager;
+        }
+        /*
+         * diagnosticListener = null -> compiler's default reporting
+         * diagnostics; locale = null -> default locale to format diagnostics;
+         * charset = null -> uses platform default charset
+         */
+        return compiler.getStandardFileManager(null, null, null);
+    }
+
+    void releaseFileManager(StandardJavaFileManager fileManager) {
+        if (closed) {
+            discardFileManager(fileManager);
+        } else if (idleFileManagersCount.incrementAndGet() <= MAXIMUM_IDLE_FILE_MANAGERS) {
+            idleFileManagers.offer(fileManager);
+            // the session could have been closed after the check above
+            if (closed) {
+                closeIdleFileManagers();
+            }
+        } else {
+            idleFileManagersCount.decrementAndGet();
+            discardFileManager(fileManager);
+        }
+    }
+
+    /**
+     * Closes the idle file managers. File managers used by running compilations are closed when they are released.
+     */
+    void close() {
+        closed = true;
+        closeIdleFileManagers();
+    }
+
+    private void closeIdleFileManagers() {
+        StandardJavaFileManager fileManager;
+        while ((fileManager = idleFileManagers.poll()) != null) {
+            idleFileManagersCount.decrementAndGet();
+            discardFileManager(fileManager);
+        }
+    }
+
+    /**
+     * Closes a file manager that should not be used anymore (e.g. because the compilation using it failed unexpectedly).
+     */
+    void discardFileManager(StandardJavaFileManager fileManager) {
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            // the file manager is not used anymore anyway
+        }
+    }
+
+    /**
+     * Identifies the session of a compiler instance (compilers don't define equality) and a compilation class path.
+     */
+    static final class Key {
+        private final JavaCompiler compiler;
+        private final String compilationClassPath;
+
+        Key(JavaCompiler compiler, String compilationClassPath) {
+            this.compiler = compiler;
+            this.compilationClassPath = compilationClassPath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return compiler == key.compiler && Objects.equals(compilationClassPath, key.compilationClassPath);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(compiler) + Objects.hashCode(compilationClassPath);
+        }
+    }
+}
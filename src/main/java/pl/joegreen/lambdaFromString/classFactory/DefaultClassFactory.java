@@ -1,13 +1,23 @@
 package pl.joegreen.lambdaFromString.classFactory;
 
+import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,52 +28,372 @@ import java.util.stream.Stream;
  * If you use it your code may not work with the next version of the library.
  */
 public class DefaultClassFactory implements ClassFactory {
+    private static final String JAVAC_TASK_CLASS_NAME = "com.sun.source.util.JavacTask";
+    private static final int MAXIMUM_COMPILER_SESSIONS = 16;
+
+    private final Optional<BytecodeCache> bytecodeCache;
+    private final BytecodeCacheKeyGenerator bytecodeCacheKeyGenerator = new BytecodeCacheKeyGenerator();
+    // file managers are kept between compilations, see CompilerSession; the least recently used sessions are closed
+    private final LinkedHashMap<CompilerSession.Key, CompilerSession> compilerSessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    public DefaultClassFactory() {
+        this.bytecodeCache = Optional.empty();
+    }
+
+    /**
+     * Creates a class factory that stores compiled classes in the given cache and loads them from it instead of running
+     * the compiler when a class with the same source is compiled again with the same settings (also by another process).
+     */
+    public DefaultClassFactory(BytecodeCache bytecodeCache) {
+        this.bytecodeCache = Optional.of(bytecodeCache);
+    }
 
     @Override
     public Class<?> createClass(String fullClassName, String sourceCode, JavaCompiler compiler,
                                 int javaVersion, String compilationClassPath,
                                 List<String> additionalCompilerOptions, ClassLoader parentClassLoader) throws ClassCompilationException {
+        return createClass(fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                additionalCompilerOptions, parentClassLoader, CompilationListener.NONE);
+    }
+
+    /**
+     * Reports the bytecode cache lookup, the compilation (with javac phases when the compiler is javac) and class loading.
+     */
+    @Override
+    public Class<?> createClass(String fullClassName, String sourceCode, JavaCompiler compiler,
+                                int javaVersion, String compilationClassPath,
+                                List<String> additionalCompilerOptions, ClassLoader parentClassLoader,
+                                CompilationListener compilationListener) throws ClassCompilationException {
         try {
-            Map<String, CompiledClassJavaObject> compiledClassesBytes = compileClasses(fullClassName, sourceCode,
-                    compiler, javaVersion, compilationClassPath, additionalCompilerOptions);
-            return loadClass(fullClassName, compiledClassesBytes, parentClassLoader);
+            Map<String, CompiledClassJavaObject> compiledClassesBytes;
+            if (bytecodeCache.isPresent()) {
+                String cacheKey = getBytecodeCacheKey(fullClassName, sourceCode, compiler, javaVersion,
+                        compilationClassPath, additionalCompilerOptions);
+                long lookupStartTime = System.nanoTime();
+                Optional<Map<String, CompiledClassJavaObject>> cachedClasses = loadFromBytecodeCache(cacheKey);
+                compilationListener.phaseFinished(CompilationPhase.BYTECODE_CACHE_LOOKUP, System.nanoTime() - lookupStartTime);
+                if (cachedClasses.isPresent()) {
+                    compiledClassesBytes = cachedClasses.get();
+                } else {
+                    compiledClassesBytes = compileClasses(fullClassName, sourceCode,
+                            compiler, javaVersion, compilationClassPath, additionalCompilerOptions, compilationListener);
+                    storeInBytecodeCache(cacheKey, compiledClassesBytes);
+                }
+            } else {
+                compiledClassesBytes = compileClasses(fullClassName, sourceCode,
+                        compiler, javaVersion, compilationClassPath, additionalCompilerOptions, compilationListener);
+            }
+            compilationListener.classesCreated(getBytes(compiledClassesBytes));
+            long loadingStartTime = System.nanoTime();
+            Class<?> loadedClass = loadClass(fullClassName, compiledClassesBytes, parentClassLoader);
+            compilationListener.phaseFinished(CompilationPhase.CLASS_LOADING, System.nanoTime() - loadingStartTime);
+            return loadedClass;
         } catch (ClassNotFoundException | RuntimeException e) {
             throw new ClassCompilationException(e);
         }
     }
 
+    /**
+     * Runs javac only until the end of the analysis (without generating bytecode), other compilers compile the class
+     * into memory without loading it. The bytecode cache is not used.
+     */
+    @Override
+    public CompilationDetails analyzeClass(String fullClassName, String sourceCode, JavaCompiler compiler,
+                                           int javaVersion, String compilationClassPath,
+                                           List<String> additionalCompilerOptions) throws ClassCompilationException {
+        try {
+            CompilationOutcome outcome = compile(Collections.singletonList(new ClassSourceJavaObject(fullClassName, sourceCode)),
+                    compiler, javaVersion, compilationClassPath, additionalCompilerOptions, CompilationListener.NONE, true);
+            CompilationDetails details = new CompilationDetails(fullClassName, sourceCode, outcome.diagnostics, outcome.standardError);
+            if (!outcome.successful) {
+                throw new ClassCompilationException(details);
+            }
+            return details;
+        } catch (RuntimeException e) {
+            throw new ClassCompilationException(e);
+        }
+    }
+
+    @Override
+    public Class<?> defineClass(String fullClassName, Map<String, byte[]> classes,
+                                ClassLoader parentClassLoader) throws ClassCompilationException {
+        try {
+            return loadClass(fullClassName, classes.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+                    entry -> new CompiledClassJavaObject(entry.getKey(), entry.getValue()))), parentClassLoader);
+        } catch (ClassNotFoundException | RuntimeException | LinkageError e) {
+            throw new ClassCompilationException(e);
+        }
+    }
+
+    /**
+     * Compiles all the classes with a single compilation task and loads them with a single class loader.
+     * Classes with compilation errors are removed from the batch and the rest of it is compiled again,
+     * so one incorrect class doesn't prevent other classes from being created.
+     */
+    @Override
+    public BatchCompilationResult createClasses(Map<String, String> sourceCodes, JavaCompiler compiler,
+                                                int javaVersion, String compilationClassPath,
+                                                List<String> additionalCompilerOptions, ClassLoader parentClassLoader) {
+        Map<String, ClassCompilationException> failures = new HashMap<>();
+        try {
+            Map<String, CompiledClassJavaObject> compiledClassesBytes = new HashMap<>();
+            Map<String, String> cacheKeys = new HashMap<>();
+            Map<String, String> sourceCodesToCompile = new LinkedHashMap<>();
+            sourceCodes.forEach((className, sourceCode) -> {
+                if (!bytecodeCache.isPresent()) {
+                    sourceCodesToCompile.put(className, sourceCode);
+                    return;
+                }
+                String cacheKey = getBytecodeCacheKey(className, sourceCode, compiler, javaVersion,
+                        compilationClassPath, additionalCompilerOptions);
+                Optional<Map<String, CompiledClassJavaObject>> cachedClasses = loadFromBytecodeCache(cacheKey);
+                if (cachedClasses.isPresent()) {
+                    compiledClassesBytes.putAll(cachedClasses.get());
+                } else {
+                    cacheKeys.put(className, cacheKey);
+                    sourceCodesToCompile.put(className, sourceCode);
+                }
+            });
+            Map<String, CompiledClassJavaObject> newlyCompiledClassesBytes = compileBatch(sourceCodesToCompile, failures,
+                    compiler, javaVersion, compilationClassPath, additionalCompilerOptions);
+            compiledClassesBytes.putAll(newlyCompiledClassesBytes);
+            cacheKeys.forEach((className, cacheKey) -> {
+                if (!failures.containsKey(className)) {
+                    storeInBytecodeCache(cacheKey, newlyCompiledClassesBytes.entrySet().stream()
+                            .filter(entry -> entry.getKey().equals(className) || entry.getKey().startsWith(className + "$"))
+                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+                }
+            });
+            List<String> compiledClassNames = sourceCodes.keySet().stream()
+                    .filter(className -> !failures.containsKey(className))
+                    .collect(Collectors.toList());
+            Map<String, Class<?>> classes = loadClasses(compiledClassNames, compiledClassesBytes,
+                    parentClassLoader, failures);
+            return new BatchCompilationResult(classes, failures, getBytes(compiledClassesBytes));
+        } catch (RuntimeException e) {
+            sourceCodes.keySet().forEach(className -> failures.put(className, new ClassCompilationException(e)));
+            return new BatchCompilationResult(new HashMap<>(), failures);
+        }
+    }
+
+    protected String getBytecodeCacheKey(String fullClassName, String sourceCode, JavaCompiler compiler, int javaVersion,
+                                         String compilationClassPath, List<String> additionalCompilerOptions) {
+        return bytecodeCacheKeyGenerator.generateKey(fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                mergeStringLists(getDefaultCompilerOptions(javaVersion, compilationClassPath), additionalCompilerOptions));
+    }
+
+    private Optional<Map<String, CompiledClassJavaObject>> loadFromBytecodeCache(String cacheKey) {
+        return bytecodeCache.flatMap(cache -> cache.load(cacheKey)).map(cachedClasses -> cachedClasses.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> new CompiledClassJavaObject(entry.getKey(), entry.getValue()))));
+    }
+
+    private void storeInBytecodeCache(String cacheKey, Map<String, CompiledClassJavaObject> compiledClassesBytes) {
+        bytecodeCache.ifPresent(cache -> cache.store(cacheKey, getBytes(compiledClassesBytes)));
+    }
+
+    private static Map<String, byte[]> getBytes(Map<String, CompiledClassJavaObject> compiledClassesBytes) {
+        return compiledClassesBytes.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getBytes()));
+    }
+
     protected Class<?> loadClass(String fullClassName, Map<String, CompiledClassJavaObject> compiledClassesBytes, ClassLoader parentClassLoader) throws ClassNotFoundException {
         return (new InMemoryClassLoader(compiledClassesBytes, parentClassLoader)).loadClass(fullClassName);
     }
 
+    protected Map<String, Class<?>> loadClasses(Collection<String> fullClassNames, Map<String, CompiledClassJavaObject> compiledClassesBytes,
+                                                ClassLoader parentClassLoader, Map<String, ClassCompilationException> failures) {
+        InMemoryClassLoader classLoader = new InMemoryClassLoader(compiledClassesBytes, parentClassLoader);
+        Map<String, Class<?>> classes = new HashMap<>();
+        for (String fullClassName : fullClassNames) {
+            try {
+                classes.put(fullClassName, classLoader.loadClass(fullClassName));
+            } catch (ClassNotFoundException | RuntimeException | LinkageError e) {
+                failures.put(fullClassName, new ClassCompilationException(e));
+            }
+        }
+        return classes;
+    }
+
     protected Map<String, CompiledClassJavaObject> compileClasses(
-            String fullClassName, String sourceCode, JavaCompiler compiler, int javaVersion, String compilationClassPath, List<String> additionalCompilerOptions) throws ClassCompilationException {
+            String fullClassName, String sourceCode, JavaCompiler compiler, int javaVersion, String compilationClassPath,
+            List<String> additionalCompilerOptions, CompilationListener compilationListener) throws ClassCompilationException {
 
         ClassSourceJavaObject classSourceObject = new ClassSourceJavaObject(fullClassName, sourceCode);
-        /*
-         * diagnosticListener = null -> compiler's default reporting
-         * diagnostics; locale = null -> default locale to format diagnostics;
-         * charset = null -> uses platform default charset
-         */
-        try (InMemoryFileManager stdFileManager = new InMemoryFileManager(compiler.getStandardFileManager(null, null, null))) {
+        CompilationOutcome outcome = compile(Collections.singletonList(classSourceObject),
+                compiler, javaVersion, compilationClassPath, additionalCompilerOptions, compilationListener, false);
+        if (!outcome.successful) {
+            throw new ClassCompilationException(
+                    new CompilationDetails(fullClassName, sourceCode, outcome.diagnostics, outcome.standardError));
+        }
+        return outcome.classes;
+    }
+
+    private Map<String, CompiledClassJavaObject> compileBatch(Map<String, String> sourceCodes,
+                                                              Map<String, ClassCompilationException> failures,
+                                                              JavaCompiler compiler, int javaVersion, String compilationClassPath,
+                                                              List<String> additionalCompilerOptions) {
+        Map<String, String> remainingSourceCodes = new LinkedHashMap<>(sourceCodes);
+        while (!remainingSourceCodes.isEmpty()) {
+            List<ClassSourceJavaObject> classSourceObjects = remainingSourceCodes.entrySet().stream()
+                    .map(entry -> new ClassSourceJavaObject(entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
+            CompilationOutcome outcome = compile(classSourceObjects, compiler, javaVersion, compilationClassPath,
+                    additionalCompilerOptions, CompilationListener.NONE, false);
+            if (outcome.successful) {
+                return outcome.classes;
+            }
+            Map<String, List<Diagnostic<? extends JavaFileObject>>> diagnosticsByClass =
+                    groupDiagnosticsByClass(classSourceObjects, outcome.diagnostics);
+            List<String> incorrectClasses = diagnosticsByClass.entrySet().stream()
+                    .filter(entry -> entry.getValue().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            if (incorrectClasses.isEmpty()) {
+                boolean sourcesUnknown = outcome.diagnostics.stream().allMatch(d -> d.getSource() == null);
+                if (sourcesUnknown && remainingSourceCodes.size() > 1) {
+                    // some compilers (e.g. ECJ) don't report sources of diagnostics, halves are compiled separately to find incorrect classes
+                    return compileHalves(remainingSourceCodes, failures, compiler, javaVersion, compilationClassPath,
+                            additionalCompilerOptions);
+                }
+                // errors that cannot be attributed to any class (e.g. invalid compiler options) fail the whole batch
+                remainingSourceCodes.forEach((className, sourceCode) -> failures.put(className, new ClassCompilationException(
+                        new CompilationDetails(className, sourceCode, outcome.diagnostics, outcome.standardError))));
+                remainingSourceCodes.clear();
+            }
+            for (String className : incorrectClasses) {
+                failures.put(className, new ClassCompilationException(new CompilationDetails(className,
+                        remainingSourceCodes.remove(className), diagnosticsByClass.get(className), outcome.standardError)));
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    private Map<String, CompiledClassJavaObject> compileHalves(Map<String, String> sourceCodes,
+                                                               Map<String, ClassCompilationException> failures,
+                                                               JavaCompiler compiler, int javaVersion, String compilationClassPath,
+                                                               List<String> additionalCompilerOptions) {
+        Map<String, String> firstHalf = new LinkedHashMap<>();
+        Map<String, String> secondHalf = new LinkedHashMap<>();
+        sourceCodes.forEach((className, sourceCode) ->
+                (firstHalf.size() < sourceCodes.size() / 2 ? firstHalf : secondHalf).put(className, sourceCode));
+        Map<String, CompiledClassJavaObject> classes = new HashMap<>(compileBatch(firstHalf, failures,
+                compiler, javaVersion, compilationClassPath, additionalCompilerOptions));
+        classes.putAll(compileBatch(secondHalf, failures, compiler, javaVersion, compilationClassPath, additionalCompilerOptions));
+        return classes;
+    }
+
+    private static Map<String, List<Diagnostic<? extends JavaFileObject>>> groupDiagnosticsByClass(
+            List<ClassSourceJavaObject> classSourceObjects, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        Map<String, List<Diagnostic<? extends JavaFileObject>>> diagnosticsByClass = new HashMap<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getSource() == null) {
+                continue;
+            }
+            // compilers may wrap the source objects so they are matched by URI instead of identity
+            classSourceObjects.stream()
+                    .filter(classSource -> classSource.toUri().equals(diagnostic.getSource().toUri()))
+                    .findFirst()
+                    .ifPresent(classSource -> diagnosticsByClass
+                            .computeIfAbsent(classSource.getClassName(), className -> new ArrayList<>())
+                            .add(diagnostic));
+        }
+        return diagnosticsByClass;
+    }
+
+    /**
+     * Compiles the classes into memory with a single compilation task, reporting the compilation to the listener.
+     *
+     * @param analysisOnly true if the compiler can stop after the analysis of the sources, see {@link #analyzeClass}
+     */
+    protected CompilationOutcome compile(List<ClassSourceJavaObject> classSourceObjects, JavaCompiler compiler,
+                                         int javaVersion, String compilationClassPath, List<String> additionalCompilerOptions,
+                                         CompilationListener compilationListener, boolean analysisOnly) {
+        CompilerSession session = getCompilerSession(compiler, compilationClassPath);
+        StandardJavaFileManager sharedFileManager = session.acquireFileManager();
+        boolean completed = false;
+        try (InMemoryFileManager stdFileManager = new InMemoryFileManager(sharedFileManager)) {
             StringWriter stdErrWriter = new StringWriter();
             DiagnosticCollector<JavaFileObject> diagnosticsCollector = new DiagnosticCollector<>();
             List<String> finalCompilerOptions =
                     mergeStringLists(getDefaultCompilerOptions(javaVersion, compilationClassPath), additionalCompilerOptions);
             JavaCompiler.CompilationTask compilationTask = compiler.getTask(stdErrWriter,
                     stdFileManager, diagnosticsCollector,
-                    finalCompilerOptions, null, Collections.singletonList(classSourceObject));
+                    finalCompilerOptions, null, classSourceObjects);
+            Optional<JavacPhaseTimer> javacPhaseTimer = compilationListener == CompilationListener.NONE
+                    ? Optional.empty() : JavacPhaseTimer.register(compilationTask);
 
-            boolean status = compilationTask.call();
-            if (!status) {
-                throw new ClassCompilationException(
-                        new CompilationDetails(fullClassName, sourceCode,
-                                diagnosticsCollector.getDiagnostics(), stdErrWriter.toString()));
+            long compilationStartTime = System.nanoTime();
+            boolean status = analysisOnly ? analyze(compilationTask, diagnosticsCollector) : compilationTask.call();
+            compilationListener.phaseFinished(CompilationPhase.COMPILATION, System.nanoTime() - compilationStartTime);
+            javacPhaseTimer.ifPresent(timer -> timer.reportTo(compilationListener));
+            compilationListener.diagnosticsReported(diagnosticsCollector.getDiagnostics());
+            completed = true;
+            return new CompilationOutcome(status, stdFileManager.getClasses(),
+                    diagnosticsCollector.getDiagnostics(), stdErrWriter.toString());
+        } finally {
+            if (completed) {
+                session.releaseFileManager(sharedFileManager);
+            } else {
+                session.discardFileManager(sharedFileManager);
             }
-            return stdFileManager.getClasses();
         }
     }
 
+    /**
+     * Returns the session of the compiler and the class path. Sessions are kept for a limited number of compilers
+     * and class paths, the least recently used session is closed (with its idle file managers, so their open class
+     * path archives are released) when a new one is created over the limit.
+     */
+    private CompilerSession getCompilerSession(JavaCompiler compiler, String compilationClassPath) {
+        CompilerSession.Key key = new CompilerSession.Key(compiler, compilationClassPath);
+        CompilerSession session;
+        CompilerSession evictedSession = null;
+        synchronized (compilerSessions) {
+            session = compilerSessions.get(key);
+            if (session == null) {
+                session = new CompilerSession(compiler);
+                compilerSessions.put(key, session);
+                if (compilerSessions.size() > MAXIMUM_COMPILER_SESSIONS) {
+                    Iterator<CompilerSession> leastRecentlyUsedSessions = compilerSessions.values().iterator();
+                    evictedSession = leastRecentlyUsedSessions.next();
+                    leastRecentlyUsedSessions.remove();
+                }
+            }
+        }
+        // closed outside of the lock, as closing file managers closes their archives
+        if (evictedSession != null) {
+            evictedSession.close();
+        }
+        return session;
+    }
+
+    /**
+     * Calls JavacTask#analyze (reflectively, see {@link JavacPhaseTimer}) if the task is a javac task and compiles
+     * the classes otherwise.
+     */
+    private static boolean analyze(JavaCompiler.CompilationTask compilationTask,
+                                   DiagnosticCollector<JavaFileObject> diagnosticsCollector) {
+        Method analyzeMethod;
+        try {
+            Class<?> javacTaskClass = Class.forName(JAVAC_TASK_CLASS_NAME, false, compilationTask.getClass().getClassLoader());
+            if (!javacTaskClass.isInstance(compilationTask)) {
+                return compilationTask.call();
+            }
+            analyzeMethod = javacTaskClass.getMethod("analyze");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return compilationTask.call();
+        }
+        try {
+            analyzeMethod.invoke(compilationTask);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Analysis failed", e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return diagnosticsCollector.getDiagnostics().stream().noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR);
+    }
+
     protected List<String> getDefaultCompilerOptions(int javaVersion, String compilationClassPath) {
         String javaVersionString = (javaVersion <= 8 ? "1." : "") + javaVersion;
         return Arrays.asList("-classpath", compilationClassPath,
@@ -74,5 +404,38 @@ public class DefaultClassFactory implements ClassFactory {
         return Stream.concat(firstList.stream(), sendList.stream()).collect(Collectors.toList());
     }
 
-}
+    /**
+     * Result of {@link #compile}: compiled classes by their qualified names and compiler messages.
+     */
+    protected static class CompilationOutcome {
+        private final boolean successful;
+        private final Map<String, CompiledClassJavaObject> classes;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        private final String standardError;
+
+        protected CompilationOutcome(boolean successful, Map<String, CompiledClassJavaObject> classes,
+                                     List<Diagnostic<? extends JavaFileObject>> diagnostics, String standardError) {
+            this.successful = successful;
+            this.classes = classes;
+            this.diagnostics = diagnostics;
+            this.standardError = standardError;
+        }
 
+        boolean isSuccessful() {
+            return successful;
+        }
+
+        Map<String, CompiledClassJavaObject> getClasses() {
+            return classes;
+        }
+
+        List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+            return diagnostics;
+        }
+
+        String getStandardError() {
+            return standardError;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bytecode cache that stores every compilation result in a separate file in the given directory.
+ * Files are written to a temporary location first and then atomically moved, so many processes can share
+ * the directory. Entries that cannot be read (e.g. written by an incompatible library version) are removed.
+ */
+public class DirectoryBytecodeCache implements BytecodeCache {
+    private static final int MAGIC_NUMBER = 0x4C465343;
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_EXTENSION = ".classes";
+    // a compilation doesn't create that many classes, nor classes that large
+    private static final int MAXIMUM_CLASS_COUNT = 64 * 1024;
+    private static final int MAXIMUM_CLASS_SIZE = 64 * 1024 * 1024;
+    // lengths of the class name and of the bytecode
+    private static final int MINIMUM_ENCODED_CLASS_SIZE = 2 + 4;
+
+    private final Path directory;
+
+    public DirectoryBytecodeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public Optional<Map<String, byte[]>> load(String key) {
+        Path entryPath = directory.resolve(key + ENTRY_EXTENSION);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryPath)))) {
+            if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION || !key.equals(input.readUTF())) {
+                throw new IOException("Unsupported bytecode cache entry " + entryPath);
+            }
+            return Optional.of(readClasses(input, Files.size(entryPath)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(entryPath);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void store(String key, Map<String, byte[]> classes) {
+        Path temporaryPath = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryPath = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+                output.writeInt(MAGIC_NUMBER);
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(key);
+                writeClasses(output, classes);
+            }
+            Files.move(temporaryPath, directory.resolve(key + ENTRY_EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // the cache is only an optimization, the class was compiled anyway
+            if (temporaryPath != null) {
+                deleteQuietly(temporaryPath);
+            }
+        }
+    }
+
+    /**
+     * Reads classes written by {@link #writeClasses}. Counts and sizes are checked before anything is allocated
+     * for them, so a corrupted entry is reported as an IOException instead of exhausting the memory.
+     *
+     * @param inputSize size of the whole input or its upper bound
+     */
+    static Map<String, byte[]> readClasses(DataInputStream input, long inputSize) throws IOException {
+        int classCount = input.readInt();
+        if (classCount < 0 || classCount > Math.min(MAXIMUM_CLASS_COUNT, inputSize / MINIMUM_ENCODED_CLASS_SIZE)) {
+            throw new IOException("Invalid class count " + classCount);
+        }
+        Map<String, byte[]> classes = new HashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            String className = input.readUTF();
+            int classSize = input.readInt();
+            if (classSize < 0 || classSize > Math.min(MAXIMUM_CLASS_SIZE, inputSize)) {
+                throw new IOException("Invalid size " + classSize + " of class " + className);
+            }
+            byte[] classBytes = new byte[classSize];
+            input.readFully(classBytes);
+            classes.put(className, classBytes);
+        }
+        return classes;
+    }
+
+    static void writeClasses(DataOutputStream output, Map<String, byte[]> classes) throws IOException {
+        output.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> compiledClass : classes.entrySet()) {
+            output.writeUTF(compiledClass.getKey());
+            output.writeInt(compiledClass.getValue().length);
+            output.write(compiledClass.getValue());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // the entry will be overwritten when the class is compiled again
+        }
+    }
+}
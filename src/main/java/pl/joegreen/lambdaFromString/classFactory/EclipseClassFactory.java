@@ -0,0 +1,354 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.batch.Main;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+import org.eclipse.jdt.internal.compiler.tool.EclipseCompiler;
+import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * Class factory compiling classes with the Eclipse compiler (ECJ) called directly instead of through
+ * the javax.tools API, so the class path doesn't have to be opened again for each compilation. An index of the classes
+ * and packages of each compilation class path (which keeps its archives open) is created once and never modified,
+ * so concurrent compilations use it without locking, each of them through its own name environment. Classes added
+ * to class path directories after the index was created are not found. Batches of classes are compiled by a single
+ * ECJ compiler, which parses the sources in a separate thread while the already parsed ones are being processed.
+ * <br>
+ * The compiler passed to the methods of this factory is ignored, ECJ has to be on the class path. Like ECJ used through
+ * javax.tools, this factory works only on Java 8, as the system classes are read from the boot class path
+ * (the supported ECJ version cannot read them from the runtime image of newer versions), so it cannot be created
+ * on newer versions.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public class EclipseClassFactory extends DefaultClassFactory {
+    private static final JavaCompiler ECLIPSE_COMPILER = new EclipseCompiler();
+
+    private final Map<String, ClassPathIndex> classPathIndexes = new ConcurrentHashMap<>();
+    private final Map<List<String>, Map<String, String>> compilerSettings = new ConcurrentHashMap<>();
+
+    /**
+     * @throws UnsupportedOperationException if the JVM is not Java 8
+     */
+    public EclipseClassFactory() {
+        super();
+        requireJava8();
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the JVM is not Java 8
+     */
+    public EclipseClassFactory(BytecodeCache bytecodeCache) {
+        super(bytecodeCache);
+        requireJava8();
+    }
+
+    private static void requireJava8() {
+        int javaVersion = JavaVersionProvider.getJavaVersion();
+        if (javaVersion > 8) {
+            throw new UnsupportedOperationException("EclipseClassFactory works only on Java 8, system classes of Java "
+                    + javaVersion + " are not on the boot class path");
+        }
+    }
+
+    @Override
+    protected String getBytecodeCacheKey(String fullClassName, String sourceCode, JavaCompiler compiler, int javaVersion,
+                                         String compilationClassPath, List<String> additionalCompilerOptions) {
+        return super.getBytecodeCacheKey(fullClassName, sourceCode, ECLIPSE_COMPILER, javaVersion,
+                compilationClassPath, additionalCompilerOptions);
+    }
+
+    @Override
+    protected CompilationOutcome compile(List<ClassSourceJavaObject> classSourceObjects, JavaCompiler compiler,
+                                         int javaVersion, String compilationClassPath, List<String> additionalCompilerOptions,
+                                         CompilationListener compilationListener, boolean analysisOnly) {
+        CompilerOptions compilerOptions = new CompilerOptions(getCompilerSettings(javaVersion, compilationClassPath,
+                additionalCompilerOptions));
+        compilerOptions.generateClassFiles = !analysisOnly;
+        Map<String, ClassSourceJavaObject> sourcesByFileName = new HashMap<>();
+        ICompilationUnit[] compilationUnits = new ICompilationUnit[classSourceObjects.size()];
+        for (int i = 0; i < compilationUnits.length; i++) {
+            ClassSourceJavaObject classSource = classSourceObjects.get(i);
+            String fileName = classSource.getClassName().replace('.', '/') + JavaFileObject.Kind.SOURCE.extension;
+            sourcesByFileName.put(fileName, classSource);
+            compilationUnits[i] = new CompilationUnit(classSource.getCharContent(true).toString().toCharArray(), fileName, null);
+        }
+        List<CompilationResult> results = Collections.synchronizedList(new ArrayList<>());
+        ICompilerRequestor requestor = results::add;
+        Compiler eclipseCompiler = new Compiler(new IndexedNameEnvironment(getClassPathIndex(compilationClassPath)),
+                DefaultErrorHandlingPolicies.proceedWithAllProblems(), compilerOptions, requestor,
+                new DefaultProblemFactory(Locale.getDefault()));
+        // ECJ still uses a single thread for small batches, see Compiler#parseThreshold
+        eclipseCompiler.useSingleThread = false;
+
+        long compilationStartTime = System.nanoTime();
+        eclipseCompiler.compile(compilationUnits);
+        compilationListener.phaseFinished(CompilationPhase.COMPILATION, System.nanoTime() - compilationStartTime);
+
+        boolean successful = true;
+        Map<String, CompiledClassJavaObject> classes = new HashMap<>();
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+        for (CompilationResult result : results) {
+            ClassSourceJavaObject classSource = sourcesByFileName.get(new String(result.getFileName()));
+            Optional.ofNullable(result.getAllProblems()).map(Arrays::stream).orElseGet(Stream::empty)
+                    .forEach(problem -> diagnostics.add(new ProblemDiagnostic(problem, classSource)));
+            // ECJ generates classes also for sources with errors, their methods throw the errors
+            successful &= !result.hasErrors();
+            for (ClassFile classFile : result.getClassFiles()) {
+                String className = new String(classFile.fileName()).replace('/', '.');
+                classes.put(className, new CompiledClassJavaObject(className, classFile.getBytes()));
+            }
+        }
+        compilationListener.diagnosticsReported(diagnostics);
+        return new CompilationOutcome(successful, classes, diagnostics, "");
+    }
+
+    private ClassPathIndex getClassPathIndex(String compilationClassPath) {
+        return classPathIndexes.computeIfAbsent(compilationClassPath, classPath -> {
+            String bootClassPath = Optional.ofNullable(System.getProperty("sun.boot.class.path")).orElse("");
+            return ClassPathIndex.create(Stream.of(bootClassPath, classPath)
+                    .flatMap(path -> Arrays.stream(path.split(File.pathSeparator)))
+                    .filter(entry -> !entry.isEmpty())
+                    .distinct()
+                    .map(File::new)
+                    .collect(Collectors.toList()));
+        });
+    }
+
+    /**
+     * Translates the compiler options (the same as javac options) into ECJ settings with the ECJ command line parser.
+     * The class path is not a setting, it's a part of the name environment.
+     */
+    private Map<String, String> getCompilerSettings(int javaVersion, String compilationClassPath,
+                                                    List<String> additionalCompilerOptions) {
+        List<String> options = new ArrayList<>();
+        List<String> defaultOptions = getDefaultCompilerOptions(javaVersion, compilationClassPath);
+        for (int i = 0; i < defaultOptions.size(); i++) {
+            if (defaultOptions.get(i).equals("-classpath") || defaultOptions.get(i).equals("-cp")) {
+                i++;
+            } else {
+                options.add(defaultOptions.get(i));
+            }
+        }
+        options.addAll(additionalCompilerOptions);
+        return compilerSettings.computeIfAbsent(options, key -> {
+            PrintWriter ignoredOutput = new PrintWriter(new StringWriter());
+            Main commandLineParser = new Main(ignoredOutput, ignoredOutput, false, null, null);
+            commandLineParser.configure(key.toArray(new String[0]));
+            return Collections.unmodifiableMap(new HashMap<>(commandLineParser.options));
+        });
+    }
+
+    /**
+     * Classes and packages of a class path, found when the index is created. Archives of the class path are kept open,
+     * the index is not modified after it's created, so it can be used by concurrent compilations.
+     */
+    private static class ClassPathIndex {
+        // class file names (e.g. java/lang/String.class) of the first class path entry containing them
+        private final Map<String, ClassFileLocation> classFiles = new HashMap<>();
+        // package names separated with slashes (e.g. java/lang)
+        private final Set<String> packages = new HashSet<>();
+
+        private static ClassPathIndex create(List<File> classPathEntries) {
+            ClassPathIndex index = new ClassPathIndex();
+            for (File entry : classPathEntries) {
+                try {
+                    if (entry.isDirectory()) {
+                        index.addDirectory(entry);
+                    } else if (entry.isFile()) {
+                        index.addArchive(entry);
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    // like ECJ, entries that cannot be read are skipped
+                }
+            }
+            return index;
+        }
+
+        private void addArchive(File archive) throws IOException {
+            ZipFile zipFile = new ZipFile(archive);
+            ClassFileLocation location = classFileName -> ClassFileReader.read(zipFile, classFileName);
+            zipFile.stream()
+                    .filter(zipEntry -> !zipEntry.isDirectory())
+                    .forEach(zipEntry -> add(zipEntry.getName(), location));
+        }
+
+        private void addDirectory(File directory) throws IOException {
+            ClassFileLocation location = classFileName -> ClassFileReader.read(new File(directory, classFileName));
+            Path root = directory.toPath();
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(Files::isRegularFile)
+                        .map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+                        .forEach(fileName -> add(fileName, location));
+            }
+        }
+
+        private void add(String fileName, ClassFileLocation location) {
+            if (!fileName.endsWith(SuffixConstants.SUFFIX_STRING_class)) {
+                return;
+            }
+            classFiles.putIfAbsent(fileName, location);
+            for (int separator = fileName.lastIndexOf('/'); separator > 0; separator = fileName.lastIndexOf('/', separator - 1)) {
+                if (!packages.add(fileName.substring(0, separator))) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ClassFileLocation {
+        ClassFileReader read(String classFileName) throws IOException, ClassFormatException;
+    }
+
+    /**
+     * Name environment of a single compilation, reading classes found in the shared index. ECJ compilers clean up
+     * their environments after each compilation, the index is kept, so cleaning up does nothing.
+     */
+    private static class IndexedNameEnvironment implements INameEnvironment {
+        private final ClassPathIndex index;
+
+        private IndexedNameEnvironment(ClassPathIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+            return findType(CharOperation.toString(compoundTypeName));
+        }
+
+        @Override
+        public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+            return findType(CharOperation.toString(CharOperation.arrayConcat(packageName, typeName)));
+        }
+
+        private NameEnvironmentAnswer findType(String qualifiedTypeName) {
+            String classFileName = qualifiedTypeName.replace('.', '/') + SuffixConstants.SUFFIX_STRING_class;
+            ClassFileLocation location = index.classFiles.get(classFileName);
+            if (location == null) {
+                return null;
+            }
+            try {
+                return new NameEnvironmentAnswer(location.read(classFileName), null);
+            } catch (IOException | ClassFormatException e) {
+                // like ECJ, classes that cannot be read are not found
+                return null;
+            }
+        }
+
+        @Override
+        public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+            String qualifiedPackageName = CharOperation.toString(CharOperation.arrayConcat(parentPackageName, packageName));
+            return index.packages.contains(qualifiedPackageName.replace('.', '/'));
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+
+    /**
+     * ECJ problem presented as a javax.tools diagnostic, so it can be a part of {@link CompilationDetails}.
+     */
+    private static class ProblemDiagnostic implements Diagnostic<JavaFileObject> {
+        private final CategorizedProblem problem;
+        private final JavaFileObject source;
+
+        private ProblemDiagnostic(CategorizedProblem problem, JavaFileObject source) {
+            this.problem = problem;
+            this.source = source;
+        }
+
+        @Override
+        public Kind getKind() {
+            if (problem.isError()) {
+                return Kind.ERROR;
+            }
+            return problem.isWarning() ? Kind.WARNING : Kind.NOTE;
+        }
+
+        @Override
+        public JavaFileObject getSource() {
+            return source;
+        }
+
+        @Override
+        public long getPosition() {
+            return problem.getSourceStart();
+        }
+
+        @Override
+        public long getStartPosition() {
+            return problem.getSourceStart();
+        }
+
+        @Override
+        public long getEndPosition() {
+            return problem.getSourceEnd();
+        }
+
+        @Override
+        public long getLineNumber() {
+            return problem.getSourceLineNumber();
+        }
+
+        @Override
+        public long getColumnNumber() {
+            return NOPOS;
+        }
+
+        @Override
+        public String getCode() {
+            return String.valueOf(problem.getID());
+        }
+
+        @Override
+        public String getMessage(Locale locale) {
+            return problem.getMessage();
+        }
+
+        @Override
+        public String toString() {
+            return getKind() + ": " + problem.getMessage();
+        }
+    }
+}
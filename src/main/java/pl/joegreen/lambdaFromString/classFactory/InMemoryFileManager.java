@@ -13,6 +13,7 @@ import java.util.Map;
 When java compiler is using that file manager it doesn't create output files anywhere, it just puts compiled code
 into byte arrays stored in CompiledClassJavaObject instances. The solution was inspired by
 http://javapracs.blogspot.com/2011/06/dynamic-in-memory-compilation-using.html
+The wrapped file manager is shared between compilations (see CompilerSession), so closing this one doesn't close it.
  */
 class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> implements StandardJavaFileManager {
 
@@ -38,11 +39,7 @@ class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileMana
 
     @Override
     public void close() {
-        try {
-            super.close();
-        }catch (IOException ex){
-            // if we only work in-memory so IOException on close should not matter
-        }
+        // compiled classes are kept in memory and the wrapped file manager is closed by its owner
     }
 
 
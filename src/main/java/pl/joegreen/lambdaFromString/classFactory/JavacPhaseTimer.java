@@ -0,0 +1,91 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import javax.tools.JavaCompiler;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Measures javac phases with a TaskListener registered in the compilation task. javac interfaces are used reflectively,
+ * as other compilers (e.g. ECJ) don't implement them and on Java 8 they are not a part of the runtime but of tools.jar.
+ */
+class JavacPhaseTimer implements InvocationHandler {
+    private static final String JAVAC_TASK_CLASS_NAME = "com.sun.source.util.JavacTask";
+    private static final String TASK_LISTENER_CLASS_NAME = "com.sun.source.util.TaskListener";
+    private static final Set<CompilationPhase> JAVAC_PHASES = EnumSet.of(
+            CompilationPhase.PARSE, CompilationPhase.ENTER, CompilationPhase.ANALYZE, CompilationPhase.GENERATE);
+
+    private final Map<String, Long> phaseStartTimes = new HashMap<>();
+    private final Map<CompilationPhase, Long> phaseDurations = new EnumMap<>(CompilationPhase.class);
+
+    private JavacPhaseTimer() {
+    }
+
+    /**
+     * @return the timer registered in the task, or nothing if the task is not a javac task
+     */
+    static Optional<JavacPhaseTimer> register(JavaCompiler.CompilationTask compilationTask) {
+        try {
+            ClassLoader compilerClassLoader = compilationTask.getClass().getClassLoader();
+            Class<?> javacTaskClass = Class.forName(JAVAC_TASK_CLASS_NAME, false, compilerClassLoader);
+            if (!javacTaskClass.isInstance(compilationTask)) {
+                return Optional.empty();
+            }
+            Class<?> taskListenerClass = Class.forName(TASK_LISTENER_CLASS_NAME, false, compilerClassLoader);
+            JavacPhaseTimer timer = new JavacPhaseTimer();
+            Object taskListener = Proxy.newProxyInstance(compilerClassLoader, new Class<?>[]{taskListenerClass}, timer);
+            javacTaskClass.getMethod("addTaskListener", taskListenerClass).invoke(compilationTask, taskListener);
+            return Optional.of(timer);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return Optional.empty();
+        }
+    }
+
+    void reportTo(CompilationListener listener) {
+        phaseDurations.forEach(listener::phaseFinished);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws ReflectiveOperationException {
+        switch (method.getName()) {
+            case "started":
+                phaseStartTimes.put(getEventKind(args[0]), System.nanoTime());
+                return null;
+            case "finished":
+                phaseFinished(getEventKind(args[0]));
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return getClass().getSimpleName();
+            default:
+                return null;
+        }
+    }
+
+    private void phaseFinished(String eventKind) {
+        Long startTime = phaseStartTimes.remove(eventKind);
+        if (startTime == null) {
+            return;
+        }
+        long duration = System.nanoTime() - startTime;
+        // other javac events (e.g. annotation processing) are not reported
+        for (CompilationPhase phase : JAVAC_PHASES) {
+            if (phase.name().equals(eventKind)) {
+                phaseDurations.merge(phase, duration, Long::sum);
+            }
+        }
+    }
+
+    private static String getEventKind(Object taskEvent) throws ReflectiveOperationException {
+        return taskEvent.getClass().getMethod("getKind").invoke(taskEvent).toString();
+    }
+}
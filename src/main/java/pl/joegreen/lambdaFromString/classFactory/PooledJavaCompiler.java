@@ -0,0 +1,66 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compiler of a {@link CompilerPool} slot delegating to a compiler that cannot be instantiated again (e.g. javac on
+ * Java 9+, which is not accessible outside of its module). Javac creates a new context for each compilation task,
+ * so delegating is safe. Class factories keep file managers for each compiler instance (see {@link DefaultClassFactory}),
+ * so each slot still gets its own file managers.
+ */
+final class PooledJavaCompiler implements JavaCompiler {
+    private final JavaCompiler delegate;
+
+    PooledJavaCompiler(JavaCompiler delegate) {
+        this.delegate = delegate;
+    }
+
+    JavaCompiler getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public CompilationTask getTask(Writer out, JavaFileManager fileManager,
+                                   DiagnosticListener<? super JavaFileObject> diagnosticListener,
+                                   Iterable<String> options, Iterable<String> classes,
+                                   Iterable<? extends JavaFileObject> compilationUnits) {
+        return delegate.getTask(out, fileManager, diagnosticListener, options, classes, compilationUnits);
+    }
+
+    @Override
+    public StandardJavaFileManager getStandardFileManager(DiagnosticListener<? super JavaFileObject> diagnosticListener,
+                                                          Locale locale, Charset charset) {
+        return delegate.getStandardFileManager(diagnosticListener, locale, charset);
+    }
+
+    @Override
+    public int isSupportedOption(String option) {
+        return delegate.isSupportedOption(option);
+    }
+
+    @Override
+    public int run(InputStream in, OutputStream out, OutputStream err, String... arguments) {
+        return delegate.run(in, out, err, arguments);
+    }
+
+    @Override
+    public Set<SourceVersion> getSourceVersions() {
+        return delegate.getSourceVersions();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledJavaCompiler[" + delegate + "]";
+    }
+}
@@ -0,0 +1,149 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+
+/**
+ * Index of classes compiled before the application started (e.g. during the build) stored as a class path resource.
+ * Classes are identified by keys computed from their names, source codes, target Java versions and compiler options,
+ * but not from the compiler and the class path, so the index can be created with a different class path (and even
+ * without the application classes being compiled yet). Every class path element can contain its own index,
+ * all of them are merged when the index is loaded, once for each class loader. <br>
+ * Entries are stored in the same format as entries of {@link DirectoryBytecodeCache}.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public final class PrecompiledClasses {
+    public static final String RESOURCE_NAME = "META-INF/lambda-from-string/precompiled-classes.bin";
+    private static final int MAGIC_NUMBER = 0x4C465350;
+    private static final int FORMAT_VERSION = 2;
+    private static final PrecompiledClasses EMPTY = new PrecompiledClasses(Collections.emptyMap());
+    // indexes don't reference class loaders, so the loaders can be collected
+    private static final Map<ClassLoader, PrecompiledClasses> LOADED_INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, Map<String, byte[]>> classesByKeys;
+
+    private PrecompiledClasses(Map<String, Map<String, byte[]>> classesByKeys) {
+        this.classesByKeys = classesByKeys;
+    }
+
+    /**
+     * Loads and merges all the indexes ({@link #RESOURCE_NAME} resources) visible to the class loader.
+     * Indexes that cannot be read (e.g. written by an incompatible library version) are ignored.
+     * The result is kept for the class loader, so the indexes are read only once.
+     */
+    public static PrecompiledClasses load(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return EMPTY;
+        }
+        PrecompiledClasses loadedIndex = LOADED_INDEXES.get(classLoader);
+        if (loadedIndex != null) {
+            return loadedIndex;
+        }
+        // read without the lock, if the class loader is loaded concurrently the first result is kept
+        PrecompiledClasses index = read(classLoader);
+        PrecompiledClasses previousIndex = LOADED_INDEXES.putIfAbsent(classLoader, index);
+        return previousIndex != null ? previousIndex : index;
+    }
+
+    private static PrecompiledClasses read(ClassLoader classLoader) {
+        Map<String, Map<String, byte[]>> classesByKeys = new HashMap<>();
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(RESOURCE_NAME);
+            while (indexes.hasMoreElements()) {
+                URLConnection index = indexes.nextElement().openConnection();
+                long indexSize = index.getContentLengthLong();
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(index.getInputStream()))) {
+                    classesByKeys.putAll(read(input, indexSize >= 0 ? indexSize : Long.MAX_VALUE));
+                } catch (IOException | RuntimeException e) {
+                    // classes from that index will be compiled at runtime
+                }
+            }
+        } catch (IOException e) {
+            return EMPTY;
+        }
+        return classesByKeys.isEmpty() ? EMPTY : new PrecompiledClasses(classesByKeys);
+    }
+
+    /**
+     * Writes the index to {@link #RESOURCE_NAME} in the given directory (e.g. {@code target/classes}),
+     * replacing the previous one.
+     *
+     * @param classesByKeys bytecode of all the classes created by compilations by their qualified names
+     *                      by keys returned from {@link #getKey(String, String, int, List)}
+     * @return path of the written index
+     */
+    public static Path write(Path outputDirectory, Map<String, Map<String, byte[]>> classesByKeys) throws IOException {
+        Path indexPath = outputDirectory.resolve(RESOURCE_NAME);
+        Files.createDirectories(indexPath.getParent());
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath)))) {
+            output.writeInt(MAGIC_NUMBER);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(classesByKeys.size());
+            for (Map.Entry<String, Map<String, byte[]>> entry : classesByKeys.entrySet()) {
+                output.writeUTF(entry.getKey());
+                DirectoryBytecodeCache.writeClasses(output, entry.getValue());
+            }
+        }
+        return indexPath;
+    }
+
+    /**
+     * @return key of the class in the index, it changes whenever the class name, source code, target Java version
+     * or compiler options change
+     */
+    public static String getKey(String fullClassName, String sourceCode, int javaVersion, List<String> compilerOptions) {
+        return BytecodeCacheKeyGenerator.generateSourceKey(fullClassName, sourceCode, javaVersion, compilerOptions);
+    }
+
+    /**
+     * @return bytecode of all the classes created by the compilation by their qualified names or an empty Optional if
+     * the index doesn't contain the entry
+     */
+    public Optional<Map<String, byte[]>> get(String key) {
+        return Optional.ofNullable(classesByKeys.get(key));
+    }
+
+    public boolean isEmpty() {
+        return classesByKeys.isEmpty();
+    }
+
+    public int size() {
+        return classesByKeys.size();
+    }
+
+    /**
+     * @param indexSize size of the index or its upper bound, if it's unknown
+     */
+    private static Map<String, Map<String, byte[]>> read(DataInputStream input, long indexSize) throws IOException {
+        if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported precompiled classes index");
+        }
+        int entryCount = input.readInt();
+        // every entry has a key and the number of its classes
+        if (entryCount < 0 || entryCount > indexSize / (2 + 4)) {
+            throw new IOException("Invalid entry count " + entryCount);
+        }
+        Map<String, Map<String, byte[]>> classesByKeys = new HashMap<>();
+        for (int i = 0; i < entryCount; i++) {
+            String key = input.readUTF();
+            classesByKeys.put(key, DirectoryBytecodeCache.readClasses(input, indexSize));
+        }
+        return classesByKeys;
+    }
+}
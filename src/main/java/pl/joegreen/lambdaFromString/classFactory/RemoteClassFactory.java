@@ -0,0 +1,192 @@
+package pl.joegreen.lambdaFromString.classFactory;
+
+import pl.joegreen.lambdaFromString.classFactory.CompilerDaemonProtocol.CompilationRequest;
+
+import javax.tools.JavaCompiler;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Class factory sending the sources to a {@link CompilerDaemon} running in a separate JVM on the same host
+ * and loading the classes compiled by the daemon, so the compiler doesn't use the memory and CPU of this JVM.
+ * Connections to the daemon are kept open and reused by subsequent compilations. The client and the daemon
+ * authenticate each other on new connections with the token read from the token file of the daemon
+ * (see {@link CompilerDaemon#getDefaultTokenFile(int)}), so classes are never loaded from another process.
+ * <br>
+ * When the daemon cannot be reached, fails the authentication or doesn't respond within {@link #READ_TIMEOUT_MILLIS},
+ * classes are compiled in this JVM like in {@link DefaultClassFactory} and the daemon isn't tried again for
+ * {@link #RETRY_INTERVAL_MILLIS}. A broken idle connection (e.g. after the daemon was restarted) is first replaced
+ * with a new one. Compilations which the daemon refuses or fails to run are reported as compilation errors,
+ * e.g. when the compiler options enable annotation processing, which the daemon doesn't allow.
+ * The daemon uses its own compiler, the compiler passed to the methods of this factory is used only when falling back.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public class RemoteClassFactory extends DefaultClassFactory {
+    public static final int DEFAULT_PORT = 47_357;
+    public static final long RETRY_INTERVAL_MILLIS = 5_000;
+    public static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+
+    private final InetSocketAddress daemonAddress;
+    private final Path tokenFile;
+    private final BlockingDeque<Connection> idleConnections;
+    // time when the daemon can be used again after a failure
+    private volatile long daemonRetryTime = 0;
+
+    public RemoteClassFactory() {
+        this(DEFAULT_PORT);
+    }
+
+    public RemoteClassFactory(int daemonPort) {
+        this(daemonPort, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    /**
+     * @param maxIdleConnections maximum number of connections kept open when no compilation uses them,
+     *                           more connections are opened if more compilations run concurrently
+     */
+    public RemoteClassFactory(int daemonPort, int maxIdleConnections) {
+        this(daemonPort, CompilerDaemon.getDefaultTokenFile(daemonPort), maxIdleConnections);
+    }
+
+    public RemoteClassFactory(int daemonPort, int maxIdleConnections, BytecodeCache bytecodeCache) {
+        this(daemonPort, CompilerDaemon.getDefaultTokenFile(daemonPort), maxIdleConnections, bytecodeCache);
+    }
+
+    /**
+     * @param tokenFile token file of the daemon, if it was started with another one than the default
+     */
+    public RemoteClassFactory(int daemonPort, Path tokenFile) {
+        this(daemonPort, tokenFile, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    public RemoteClassFactory(int daemonPort, Path tokenFile, int maxIdleConnections) {
+        this.daemonAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), daemonPort);
+        this.tokenFile = tokenFile;
+        this.idleConnections = new LinkedBlockingDeque<>(maxIdleConnections);
+    }
+
+    public RemoteClassFactory(int daemonPort, Path tokenFile, int maxIdleConnections, BytecodeCache bytecodeCache) {
+        super(bytecodeCache);
+        this.daemonAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), daemonPort);
+        this.tokenFile = tokenFile;
+        this.idleConnections = new LinkedBlockingDeque<>(maxIdleConnections);
+    }
+
+    @Override
+    protected CompilationOutcome compile(List<ClassSourceJavaObject> classSourceObjects, JavaCompiler compiler,
+                                         int javaVersion, String compilationClassPath, List<String> additionalCompilerOptions,
+                                         CompilationListener compilationListener, boolean analysisOnly) {
+        if (System.currentTimeMillis() >= daemonRetryTime) {
+            CompilationRequest request = new CompilationRequest(classSourceObjects, javaVersion, compilationClassPath,
+                    additionalCompilerOptions, analysisOnly);
+            long compilationStartTime = System.nanoTime();
+            try {
+                CompilationOutcome outcome = compileInDaemon(request);
+                compilationListener.phaseFinished(CompilationPhase.COMPILATION, System.nanoTime() - compilationStartTime);
+                compilationListener.diagnosticsReported(outcome.getDiagnostics());
+                return outcome;
+            } catch (IOException e) {
+                // the other idle connections are probably broken too
+                closeIdleConnections();
+                daemonRetryTime = System.currentTimeMillis() + RETRY_INTERVAL_MILLIS;
+            }
+        }
+        return super.compile(classSourceObjects, compiler, javaVersion, compilationClassPath, additionalCompilerOptions,
+                compilationListener, analysisOnly);
+    }
+
+    /**
+     * Compiles on an idle connection if there is one. If it's broken, the request is sent again on a new connection,
+     * unless the daemon didn't respond in time (then a new connection wouldn't help).
+     */
+    private CompilationOutcome compileInDaemon(CompilationRequest request) throws IOException {
+        Connection idleConnection = idleConnections.pollFirst();
+        if (idleConnection != null) {
+            try {
+                return compileAndRelease(idleConnection, request);
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                // the daemon was probably restarted, so the other idle connections are broken too
+                closeIdleConnections();
+            }
+        }
+        return compileAndRelease(openConnection(), request);
+    }
+
+    private CompilationOutcome compileAndRelease(Connection connection, CompilationRequest request) throws IOException {
+        try {
+            CompilationOutcome outcome = connection.compile(request);
+            if (!idleConnections.offerFirst(connection)) {
+                connection.close();
+            }
+            return outcome;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Connection openConnection() throws IOException {
+        // read for every connection, the daemon writes a new token when it's restarted
+        byte[] token = CompilerDaemon.readToken(tokenFile);
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            socket.connect(daemonAddress, CONNECT_TIMEOUT_MILLIS);
+            Connection connection = new Connection(socket);
+            CompilerDaemonProtocol.authenticateDaemon(connection.input, connection.output, token);
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+    private void closeIdleConnections() {
+        Connection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    private static class Connection {
+        private final Socket socket;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private CompilationOutcome compile(CompilationRequest request) throws IOException {
+            CompilerDaemonProtocol.writeRequest(output, request);
+            return CompilerDaemonProtocol.readOutcome(input, request);
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do, the connection won't be used anymore
+            }
+        }
+    }
+}
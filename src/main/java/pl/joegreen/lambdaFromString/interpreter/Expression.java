@@ -0,0 +1,350 @@
+package pl.joegreen.lambdaFromString.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Node of an interpreted expression. Types of nodes are known when the expression is parsed and follow the Java rules
+ * (numeric promotion, boxing and unboxing), so that the interpreted lambda returns exactly what the compiled one would.
+ * Values are always passed as boxed objects. Nodes of primitive types never return null.
+ */
+abstract class Expression {
+    private static final Map<Class<?>, Class<?>> PRIMITIVES_BY_BOXES = new HashMap<>();
+
+    static {
+        PRIMITIVES_BY_BOXES.put(Integer.class, int.class);
+        PRIMITIVES_BY_BOXES.put(Long.class, long.class);
+        PRIMITIVES_BY_BOXES.put(Double.class, double.class);
+        PRIMITIVES_BY_BOXES.put(Boolean.class, boolean.class);
+    }
+
+    private final Class<?> type;
+
+    Expression(Class<?> type) {
+        this.type = type;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    abstract Object evaluate(Object[] arguments);
+
+    /**
+     * @return true for int, long, double, boolean and their boxes, the only types the interpreter supports
+     */
+    static boolean isSupportedType(Class<?> type) {
+        return PRIMITIVES_BY_BOXES.containsKey(type) || PRIMITIVES_BY_BOXES.containsValue(type);
+    }
+
+    static Class<?> unboxedType(Class<?> type) {
+        return PRIMITIVES_BY_BOXES.getOrDefault(type, type);
+    }
+
+    static Class<?> boxedType(Class<?> type) {
+        return PRIMITIVES_BY_BOXES.entrySet().stream()
+                .filter(entry -> entry.getValue() == type)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(type);
+    }
+
+    static boolean isNumeric(Class<?> type) {
+        Class<?> unboxedType = unboxedType(type);
+        return unboxedType == int.class || unboxedType == long.class || unboxedType == double.class;
+    }
+
+    static boolean isBoolean(Class<?> type) {
+        return unboxedType(type) == boolean.class;
+    }
+
+    /**
+     * Binary numeric promotion of the unboxed types.
+     */
+    static Class<?> promotedType(Class<?> firstType, Class<?> secondType) {
+        if (unboxedType(firstType) == double.class || unboxedType(secondType) == double.class) {
+            return double.class;
+        }
+        if (unboxedType(firstType) == long.class || unboxedType(secondType) == long.class) {
+            return long.class;
+        }
+        return int.class;
+    }
+
+    /**
+     * @return true if the value of the type can be unboxed (if needed) and widened to the primitive type
+     */
+    static boolean isConvertibleToPrimitive(Class<?> type, Class<?> primitiveType) {
+        Class<?> unboxedType = unboxedType(type);
+        if (unboxedType == primitiveType) {
+            return true;
+        }
+        return (unboxedType == int.class && (primitiveType == long.class || primitiveType == double.class))
+                || (unboxedType == long.class && primitiveType == double.class);
+    }
+
+    /**
+     * Unboxes (throwing NullPointerException for null) and widens the value of the expression to the primitive type.
+     */
+    static Expression toPrimitive(Expression expression, Class<?> primitiveType) {
+        if (expression.getType() == primitiveType) {
+            return expression;
+        }
+        return new Expression(primitiveType) {
+            @Override
+            Object evaluate(Object[] arguments) {
+                return convert(expression.evaluate(arguments), primitiveType);
+            }
+        };
+    }
+
+    static Object convert(Object value, Class<?> primitiveType) {
+        if (primitiveType == boolean.class) {
+            return ((Boolean) value).booleanValue();
+        } else if (primitiveType == int.class) {
+            return ((Number) value).intValue();
+        } else if (primitiveType == long.class) {
+            return ((Number) value).longValue();
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    static class Literal extends Expression {
+        private final Object value;
+
+        Literal(Object value, Class<?> type) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            return value;
+        }
+    }
+
+    static class Parameter extends Expression {
+        private final int index;
+
+        Parameter(int index, Class<?> type) {
+            super(type);
+            this.index = index;
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            return arguments[index];
+        }
+    }
+
+    static class Negation extends Expression {
+        private final Expression operand;
+
+        Negation(Expression operand) {
+            super(promotedType(operand.getType(), int.class));
+            this.operand = toPrimitive(operand, getType());
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            Object value = operand.evaluate(arguments);
+            if (getType() == int.class) {
+                return -(Integer) value;
+            } else if (getType() == long.class) {
+                return -(Long) value;
+            }
+            return -(Double) value;
+        }
+    }
+
+    static class Not extends Expression {
+        private final Expression operand;
+
+        Not(Expression operand) {
+            super(boolean.class);
+            this.operand = toPrimitive(operand, boolean.class);
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            return !(Boolean) operand.evaluate(arguments);
+        }
+    }
+
+    static class Arithmetic extends Expression {
+        private final String operator;
+        private final Expression left;
+        private final Expression right;
+
+        Arithmetic(String operator, Expression left, Expression right) {
+            super(promotedType(left.getType(), right.getType()));
+            this.operator = operator;
+            this.left = toPrimitive(left, getType());
+            this.right = toPrimitive(right, getType());
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            Object leftValue = left.evaluate(arguments);
+            Object rightValue = right.evaluate(arguments);
+            if (getType() == int.class) {
+                return evaluateInt((Integer) leftValue, (Integer) rightValue);
+            } else if (getType() == long.class) {
+                return evaluateLong((Long) leftValue, (Long) rightValue);
+            }
+            return evaluateDouble((Double) leftValue, (Double) rightValue);
+        }
+
+        private int evaluateInt(int leftValue, int rightValue) {
+            switch (operator) {
+                case "+":
+                    return leftValue + rightValue;
+                case "-":
+                    return leftValue - rightValue;
+                case "*":
+                    return leftValue * rightValue;
+                case "/":
+                    return leftValue / rightValue;
+                default:
+                    return leftValue % rightValue;
+            }
+        }
+
+        private long evaluateLong(long leftValue, long rightValue) {
+            switch (operator) {
+                case "+":
+                    return leftValue + rightValue;
+                case "-":
+                    return leftValue - rightValue;
+                case "*":
+                    return leftValue * rightValue;
+                case "/":
+                    return leftValue / rightValue;
+                default:
+                    return leftValue % rightValue;
+            }
+        }
+
+        private double evaluateDouble(double leftValue, double rightValue) {
+            switch (operator) {
+                case "+":
+                    return leftValue + rightValue;
+                case "-":
+                    return leftValue - rightValue;
+                case "*":
+                    return leftValue * rightValue;
+                case "/":
+                    return leftValue / rightValue;
+                default:
+                    return leftValue % rightValue;
+            }
+        }
+    }
+
+    /**
+     * Numeric comparison (also == and != when at least one operand is primitive) or boolean equality.
+     */
+    static class Comparison extends Expression {
+        private final String operator;
+        private final Class<?> operandType;
+        private final Expression left;
+        private final Expression right;
+
+        Comparison(String operator, Expression left, Expression right) {
+            super(boolean.class);
+            this.operator = operator;
+            this.operandType = isBoolean(left.getType()) ? boolean.class : promotedType(left.getType(), right.getType());
+            this.left = toPrimitive(left, operandType);
+            this.right = toPrimitive(right, operandType);
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            Object leftValue = left.evaluate(arguments);
+            Object rightValue = right.evaluate(arguments);
+            if (operandType == boolean.class) {
+                return operator.equals("==") == leftValue.equals(rightValue);
+            }
+            if (operandType == double.class) {
+                return compare((Double) leftValue, (Double) rightValue);
+            }
+            // int and long values are compared exactly as longs
+            return compare(((Number) leftValue).longValue(), ((Number) rightValue).longValue());
+        }
+
+        private boolean compare(long leftValue, long rightValue) {
+            switch (operator) {
+                case "<":
+                    return leftValue < rightValue;
+                case "<=":
+                    return leftValue <= rightValue;
+                case ">":
+                    return leftValue > rightValue;
+                case ">=":
+                    return leftValue >= rightValue;
+                case "==":
+                    return leftValue == rightValue;
+                default:
+                    return leftValue != rightValue;
+            }
+        }
+
+        private boolean compare(double leftValue, double rightValue) {
+            switch (operator) {
+                case "<":
+                    return leftValue < rightValue;
+                case "<=":
+                    return leftValue <= rightValue;
+                case ">":
+                    return leftValue > rightValue;
+                case ">=":
+                    return leftValue >= rightValue;
+                case "==":
+                    return leftValue == rightValue;
+                default:
+                    return leftValue != rightValue;
+            }
+        }
+    }
+
+    static class Logical extends Expression {
+        private final boolean and;
+        private final Expression left;
+        private final Expression right;
+
+        Logical(String operator, Expression left, Expression right) {
+            super(boolean.class);
+            this.and = operator.equals("&&");
+            this.left = toPrimitive(left, boolean.class);
+            this.right = toPrimitive(right, boolean.class);
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            boolean leftValue = (Boolean) left.evaluate(arguments);
+            if (leftValue != and) {
+                // false && ... and true || ... are not evaluated further
+                return leftValue;
+            }
+            return right.evaluate(arguments);
+        }
+    }
+
+    static class Conditional extends Expression {
+        private final Expression condition;
+        private final Expression whenTrue;
+        private final Expression whenFalse;
+
+        Conditional(Expression condition, Expression whenTrue, Expression whenFalse, Class<?> type) {
+            super(type);
+            this.condition = toPrimitive(condition, boolean.class);
+            this.whenTrue = type.isPrimitive() ? toPrimitive(whenTrue, type) : whenTrue;
+            this.whenFalse = type.isPrimitive() ? toPrimitive(whenFalse, type) : whenFalse;
+        }
+
+        @Override
+        Object evaluate(Object[] arguments) {
+            return (Boolean) condition.evaluate(arguments) ? whenTrue.evaluate(arguments) : whenFalse.evaluate(arguments);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package pl.joegreen.lambdaFromString.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recursive descent parser of lambdas with an expression body built from parameters, int, long, double and boolean
+ * literals, arithmetic, comparison, logical and conditional operators and parentheses.
+ * Anything else (method calls, fields, casts, strings, blocks, ...) is reported as unsupported.
+ */
+class ExpressionParser {
+    private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "_"));
+
+    private final List<String> tokens;
+    private final List<Class<?>> parameterTypes;
+    private final List<String> parameterNames = new ArrayList<>();
+    private int position;
+
+    private ExpressionParser(List<String> tokens, List<Class<?>> parameterTypes) {
+        this.tokens = tokens;
+        this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * Parses the lambda code, e.g. {@code (a, b) -> a * b + 1}.
+     *
+     * @param parameterTypes types of the lambda parameters, they have to be supported by {@link Expression}
+     * @return body of the lambda
+     */
+    static Expression parseLambda(String code, List<Class<?>> parameterTypes) throws UnsupportedExpressionException {
+        ExpressionParser parser = new ExpressionParser(Tokenizer.tokenize(code), parameterTypes);
+        parser.parseParameters();
+        parser.expect("->");
+        Expression body = parser.parseConditional();
+        if (parser.position != parser.tokens.size()) {
+            throw new UnsupportedExpressionException("Unexpected token: " + parser.tokens.get(parser.position));
+        }
+        return body;
+    }
+
+    private void parseParameters() throws UnsupportedExpressionException {
+        if (!peek("(")) {
+            addParameter(next());
+        } else {
+            expect("(");
+            if (!peek(")")) {
+                addParameter(next());
+                while (peek(",")) {
+                    expect(",");
+                    addParameter(next());
+                }
+            }
+            expect(")");
+        }
+        if (parameterNames.size() != parameterTypes.size()) {
+            throw new UnsupportedExpressionException("Lambda has " + parameterNames.size() + " parameters, "
+                    + parameterTypes.size() + " expected");
+        }
+    }
+
+    private void addParameter(String name) throws UnsupportedExpressionException {
+        if (!isIdentifier(name) || parameterNames.contains(name)) {
+            throw new UnsupportedExpressionException("Unsupported parameter: " + name);
+        }
+        parameterNames.add(name);
+    }
+
+    private Expression parseConditional() throws UnsupportedExpressionException {
+        Expression condition = parseOr();
+        if (!peek("?")) {
+            return condition;
+        }
+        expect("?");
+        Expression whenTrue = parseConditional();
+        expect(":");
+        Expression whenFalse = parseConditional();
+        requireType(condition, Expression.isBoolean(condition.getType()));
+        return new Expression.Conditional(condition, whenTrue, whenFalse, conditionalType(whenTrue, whenFalse));
+    }
+
+    /**
+     * Type of the conditional expression (JLS 15.25) for the supported types.
+     */
+    private static Class<?> conditionalType(Expression whenTrue, Expression whenFalse) throws UnsupportedExpressionException {
+        Class<?> trueType = whenTrue.getType();
+        Class<?> falseType = whenFalse.getType();
+        if (trueType == falseType) {
+            return trueType;
+        }
+        if (Expression.isBoolean(trueType) && Expression.isBoolean(falseType)) {
+            return boolean.class;
+        }
+        if (Expression.isNumeric(trueType) && Expression.isNumeric(falseType)) {
+            return Expression.promotedType(trueType, falseType);
+        }
+        throw new UnsupportedExpressionException("Unsupported conditional operand types: " + trueType + ", " + falseType);
+    }
+
+    private Expression parseOr() throws UnsupportedExpressionException {
+        Expression expression = parseAnd();
+        while (peek("||")) {
+            expression = logical(next(), expression, parseAnd());
+        }
+        return expression;
+    }
+
+    private Expression parseAnd() throws UnsupportedExpressionException {
+        Expression expression = parseEquality();
+        while (peek("&&")) {
+            expression = logical(next(), expression, parseEquality());
+        }
+        return expression;
+    }
+
+    private static Expression logical(String operator, Expression left, Expression right) throws UnsupportedExpressionException {
+        requireType(left, Expression.isBoolean(left.getType()));
+        requireType(right, Expression.isBoolean(right.getType()));
+        return new Expression.Logical(operator, left, right);
+    }
+
+    private Expression parseEquality() throws UnsupportedExpressionException {
+        Expression expression = parseRelational();
+        while (peek("==") || peek("!=")) {
+            String operator = next();
+            Expression right = parseRelational();
+            // two boxed operands would be compared by reference
+            requireType(right, expression.getType().isPrimitive() || right.getType().isPrimitive());
+            boolean numeric = Expression.isNumeric(expression.getType()) && Expression.isNumeric(right.getType());
+            boolean bool = Expression.isBoolean(expression.getType()) && Expression.isBoolean(right.getType());
+            requireType(right, numeric || bool);
+            expression = new Expression.Comparison(operator, expression, right);
+        }
+        return expression;
+    }
+
+    private Expression parseRelational() throws UnsupportedExpressionException {
+        Expression expression = parseAdditive();
+        while (peek("<") || peek("<=") || peek(">") || peek(">=")) {
+            String operator = next();
+            Expression right = parseAdditive();
+            requireType(expression, Expression.isNumeric(expression.getType()));
+            requireType(right, Expression.isNumeric(right.getType()));
+            expression = new Expression.Comparison(operator, expression, right);
+        }
+        return expression;
+    }
+
+    private Expression parseAdditive() throws UnsupportedExpressionException {
+        Expression expression = parseMultiplicative();
+        while (peek("+") || peek("-")) {
+            expression = arithmetic(next(), expression, parseMultiplicative());
+        }
+        return expression;
+    }
+
+    private Expression parseMultiplicative() throws UnsupportedExpressionException {
+        Expression expression = parseUnary();
+        while (peek("*") || peek("/") || peek("%")) {
+            expression = arithmetic(next(), expression, parseUnary());
+        }
+        return expression;
+    }
+
+    private static Expression arithmetic(String operator, Expression left, Expression right) throws UnsupportedExpressionException {
+        requireType(left, Expression.isNumeric(left.getType()));
+        requireType(right, Expression.isNumeric(right.getType()));
+        return new Expression.Arithmetic(operator, left, right);
+    }
+
+    private Expression parseUnary() throws UnsupportedExpressionException {
+        if (peek("-") || peek("+")) {
+            boolean negation = next().equals("-");
+            Expression operand = parseUnary();
+            requireType(operand, Expression.isNumeric(operand.getType()));
+            // unary plus only promotes the operand
+            return negation ? new Expression.Negation(operand)
+                    : Expression.toPrimitive(operand, Expression.promotedType(operand.getType(), int.class));
+        }
+        if (peek("!")) {
+            next();
+            Expression operand = parseUnary();
+            requireType(operand, Expression.isBoolean(operand.getType()));
+            return new Expression.Not(operand);
+        }
+        return parsePrimary();
+    }
+
+    private Expression parsePrimary() throws UnsupportedExpressionException {
+        String token = next();
+        if (token.equals("(")) {
+            Expression expression = parseConditional();
+            expect(")");
+            return expression;
+        }
+        if (token.equals("true") || token.equals("false")) {
+            return new Expression.Literal(Boolean.valueOf(token), boolean.class);
+        }
+        if (Character.isDigit(token.charAt(0))) {
+            return parseNumber(token);
+        }
+        int parameterIndex = parameterNames.indexOf(token);
+        if (parameterIndex < 0) {
+            throw new UnsupportedExpressionException("Unsupported identifier: " + token);
+        }
+        return new Expression.Parameter(parameterIndex, parameterTypes.get(parameterIndex));
+    }
+
+    private static Expression parseNumber(String token) throws UnsupportedExpressionException {
+        try {
+            if (token.matches("(0|[1-9][0-9]*)[lL]")) {
+                return new Expression.Literal(Long.parseLong(token.substring(0, token.length() - 1)), long.class);
+            }
+            if (token.matches("0|[1-9][0-9]*")) {
+                return new Expression.Literal(Integer.parseInt(token), int.class);
+            }
+            if (token.matches("[0-9]+(\\.[0-9]*)?([eE][+-]?[0-9]+)?[dD]?") && !token.matches("[0-9]+")) {
+                double value = Double.parseDouble(token);
+                // literals rounded to infinity or to zero are compilation errors
+                boolean roundedToZero = value == 0 && token.replaceAll("[eE].*", "").matches(".*[1-9].*");
+                if (!Double.isInfinite(value) && !roundedToZero) {
+                    return new Expression.Literal(value, double.class);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // too large for the type
+        }
+        throw new UnsupportedExpressionException("Unsupported number literal: " + token);
+    }
+
+    private static void requireType(Expression expression, boolean condition) throws UnsupportedExpressionException {
+        if (!condition) {
+            throw new UnsupportedExpressionException("Unsupported operand type: " + expression.getType());
+        }
+    }
+
+    private static boolean isIdentifier(String token) {
+        return Character.isJavaIdentifierStart(token.charAt(0)) && !RESERVED_WORDS.contains(token);
+    }
+
+    private boolean peek(String token) {
+        return position < tokens.size() && tokens.get(position).equals(token);
+    }
+
+    private String next() throws UnsupportedExpressionException {
+        if (position >= tokens.size()) {
+            throw new UnsupportedExpressionException("Unexpected end of code");
+        }
+        return tokens.get(position++);
+    }
+
+    private void expect(String token) throws UnsupportedExpressionException {
+        if (!token.equals(next())) {
+            throw new UnsupportedExpressionException("Expected " + token);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package pl.joegreen.lambdaFromString.interpreter;
+
+import java.lang.reflect.Method;
+
+/**
+ * Lambda evaluated by the interpreter instead of being compiled.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public class InterpretedLambda {
+    private final Class<?> interfaceType;
+    private final Method interfaceMethod;
+    private final Expression body;
+
+    InterpretedLambda(Class<?> interfaceType, Method interfaceMethod, Expression body) {
+        this.interfaceType = interfaceType;
+        this.interfaceMethod = interfaceMethod;
+        this.body = body;
+    }
+
+    /**
+     * Functional interface implemented by the lambda.
+     */
+    public Class<?> getInterfaceType() {
+        return interfaceType;
+    }
+
+    /**
+     * The abstract method of the functional interface.
+     */
+    public Method getInterfaceMethod() {
+        return interfaceMethod;
+    }
+
+    /**
+     * Evaluates the lambda body.
+     *
+     * @param arguments arguments of the interface method, primitives boxed
+     * @return result converted to the return type of the interface method (boxed if it's primitive)
+     */
+    public Object invoke(Object[] arguments) {
+        return body.evaluate(arguments);
+    }
+}
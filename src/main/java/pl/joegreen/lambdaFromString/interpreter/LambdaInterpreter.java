@@ -0,0 +1,114 @@
+package pl.joegreen.lambdaFromString.interpreter;
+
+import org.apache.commons.lang3.reflect.TypeUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Creates interpreted lambdas from code in a subset of Java: a lambda with an expression body using its parameters,
+ * int, long, double and boolean literals, arithmetic ({@code + - * / %}), comparison, logical ({@code && || !})
+ * and conditional operators and parentheses. Parameters and the result have to be int, long, double, boolean
+ * or their boxes (the result can also be a supertype of the box, e.g. Object). <br>
+ * The interpreted lambda behaves like the compiled one, including integer overflow, division by zero and unboxing of
+ * null. Code outside of the subset is not interpreted, even if it is correct Java.
+ * <br>
+ * <strong>This class may change between versions</strong>.
+ * If you use it your code may not work with the next version of the library.
+ */
+public final class LambdaInterpreter {
+    private LambdaInterpreter() {
+    }
+
+    /**
+     * @param code       source of the lambda as it's passed to the LambdaFactory
+     * @param lambdaType type of the functional interface implemented by the lambda
+     * @return interpreted lambda or nothing if the code or the type is not supported by the interpreter
+     */
+    public static Optional<InterpretedLambda> interpret(String code, Type lambdaType) {
+        try {
+            Class<?> interfaceType = TypeUtils.getRawType(lambdaType, null);
+            if (interfaceType == null || !interfaceType.isInterface()) {
+                return Optional.empty();
+            }
+            Method interfaceMethod = findInterfaceMethod(interfaceType);
+            Map<TypeVariable<?>, Type> typeArguments = TypeUtils.getTypeArguments(lambdaType, interfaceMethod.getDeclaringClass());
+            List<Class<?>> parameterTypes = new ArrayList<>();
+            for (Type parameterType : interfaceMethod.getGenericParameterTypes()) {
+                parameterTypes.add(resolveSupportedType(parameterType, typeArguments));
+            }
+            Class<?> returnType = resolveType(interfaceMethod.getGenericReturnType(), typeArguments);
+            Expression body = ExpressionParser.parseLambda(code, parameterTypes);
+            return Optional.of(new InterpretedLambda(interfaceType, interfaceMethod, convertResult(body, returnType)));
+        } catch (UnsupportedExpressionException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Method findInterfaceMethod(Class<?> interfaceType) throws UnsupportedExpressionException {
+        List<Method> abstractMethods = Arrays.stream(interfaceType.getMethods())
+                .filter(method -> Modifier.isAbstract(method.getModifiers()))
+                // interfaces can redeclare methods of Object (e.g. Comparator#equals)
+                .filter(method -> !isObjectMethod(method))
+                .collect(Collectors.toList());
+        if (abstractMethods.size() != 1) {
+            throw new UnsupportedExpressionException("Not a functional interface: " + interfaceType);
+        }
+        Method interfaceMethod = abstractMethods.get(0);
+        if (interfaceMethod.getTypeParameters().length > 0) {
+            throw new UnsupportedExpressionException("Generic interface method: " + interfaceMethod);
+        }
+        return interfaceMethod;
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> resolveSupportedType(Type type, Map<TypeVariable<?>, Type> typeArguments) throws UnsupportedExpressionException {
+        Class<?> resolvedType = resolveType(type, typeArguments);
+        if (!Expression.isSupportedType(resolvedType)) {
+            throw new UnsupportedExpressionException("Unsupported type: " + resolvedType);
+        }
+        return resolvedType;
+    }
+
+    private static Class<?> resolveType(Type type, Map<TypeVariable<?>, Type> typeArguments) throws UnsupportedExpressionException {
+        Type resolvedType = type instanceof TypeVariable && typeArguments != null ? typeArguments.get(type) : type;
+        if (!(resolvedType instanceof Class)) {
+            // wildcards, type variables of raw types and parameterized types are left to the compiler
+            throw new UnsupportedExpressionException("Unsupported type: " + type);
+        }
+        return (Class<?>) resolvedType;
+    }
+
+    /**
+     * Converts the result of the body to the return type like in an assignment.
+     */
+    private static Expression convertResult(Expression body, Class<?> returnType) throws UnsupportedExpressionException {
+        Class<?> bodyType = body.getType();
+        if (returnType.isPrimitive()) {
+            if (!Expression.isSupportedType(returnType) || !Expression.isConvertibleToPrimitive(bodyType, returnType)) {
+                throw new UnsupportedExpressionException("Cannot convert " + bodyType + " to " + returnType);
+            }
+            return Expression.toPrimitive(body, returnType);
+        }
+        if (!returnType.isAssignableFrom(Expression.boxedType(bodyType))) {
+            throw new UnsupportedExpressionException("Cannot convert " + bodyType + " to " + returnType);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,65 @@
+package pl.joegreen.lambdaFromString.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits lambda code into identifiers, number literals and operators supported by the interpreter.
+ */
+class Tokenizer {
+    // longer operators first, so that e.g. "<=" is not split into "<" and "="
+    private static final List<String> OPERATORS = Arrays.asList(
+            "->", "<=", ">=", "==", "!=", "&&", "||",
+            "(", ")", ",", "+", "-", "*", "/", "%", "<", ">", "!", "?", ":");
+
+    static List<String> tokenize(String code) throws UnsupportedExpressionException {
+        List<String> tokens = new ArrayList<>();
+        int position = 0;
+        while (position < code.length()) {
+            char character = code.charAt(position);
+            if (Character.isWhitespace(character)) {
+                position++;
+            } else if (Character.isJavaIdentifierStart(character)) {
+                int end = position + 1;
+                while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end))) {
+                    end++;
+                }
+                tokens.add(code.substring(position, end));
+                position = end;
+            } else if (Character.isDigit(character)) {
+                int end = position + 1;
+                while (end < code.length() && (Character.isLetterOrDigit(code.charAt(end)) || code.charAt(end) == '.'
+                        || isExponentSign(code, end))) {
+                    end++;
+                }
+                tokens.add(code.substring(position, end));
+                position = end;
+            } else {
+                String operator = findOperator(code, position);
+                tokens.add(operator);
+                position += operator.length();
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isExponentSign(String code, int position) {
+        char character = code.charAt(position);
+        char previous = code.charAt(position - 1);
+        return (character == '+' || character == '-') && (previous == 'e' || previous == 'E');
+    }
+
+    private static String findOperator(String code, int position) throws UnsupportedExpressionException {
+        for (String operator : OPERATORS) {
+            if (code.startsWith(operator, position)) {
+                // shifts, increments and decrements are not supported
+                if ("<>+-".contains(operator) && code.startsWith(operator, position + 1)) {
+                    throw new UnsupportedExpressionException("Unsupported operator at " + position);
+                }
+                return operator;
+            }
+        }
+        throw new UnsupportedExpressionException("Unsupported character '" + code.charAt(position) + "' at " + position);
+    }
+}
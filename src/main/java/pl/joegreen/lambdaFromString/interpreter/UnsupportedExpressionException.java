@@ -0,0 +1,11 @@
+package pl.joegreen.lambdaFromString.interpreter;
+
+/**
+ * Thrown when the lambda code is outside of the subset of Java supported by the interpreter.
+ * The code may still be correct Java, so it has to be compiled instead.
+ */
+class UnsupportedExpressionException extends Exception {
+    UnsupportedExpressionException(String message) {
+        super(message);
+    }
+}
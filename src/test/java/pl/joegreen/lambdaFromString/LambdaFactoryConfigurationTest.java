@@ -48,6 +48,32 @@ public class LambdaFactoryConfigurationTest {
 		assertNotEquals(defaultConf, withStaticImport);
 	}
 
+	@Test
+	public void negativeLambdaCacheSizeIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> LambdaFactoryConfiguration.get().withLambdaCacheSize(-1));
+	}
+
+	@Test
+	public void negativeTieredCompilationThresholdIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> LambdaFactoryConfiguration.get().withTieredCompilation(-1));
+	}
+
+	@Test
+	public void negativeCompilerPoolSizeIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> LambdaFactoryConfiguration.get().withCompilerPoolSize(-1));
+	}
+
+	@Test
+	public void nonPositiveMetaspaceBudgetIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> MetaspaceBudget.ofClassCount(0));
+		assertThrows(IllegalArgumentException.class, () -> MetaspaceBudget.ofBytecodeSize(-1));
+	}
+
+	@Test
+	public void nullInliningPolicyIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> LambdaFactoryConfiguration.get().withInliningPolicy(null));
+	}
+
 	@Test
 	public void usingWithSetsParameters() {
 		HelperClassSourceProvider helper = new DefaultHelperClassSourceProvider();
@@ -58,6 +84,7 @@ public class LambdaFactoryConfigurationTest {
 		String compilationClassPath = "compilationClassPath";
 		ClassLoader parentClassLoader = new URLClassLoader(new URL[] {});
 		JavaCompiler javaCompiler = new EclipseCompiler();
+		LambdaFactoryListener listener = new LambdaFactoryListener() {};
 
 		LambdaFactoryConfiguration changedConfiguration = LambdaFactoryConfiguration.get()
 				.withHelperClassSourceProvider(helper)
@@ -68,7 +95,16 @@ public class LambdaFactoryConfigurationTest {
 				.withParentClassLoader(parentClassLoader)
 				.withJavaCompiler(javaCompiler)
 				.withCompilerArguments(compilerArguments)
-				.withJavaVersion(17);
+				.withJavaVersion(17)
+				.withLambdaCacheSize(100)
+				.withCompilationThreads(3)
+				.withCompilationQueueSize(7)
+				.withListener(listener)
+				.withTieredCompilation(50)
+				.withCompilationClassPathPruning(true)
+				.withCompilerPoolSize(4)
+				.withMetaspaceBudget(MetaspaceBudget.ofClassCount(1000))
+				.withInliningPolicy(InliningPolicy.REJECT);
 
 		assertSame(helper, changedConfiguration.getDefaultHelperClassSourceProvider());
 		assertSame(classFactory, changedConfiguration.getClassFactory());
@@ -79,6 +115,29 @@ public class LambdaFactoryConfigurationTest {
 		assertSame(javaCompiler, changedConfiguration.getJavaCompiler());
 		assertEquals(Arrays.asList(compilerArguments), changedConfiguration.getCompilerArguments());
 		assertEquals(17, changedConfiguration.getJavaVersion());
+		assertEquals(100, changedConfiguration.getLambdaCacheSize());
+		assertEquals(3, changedConfiguration.getCompilationThreads());
+		assertEquals(7, changedConfiguration.getCompilationQueueSize());
+		assertSame(listener, changedConfiguration.getListener());
+		assertEquals(50, changedConfiguration.getTieredCompilationThreshold());
+		assertTrue(changedConfiguration.isCompilationClassPathPruningEnabled());
+		assertEquals(4, changedConfiguration.getCompilerPoolSize());
+		assertEquals(MetaspaceBudget.ofClassCount(1000), changedConfiguration.getMetaspaceBudget());
+		assertEquals(InliningPolicy.REJECT, changedConfiguration.getInliningPolicy());
 	}
 
+	@Test
+	public void defaultCompilerCanBeReplacedAndRemoved() {
+		LambdaFactoryConfiguration defaultConf = LambdaFactoryConfiguration.get();
+		JavaCompiler defaultCompiler = defaultConf.getJavaCompiler();
+		assertNotNull(defaultCompiler);
+		assertEquals(defaultConf.withImports("abc"), defaultConf.withImports("abc"));
+		assertEquals(defaultConf.withImports("abc").hashCode(), defaultConf.withImports("abc").hashCode());
+		// an explicitly set compiler stays the same when the default one changes (e.g. with another context class loader)
+		assertNotEquals(defaultConf, defaultConf.withJavaCompiler(defaultCompiler));
+		assertEquals(defaultConf.withJavaCompiler(defaultCompiler), defaultConf.withJavaCompiler(defaultCompiler));
+		assertNull(defaultConf.withJavaCompiler(null).getJavaCompiler());
+		assertNull(defaultConf.withJavaCompiler(null).withImports("abc").getJavaCompiler());
+		assertSame(defaultCompiler, defaultConf.withImports("abc").getJavaCompiler());
+	}
 }
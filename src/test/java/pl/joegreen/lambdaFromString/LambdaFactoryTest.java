@@ -1,26 +1,97 @@
 package pl.joegreen.lambdaFromString;
 
+import org.apache.commons.lang3.reflect.TypeUtils;
 import org.eclipse.jdt.internal.compiler.tool.EclipseCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import pl.joegreen.lambdaFromString.classFactory.BytecodeCache;
+import pl.joegreen.lambdaFromString.classFactory.ClassCompilationException;
+import pl.joegreen.lambdaFromString.classFactory.ClassFactory;
+import pl.joegreen.lambdaFromString.classFactory.CompilationDetails;
+import pl.joegreen.lambdaFromString.classFactory.CompilationPhase;
+import pl.joegreen.lambdaFromString.classFactory.CompiledClassJavaObject;
+import pl.joegreen.lambdaFromString.classFactory.CompilerDaemon;
+import pl.joegreen.lambdaFromString.classFactory.CompilerPool;
+import pl.joegreen.lambdaFromString.classFactory.DefaultClassFactory;
+import pl.joegreen.lambdaFromString.classFactory.DirectoryBytecodeCache;
+import pl.joegreen.lambdaFromString.classFactory.EclipseClassFactory;
 import pl.joegreen.lambdaFromString.classFactory.JavaVersionProvider;
+import pl.joegreen.lambdaFromString.classFactory.PrecompiledClasses;
+import pl.joegreen.lambdaFromString.classFactory.RemoteClassFactory;
 import pl.joegreen.lambdaFromString.dummy.ClassWithDeprecatedMethod;
 import pl.joegreen.lambdaFromString.dummy.CustomInterface;
 import pl.joegreen.lambdaFromString.dummy.CustomInterfaceUsingInnerClass;
 
+import javax.tools.Diagnostic;
 import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -193,6 +264,66 @@ class LambdaFactoryTest {
         });
     }
 
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void classFactoryReusingFileManagersCompilesWithEachClassPath(JavaCompiler jc) throws Exception {
+        ClassFactory sharedClassFactory = new DefaultClassFactory();
+        LambdaFactory defaultClassPathFactory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withClassFactory(sharedClassFactory).withJavaCompiler(jc));
+        assertEquals(Integer.valueOf(2), defaultClassPathFactory.createLambda("i -> i + 1",
+                new TypeReference<Function<Integer, Integer>>() {}).apply(1));
+
+        URL classPathDirectory = this.getClass().getClassLoader().getResource("binaryFileTests/");
+        URLClassLoader customClassLoader = new URLClassLoader(new URL[]{classPathDirectory});
+        LambdaFactory customClassPathFactory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withClassFactory(sharedClassFactory).withJavaCompiler(jc)
+                .withCompilationClassPath(ClassPathExtractor.getUrlClassLoaderClassPath(customClassLoader))
+                .withParentClassLoader(customClassLoader));
+        Object lambda = customClassPathFactory.createLambda("x -> x.toUpperCase()",
+                new DynamicTypeReference("CustomCompiledStringMapperInterface"));
+        Class<?> customInterfaceClass = customClassLoader.loadClass("CustomCompiledStringMapperInterface");
+        assertEquals("ALA", customInterfaceClass.getMethod("map", String.class).invoke(lambda, "ala"));
+    }
+
+    @Test
+    void fileManagersOfLeastRecentlyUsedClassPathsAreClosed() throws Exception {
+        AtomicInteger openedFileManagers = new AtomicInteger();
+        AtomicInteger closedFileManagers = new AtomicInteger();
+        JavaCompiler jdkCompiler = getJdkCompiler();
+        JavaCompiler countingCompiler = (JavaCompiler) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{JavaCompiler.class}, (compilerProxy, compilerMethod, compilerArguments) -> {
+                    Object result = compilerMethod.invoke(jdkCompiler, compilerArguments);
+                    if (!compilerMethod.getName().equals("getStandardFileManager")) {
+                        return result;
+                    }
+                    openedFileManagers.incrementAndGet();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{StandardJavaFileManager.class},
+                            (fileManagerProxy, fileManagerMethod, fileManagerArguments) -> {
+                                if (fileManagerMethod.getName().equals("close")) {
+                                    closedFileManagers.incrementAndGet();
+                                }
+                                try {
+                                    return fileManagerMethod.invoke(result, fileManagerArguments);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                });
+        ClassFactory sharedClassFactory = new DefaultClassFactory();
+        int classPaths = 20;
+        for (int i = 0; i < classPaths; i++) {
+            String classPath = ClassPathExtractor.getJavaPropertyClassPath() + File.pathSeparator + "missing" + i;
+            LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                    .withClassFactory(sharedClassFactory).withJavaCompiler(countingCompiler)
+                    .withCompilationClassPath(classPath));
+            assertEquals(Integer.valueOf(i + 1), factory.createLambda("x -> x + " + i,
+                    new TypeReference<Function<Integer, Integer>>() {}).apply(1));
+        }
+        assertEquals(classPaths, openedFileManagers.get());
+        // 16 sessions are kept, each with its idle file manager
+        assertEquals(classPaths - 16, closedFileManagers.get());
+    }
+
     @ParameterizedTest
     @MethodSource("jdkAndEclipse")
     void lambdaImplementingBinaryClassFileOnCustomClassPathContainingSpace(JavaCompiler jc) {
@@ -280,4 +411,1030 @@ class LambdaFactoryTest {
                 "i -> ClassWithDeprecatedMethod.deprecatedMethod()", new TypeReference<Function<Integer, Integer>>() {}));
         assertTrue(ex.getNestedCheckedException().getMessage().contains("deprecated"));
     }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void cachedLambdaReusesCompiledClass(JavaCompiler jc) {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc).withLambdaCacheSize(10));
+        Function<Integer, Integer> first = factory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        Function<Integer, Integer> second = factory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        assertEquals(first.getClass(), second.getClass());
+        assertTrue(2 == second.apply(1));
+        LambdaCacheStatistics statistics = factory.getCacheStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(1, statistics.getSize());
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void lambdaCacheEvictsLeastRecentlyUsedClass(JavaCompiler jc) {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc).withLambdaCacheSize(1));
+        factory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        factory.createLambdaUnchecked("i -> i+2", new TypeReference<Function<Integer, Integer>>() {});
+        factory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        LambdaCacheStatistics statistics = factory.getCacheStatistics();
+        assertEquals(0, statistics.getHitCount());
+        assertEquals(3, statistics.getMissCount());
+        assertEquals(2, statistics.getEvictionCount());
+        assertEquals(1, statistics.getSize());
+
+        LambdaFactory largerFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc).withLambdaCacheSize(2));
+        largerFactory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        largerFactory.createLambdaUnchecked("i -> i+2", new TypeReference<Function<Integer, Integer>>() {});
+        largerFactory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        largerFactory.createLambdaUnchecked("i -> i+3", new TypeReference<Function<Integer, Integer>>() {});
+        // the older but recently used lambda is kept
+        largerFactory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        assertEquals(2, largerFactory.getCacheStatistics().getHitCount());
+        assertEquals(1, largerFactory.getCacheStatistics().getEvictionCount());
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void metaspaceBudgetRetiresLeastRecentlyUsedGenerations(JavaCompiler jc) {
+        TypeReference<Function<Integer, Integer>> type = new TypeReference<Function<Integer, Integer>>() {};
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withMetaspaceBudget(MetaspaceBudget.ofClassCount(4)));
+        for (int i = 0; i < 5; i++) {
+            factory.createLambdaUnchecked("i -> i + " + i, type);
+        }
+        assertEquals(1, factory.getCacheStatistics().getEvictionCount());
+        assertEquals(4, factory.getCacheStatistics().getMetaspaceBudgetUsage());
+
+        factory.createLambdaUnchecked("i -> i + 1", type);
+        factory.createLambdaUnchecked("i -> i + 5", type);
+        assertEquals(Integer.valueOf(1), factory.createLambdaUnchecked("i -> i + 0", type).apply(1));
+        LambdaCacheStatistics statistics = factory.getCacheStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(7, statistics.getMissCount());
+        assertEquals(3, statistics.getEvictionCount());
+        assertEquals(4, statistics.getSize());
+        assertEquals(4, statistics.getMetaspaceBudgetUsage());
+
+        LambdaFactory bytecodeSizeFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withMetaspaceBudget(MetaspaceBudget.ofBytecodeSize(1)));
+        bytecodeSizeFactory.createLambdaUnchecked("i -> i + 1", type);
+        bytecodeSizeFactory.createLambdas(Collections.singletonMap("second", "i -> i + 2"), type);
+        assertEquals(1, bytecodeSizeFactory.getCacheStatistics().getSize());
+        assertTrue(bytecodeSizeFactory.getCacheStatistics().getMetaspaceBudgetUsage() > 100);
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void batchCreatesCorrectLambdasAndReportsIncorrectOnes(JavaCompiler jc) {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        Map<String, String> codes = new LinkedHashMap<>();
+        codes.put("increment", "i -> i+1");
+        codes.put("incorrect", "i -> i.noSuchMethod()");
+        codes.put("double", "i -> i*2");
+        codes.put("sameAsIncrement", "i -> i+1");
+
+        LambdaBatchResult<String, Function<Integer, Integer>> result =
+                factory.createLambdas(codes, new TypeReference<Function<Integer, Integer>>() {});
+
+        assertEquals(3, result.getLambdas().size());
+        assertTrue(4 == result.getLambdas().get("increment").apply(3));
+        assertTrue(6 == result.getLambdas().get("double").apply(3));
+        assertTrue(4 == result.getLambdas().get("sameAsIncrement").apply(3));
+        assertEquals(Collections.singleton("incorrect"), result.getFailures().keySet());
+        CompilationDetails details = result.getFailures().get("incorrect").getCompilationDetails().get();
+        assertFalse(details.getDiagnostics().isEmpty());
+        assertTrue(details.getSourceCode().contains("noSuchMethod"));
+    }
+
+    @Test
+    void batchWithCustomHelperClassSourceProviderCreatesLambdasSeparately() {
+        HelperClassSourceProvider defaultProvider = new DefaultHelperClassSourceProvider();
+        HelperClassSourceProvider customProvider = new HelperClassSourceProvider() {
+            @Override
+            public String getHelperClassSource(String lambdaType, String lambdaCode, List<String> imports, List<String> staticImports) {
+                return defaultProvider.getHelperClassSource(lambdaType, lambdaCode, imports, staticImports);
+            }
+
+            @Override
+            public String getHelperClassName() {
+                return defaultProvider.getHelperClassName();
+            }
+
+            @Override
+            public String getLambdaReturningMethodName() {
+                return defaultProvider.getLambdaReturningMethodName();
+            }
+        };
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withHelperClassSourceProvider(customProvider));
+        Map<String, String> codes = new LinkedHashMap<>();
+        codes.put("increment", "i -> i+1");
+        codes.put("incorrect", "i -> i.noSuchMethod()");
+        LambdaBatchResult<String, Function<Integer, Integer>> result =
+                factory.createLambdas(codes, new TypeReference<Function<Integer, Integer>>() {});
+        assertEquals(Integer.valueOf(4), result.getLambdas().get("increment").apply(3));
+        assertEquals(Collections.singleton("incorrect"), result.getFailures().keySet());
+        assertTrue(result.getFailures().get("incorrect").getCompilationDetails().isPresent());
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void bytecodeCacheIsUsedByAnotherFactory(JavaCompiler jc, @TempDir Path cacheDirectory) throws IOException {
+        DirectoryBytecodeCache bytecodeCache = new DirectoryBytecodeCache(cacheDirectory);
+        AtomicInteger cacheHits = new AtomicInteger();
+        BytecodeCache countingCache = new BytecodeCache() {
+            @Override
+            public Optional<Map<String, byte[]>> load(String key) {
+                Optional<Map<String, byte[]>> classes = bytecodeCache.load(key);
+                classes.ifPresent(c -> cacheHits.incrementAndGet());
+                return classes;
+            }
+
+            @Override
+            public void store(String key, Map<String, byte[]> classes) {
+                bytecodeCache.store(key, classes);
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                    .withClassFactory(new DefaultClassFactory(countingCache)));
+            Function<Integer, Integer> lambda = factory.createLambdaUnchecked(
+                    "i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+            assertTrue(1 == lambda.apply(0));
+        }
+        assertEquals(1, cacheHits.get());
+        try (Stream<Path> entries = Files.list(cacheDirectory)) {
+            assertEquals(1, entries.count());
+        }
+    }
+
+    @Test
+    void corruptedBytecodeCacheEntryIsRemoved(@TempDir Path cacheDirectory) throws IOException {
+        DirectoryBytecodeCache bytecodeCache = new DirectoryBytecodeCache(cacheDirectory);
+        Files.write(cacheDirectory.resolve("abc.classes"), new byte[]{1, 2, 3});
+        assertFalse(bytecodeCache.load("abc").isPresent());
+        assertFalse(Files.exists(cacheDirectory.resolve("abc.classes")));
+
+        bytecodeCache.store("abc", Collections.singletonMap("A", new byte[]{1, 2, 3}));
+        assertTrue(bytecodeCache.load("abc").isPresent());
+        Path entry = cacheDirectory.resolve("abc.classes");
+        byte[] entryBytes = Files.readAllBytes(entry);
+        // size of the class bytes after the header, the key, the class count and the class name
+        ByteBuffer.wrap(entryBytes).putInt(4 + 4 + (2 + 3) + 4 + (2 + 1), Integer.MAX_VALUE - 8);
+        Files.write(entry, entryBytes);
+        assertFalse(bytecodeCache.load("abc").isPresent());
+        assertFalse(Files.exists(entry));
+    }
+
+    @Test
+    void corruptedPrecompiledClassesIndexIsIgnored(@TempDir Path directory) throws IOException {
+        Path index = PrecompiledClasses.write(directory, Collections.singletonMap("k",
+                Collections.singletonMap("A", new byte[]{1, 2, 3})));
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null)) {
+            assertEquals(1, PrecompiledClasses.load(classLoader).size());
+        }
+        byte[] indexBytes = Files.readAllBytes(index);
+        // class count of the only entry, after the header, the entry count and the key
+        ByteBuffer.wrap(indexBytes).putInt(4 + 4 + 4 + (2 + 1), -1);
+        Files.write(index, indexBytes);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null)) {
+            assertTrue(PrecompiledClasses.load(classLoader).isEmpty());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void asyncLambdaCreationCompletesFuture(JavaCompiler jc) {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        CompletableFuture<Function<Integer, Integer>> lambda = factory.createLambdaAsync(
+                "i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        CompletableFuture<Supplier<Integer>> incorrectLambda = factory.createLambdaAsync(
+                INCORRECT_CODE, new TypeReference<Supplier<Integer>>() {});
+        assertTrue(1 == lambda.join().apply(0));
+        CompletionException ex = assertThrows(CompletionException.class, incorrectLambda::join);
+        assertTrue(ex.getCause() instanceof LambdaCreationException);
+    }
+
+    @Test
+    void asyncLambdaCreationFailsWhenQueueIsFull() {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withCompilationThreads(1).withCompilationQueueSize(1));
+        List<CompletableFuture<Function<Integer, Integer>>> lambdas = IntStream.range(0, 5)
+                .mapToObj(i -> factory.createLambdaAsync("i -> i+" + i, new TypeReference<Function<Integer, Integer>>() {}))
+                .collect(Collectors.toList());
+        long rejectedCount = lambdas.stream().filter(lambda -> {
+            try {
+                lambda.join();
+                return false;
+            } catch (CompletionException e) {
+                return e.getCause().getCause() instanceof RejectedExecutionException;
+            }
+        }).count();
+        assertTrue(rejectedCount > 0);
+    }
+
+    @Test
+    void closedFactoryStopsBackgroundCreations() throws Exception {
+        CountDownLatch compilationStarted = new CountDownLatch(1);
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        DefaultClassFactory defaultClassFactory = new DefaultClassFactory();
+        ClassFactory blockingClassFactory = (fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                                             additionalCompilerOptions, parentClassLoader) -> {
+            if (sourceCode.contains("blocking")) {
+                compilationStarted.countDown();
+                try {
+                    neverReleased.await();
+                } catch (InterruptedException e) {
+                    throw new ClassCompilationException(e);
+                }
+            }
+            return defaultClassFactory.createClass(fullClassName, sourceCode, compiler, javaVersion,
+                    compilationClassPath, additionalCompilerOptions, parentClassLoader);
+        };
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withClassFactory(blockingClassFactory).withCompilationThreads(1));
+        TypeReference<Function<Integer, Integer>> type = new TypeReference<Function<Integer, Integer>>() {};
+        CompletableFuture<Function<Integer, Integer>> running = factory.createLambdaAsync("i -> i + 1 /* blocking */", type);
+        CompletableFuture<Function<Integer, Integer>> waiting = factory.createLambdaAsync("i -> i + 2", type);
+        assertTrue(compilationStarted.await(30, TimeUnit.SECONDS));
+        factory.close();
+
+        CompletionException interrupted = assertThrows(CompletionException.class, running::join);
+        assertTrue(interrupted.getCause().getCause() instanceof ClassCompilationException);
+        CompletionException cancelled = assertThrows(CompletionException.class, waiting::join);
+        assertTrue(cancelled.getCause().getCause() instanceof CancellationException);
+        CompletionException rejected = assertThrows(CompletionException.class,
+                () -> factory.createLambdaAsync("i -> i + 3", type).join());
+        assertTrue(rejected.getCause().getCause() instanceof RejectedExecutionException);
+        assertEquals(Integer.valueOf(5), factory.createLambda("i -> i + 4", type).apply(1));
+    }
+
+    @Test
+    void concurrentCreationsOfTheSameLambdaShareCompilation() throws Exception {
+        int threads = 4;
+        AtomicInteger compilations = new AtomicInteger();
+        AtomicReference<LambdaFactory> factory = new AtomicReference<>();
+        DefaultClassFactory defaultClassFactory = new DefaultClassFactory();
+        ClassFactory waitingClassFactory = (fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                                            additionalCompilerOptions, parentClassLoader) -> {
+            compilations.incrementAndGet();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (factory.get().getDeduplicatedCompilationCount() < threads - 1 && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+            return defaultClassFactory.createClass(fullClassName, sourceCode, compiler, javaVersion,
+                    compilationClassPath, additionalCompilerOptions, parentClassLoader);
+        };
+        factory.set(LambdaFactory.get(LambdaFactoryConfiguration.get().withClassFactory(waitingClassFactory)));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Function<Integer, Integer>>> lambdas = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                lambdas.add(executor.submit(() -> factory.get().createLambda(
+                        "i -> i+1", new TypeReference<Function<Integer, Integer>>() {})));
+            }
+            for (Future<Function<Integer, Integer>> lambda : lambdas) {
+                assertTrue(1 == lambda.get().apply(0));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, compilations.get());
+        assertEquals(threads - 1, factory.get().getDeduplicatedCompilationCount());
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void listenerReceivesMetricsOfLambdaCreations(JavaCompiler jc) {
+        List<LambdaCreationMetrics> createdLambdasMetrics = new ArrayList<>();
+        List<LambdaCreationMetrics> failedCreationsMetrics = new ArrayList<>();
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc).withLambdaCacheSize(10)
+                .withListener(new LambdaFactoryListener() {
+                    @Override
+                    public void lambdaCreated(LambdaCreationMetrics metrics) {
+                        createdLambdasMetrics.add(metrics);
+                    }
+
+                    @Override
+                    public void lambdaCreationFailed(LambdaCreationMetrics metrics, LambdaCreationException exception) {
+                        failedCreationsMetrics.add(metrics);
+                    }
+                }));
+        factory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        factory.createLambdaUnchecked("i -> i+1", new TypeReference<Function<Integer, Integer>>() {});
+        assertThrows(LambdaCreationRuntimeException.class,
+                () -> factory.createLambdaUnchecked(INCORRECT_CODE, new TypeReference<Supplier<Integer>>() {}));
+
+        LambdaCreationMetrics compiledLambdaMetrics = createdLambdasMetrics.get(0);
+        assertTrue(compiledLambdaMetrics.isCompiled());
+        assertEquals(1, compiledLambdaMetrics.getClassCount());
+        assertTrue(compiledLambdaMetrics.getBytecodeSize() > 0);
+        assertTrue(compiledLambdaMetrics.getCompilationPhaseNanos(CompilationPhase.COMPILATION) > 0);
+        assertTrue(compiledLambdaMetrics.getCompilationPhaseNanos(CompilationPhase.CLASS_LOADING) > 0);
+        assertTrue(compiledLambdaMetrics.getTotalNanos() >= compiledLambdaMetrics.getClassCreationNanos());
+        if (!(jc instanceof EclipseCompiler)) {
+            assertTrue(compiledLambdaMetrics.getCompilationPhaseNanos(CompilationPhase.PARSE) > 0);
+            assertTrue(compiledLambdaMetrics.getCompilationPhaseNanos(CompilationPhase.ANALYZE) > 0);
+            assertTrue(compiledLambdaMetrics.getCompilationPhaseNanos(CompilationPhase.GENERATE) > 0);
+        }
+
+        LambdaCreationMetrics cachedLambdaMetrics = createdLambdasMetrics.get(1);
+        assertFalse(cachedLambdaMetrics.isCompiled());
+        assertEquals(0, cachedLambdaMetrics.getBytecodeSize());
+        assertTrue(cachedLambdaMetrics.getCompilationPhaseNanos().isEmpty());
+
+        assertEquals(1, failedCreationsMetrics.size());
+        assertTrue(failedCreationsMetrics.get(0).getErrorCount() > 0);
+    }
+
+    @Test
+    void tieredLambdasReturnTheSameResultsAsCompiledLambdas() {
+        LambdaFactory compilingFactory = LambdaFactory.get();
+        LambdaFactory tieredFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withTieredCompilation(1000));
+
+        IntBinaryOperator multiply = tieredFactory.createLambdaUnchecked("(a, b) -> a * b + 1", new TypeReference<IntBinaryOperator>() {});
+        assertEquals("TieredLambda[(a, b) -> a * b + 1]", multiply.toString());
+        assertEquals(compilingFactory.createLambdaUnchecked("(a, b) -> a * b + 1", new TypeReference<IntBinaryOperator>() {})
+                .applyAsInt(Integer.MAX_VALUE, 3), multiply.applyAsInt(Integer.MAX_VALUE, 3));
+
+        TypeReference<Function<Integer, Integer>> integerFunction = new TypeReference<Function<Integer, Integer>>() {};
+        Function<Integer, Integer> divide = tieredFactory.createLambdaUnchecked("i -> i / 2 - -i % 3", integerFunction);
+        Function<Integer, Integer> compiledDivide = compilingFactory.createLambdaUnchecked("i -> i / 2 - -i % 3", integerFunction);
+        for (int i = -7; i <= 7; i++) {
+            assertEquals(compiledDivide.apply(i), divide.apply(i));
+        }
+        assertThrows(ArithmeticException.class, () -> tieredFactory.createLambdaUnchecked("i -> 1 / i", integerFunction).apply(0));
+        assertThrows(NullPointerException.class, () -> divide.apply(null));
+
+        Predicate<Integer> between = tieredFactory.createLambdaUnchecked("x -> x > 5 && !(x >= 10)", new TypeReference<Predicate<Integer>>() {});
+        assertEquals(Arrays.asList(false, true, true, false), Stream.of(5, 6, 9, 10).map(between::test).collect(Collectors.toList()));
+
+        DoubleUnaryOperator scale = tieredFactory.createLambdaUnchecked("d -> d * 2.5 + 1e-1", new TypeReference<DoubleUnaryOperator>() {});
+        assertEquals(5.1, scale.applyAsDouble(2), 1e-9);
+
+        BiFunction<Long, Integer, Long> max = tieredFactory.createLambdaUnchecked("(a, b) -> a >= b ? a : b",
+                new TypeReference<BiFunction<Long, Integer, Long>>() {});
+        assertEquals(Long.valueOf(7L), max.apply(3L, 7));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), max.apply(Long.MAX_VALUE, 7));
+
+        LongBinaryOperator subtract = tieredFactory.createLambdaUnchecked("(a, b) -> a - b", new TypeReference<LongBinaryOperator>() {});
+        assertEquals(Long.MAX_VALUE - 1, subtract.applyAsLong(Long.MAX_VALUE, 1L));
+        Comparator<Integer> comparator = tieredFactory.createLambdaUnchecked("(a, b) -> a < b ? -1 : a > b ? 1 : 0",
+                new TypeReference<Comparator<Integer>>() {});
+        assertEquals("TieredLambda[(a, b) -> a < b ? -1 : a > b ? 1 : 0]", comparator.toString());
+        // delegating classes are compiled also for generic interfaces redeclaring methods of Object
+        assertFalse(Proxy.isProxyClass(comparator.getClass()));
+        assertFalse(Proxy.isProxyClass(max.getClass()));
+        assertEquals(Arrays.asList(1, 2, 3), Stream.of(3, 1, 2).sorted(comparator).collect(Collectors.toList()));
+    }
+
+    @Test
+    void tieredLambdaIsCompiledInTheBackgroundAfterThreshold() throws InterruptedException {
+        CountDownLatch compiled = new CountDownLatch(1);
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withTieredCompilation(3)
+                .withListener(new LambdaFactoryListener() {
+                    @Override
+                    public void lambdaCreated(LambdaCreationMetrics metrics) {
+                        compiled.countDown();
+                    }
+                }));
+        IntBinaryOperator lambda = factory.createLambdaUnchecked("(a, b) -> a - b", new TypeReference<IntBinaryOperator>() {});
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i - 1, lambda.applyAsInt(i, 1));
+        }
+        assertTrue(compiled.await(30, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i - 1, lambda.applyAsInt(i, 1));
+        }
+        assertEquals("TieredLambda[(a, b) -> a - b]", lambda.toString());
+    }
+
+    @Test
+    void tieredLambdaStaysInterpretedAfterCompilationError() throws InterruptedException {
+        AtomicInteger compilations = new AtomicInteger();
+        DefaultClassFactory defaultClassFactory = new DefaultClassFactory();
+        ClassFactory failingClassFactory = (fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                                            additionalCompilerOptions, parentClassLoader) -> {
+            if (!sourceCode.contains("a - b")) {
+                return defaultClassFactory.createClass(fullClassName, sourceCode, compiler, javaVersion,
+                        compilationClassPath, additionalCompilerOptions, parentClassLoader);
+            }
+            compilations.incrementAndGet();
+            throw new ClassCompilationException(new CompilationDetails(fullClassName, sourceCode, Collections.emptyList(), ""));
+        };
+        CountDownLatch failed = new CountDownLatch(1);
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withTieredCompilation(3)
+                .withClassFactory(failingClassFactory)
+                .withListener(new LambdaFactoryListener() {
+                    @Override
+                    public void lambdaCreationFailed(LambdaCreationMetrics metrics, LambdaCreationException exception) {
+                        failed.countDown();
+                    }
+                }));
+        IntBinaryOperator lambda = factory.createLambdaUnchecked("(a, b) -> a - b", new TypeReference<IntBinaryOperator>() {});
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i - 1, lambda.applyAsInt(i, 1));
+        }
+        assertTrue(failed.await(30, TimeUnit.SECONDS));
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i - 1, lambda.applyAsInt(i, 1));
+            Thread.sleep(1);
+        }
+        assertEquals(1, compilations.get());
+    }
+
+    @Test
+    void compiledTieredLambdaIsCalledWithoutProxy() throws InterruptedException {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withTieredCompilation(1));
+        IntUnaryOperator lambda = factory.createLambdaUnchecked("i -> 1 / i", new TypeReference<IntUnaryOperator>() {});
+        assertFalse(Proxy.isProxyClass(lambda.getClass()));
+        assertTrue(classesInStackTraceOfCall(lambda).stream().anyMatch(className -> className.contains("$Proxy")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        List<String> classesInStackTrace = classesInStackTraceOfCall(lambda);
+        while (!classesInStackTrace.contains("LambdaFromStringHelper") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            classesInStackTrace = classesInStackTraceOfCall(lambda);
+        }
+        assertTrue(classesInStackTrace.contains("LambdaFromStringHelper"));
+        assertTrue(classesInStackTrace.stream().noneMatch(className -> className.contains("$Proxy")));
+    }
+
+    private static List<String> classesInStackTraceOfCall(IntUnaryOperator lambda) {
+        ArithmeticException exception = assertThrows(ArithmeticException.class, () -> lambda.applyAsInt(0));
+        return Arrays.stream(exception.getStackTrace()).map(StackTraceElement::getClassName).collect(Collectors.toList());
+    }
+
+    @Test
+    void tieredCompilationCompilesUnsupportedCodeImmediately() {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withTieredCompilation(1000));
+        Function<Integer, String> lambda = factory.createLambdaUnchecked("i -> Integer.toString(i)",
+                new TypeReference<Function<Integer, String>>() {});
+        assertFalse(Proxy.isProxyClass(lambda.getClass()));
+        assertEquals("5", lambda.apply(5));
+    }
+
+    @Test
+    void defaultMethodsOfTieredLambdaAreCalledOnCompiledLambda() {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withTieredCompilation(1000));
+        Function<Integer, Integer> lambda = factory.createLambdaUnchecked("i -> i + 1",
+                new TypeReference<Function<Integer, Integer>>() {});
+        assertEquals(Integer.valueOf(4), lambda.andThen(i -> i * 2).apply(1));
+        assertEquals(Integer.valueOf(3), lambda.apply(2));
+    }
+
+    @Test
+    void precompiledLambdasAreCreatedWithoutCompiler(@TempDir Path outputDirectory) throws Exception {
+        LambdaPrecompiler.get(LambdaFactoryConfiguration.get().withImports(BigDecimal.class))
+                .add("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {})
+                .add("(a, b) -> a.add(b)", "java.util.function.BinaryOperator< BigDecimal >")
+                .add("l -> l.size()", "java.util.function.ToIntFunction<java.util.List<? extends java.util.Map.Entry<String, int[]>>>")
+                .write(outputDirectory);
+        ClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, getClass().getClassLoader());
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withImports(BigDecimal.class)
+                .withParentClassLoader(classLoader).withJavaCompiler(null));
+
+        assertEquals(Integer.valueOf(2), factory.createLambda("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {}).apply(1));
+        assertEquals(new BigDecimal("11"), factory.createLambda("(a, b) -> a.add(b)", new TypeReference<BinaryOperator<BigDecimal>>() {})
+                .apply(BigDecimal.ONE, BigDecimal.TEN));
+        assertEquals(0, factory.createLambda("l -> l.size()",
+                new TypeReference<ToIntFunction<List<? extends Map.Entry<String, int[]>>>>() {}).applyAsInt(Collections.emptyList()));
+        LambdaCreationException exception = assertThrows(LambdaCreationException.class,
+                () -> factory.createLambda("i -> i + 2", new TypeReference<Function<Integer, Integer>>() {}));
+        assertTrue(exception.getCause() instanceof JavaCompilerNotFoundException);
+        assertThrows(JavaCompilerNotFoundException.class, () -> LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(null)));
+    }
+
+    @Test
+    void precompiledLambdasWithOtherCompilerArgumentsAreNotUsed(@TempDir Path outputDirectory) throws Exception {
+        LambdaPrecompiler.get(LambdaFactoryConfiguration.get().withCompilerArguments("-g"))
+                .add("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {})
+                .write(outputDirectory);
+        ClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, getClass().getClassLoader());
+        assertSame(PrecompiledClasses.load(classLoader), PrecompiledClasses.load(classLoader));
+
+        LambdaFactory matchingFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withCompilerArguments("-g")
+                .withParentClassLoader(classLoader).withJavaCompiler(null));
+        assertEquals(Integer.valueOf(2), matchingFactory.createLambda("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {}).apply(1));
+        LambdaFactory otherFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withCompilerArguments("-g:none")
+                .withParentClassLoader(classLoader).withJavaCompiler(null));
+        LambdaCreationException exception = assertThrows(LambdaCreationException.class,
+                () -> otherFactory.createLambda("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {}));
+        assertTrue(exception.getCause() instanceof JavaCompilerNotFoundException);
+    }
+
+    @Test
+    void precompilerToolReportsIncorrectLambdas(@TempDir Path directory) throws IOException {
+        Path input = Files.write(directory.resolve("lambdas.txt"), Arrays.asList(
+                "# lambdas used by the application",
+                "Function<Integer, Integer> = i -> i * 2",
+                "IntBinaryOperator = (a, b) -> a == b ? 1 : 0"));
+        Path outputDirectory = directory.resolve("classes");
+        String[] arguments = {"--import", "java.util.function.*", outputDirectory.toString(), input.toString()};
+        assertEquals(0, LambdaPrecompiler.run(arguments, System.out, System.err));
+        assertTrue(Files.exists(outputDirectory.resolve(PrecompiledClasses.RESOURCE_NAME)));
+
+        Files.write(input, Collections.singletonList("Function<Integer, Integer> = " + INCORRECT_CODE), StandardOpenOption.APPEND);
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        assertEquals(1, LambdaPrecompiler.run(arguments, System.out, new PrintStream(errors)));
+        assertTrue(errors.toString().startsWith(input + ":4:"));
+    }
+
+    @Test
+    void compilationClassPathIsPrunedToEntriesOfUsedClasses() throws Exception {
+        String testClassesEntry = Paths.get(CustomInterface.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        String unusedEntry = Paths.get(TypeUtils.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        String fullClassPath = unusedEntry + File.pathSeparator + testClassesEntry;
+        List<String> usedClassPaths = Collections.synchronizedList(new ArrayList<>());
+        DefaultClassFactory defaultClassFactory = new DefaultClassFactory();
+        ClassFactory recordingClassFactory = (fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                                              additionalCompilerOptions, parentClassLoader) -> {
+            usedClassPaths.add(compilationClassPath);
+            return defaultClassFactory.createClass(fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                    additionalCompilerOptions, parentClassLoader);
+        };
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withClassFactory(recordingClassFactory)
+                .withCompilationClassPath(fullClassPath).withCompilationClassPathPruning(true));
+
+        assertEquals(3, factory.createLambda("s -> s.length()", new TypeReference<CustomInterface>() {}).customFunction("abc"));
+        assertEquals(Collections.singletonList(testClassesEntry), usedClassPaths);
+
+        usedClassPaths.clear();
+        assertEquals(Integer.valueOf(2), factory.createLambda("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {}).apply(1));
+        assertEquals(Collections.singletonList(""), usedClassPaths);
+
+        usedClassPaths.clear();
+        TypeReference<Supplier<Integer>> supplierType = new TypeReference<Supplier<Integer>>() {};
+        assertEquals(Integer.valueOf(5), factory.createLambda(
+                "() -> pl.joegreen.lambdaFromString.dummy.ClassWithDeprecatedMethod.deprecatedMethod()", supplierType).get());
+        assertEquals(Arrays.asList("", fullClassPath), usedClassPaths);
+
+        usedClassPaths.clear();
+        assertEquals(Integer.valueOf(1), factory.createLambda("() -> 1", supplierType).get());
+        assertEquals(Collections.singletonList(fullClassPath), usedClassPaths);
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void compilerPoolLimitsParallelCompilations(JavaCompiler jc) throws Exception {
+        int poolSize = 2;
+        AtomicInteger runningCompilations = new AtomicInteger();
+        AtomicInteger maximumRunningCompilations = new AtomicInteger();
+        DefaultClassFactory defaultClassFactory = new DefaultClassFactory();
+        ClassFactory countingClassFactory = (fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                                             additionalCompilerOptions, parentClassLoader) -> {
+            maximumRunningCompilations.accumulateAndGet(runningCompilations.incrementAndGet(), Math::max);
+            try {
+                return defaultClassFactory.createClass(fullClassName, sourceCode, compiler, javaVersion, compilationClassPath,
+                        additionalCompilerOptions, parentClassLoader);
+            } finally {
+                runningCompilations.decrementAndGet();
+            }
+        };
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withClassFactory(countingClassFactory).withCompilerPoolSize(poolSize));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Function<Integer, Integer>>> lambdas = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> factory.createLambda("x -> x + " + i,
+                            new TypeReference<Function<Integer, Integer>>() {})))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < lambdas.size(); i++) {
+                assertEquals(Integer.valueOf(i + 1), lambdas.get(i).get().apply(1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(maximumRunningCompilations.get() <= poolSize);
+
+        // every slot has its own compiler (and so its own file managers), also when the compiler cannot be instantiated
+        List<JavaCompiler> pooledCompilers = new ArrayList<>();
+        new CompilerPool(jc, 3).warmUp(pooledCompilers::add);
+        Set<JavaCompiler> distinctCompilers = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinctCompilers.addAll(pooledCompilers);
+        assertEquals(3, distinctCompilers.size());
+        assertTrue(distinctCompilers.contains(jc));
+        for (JavaCompiler pooledCompiler : pooledCompilers) {
+            LambdaFactory pooledCompilerFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(pooledCompiler));
+            assertEquals(Integer.valueOf(2), pooledCompilerFactory.createLambda("x -> x + 1",
+                    new TypeReference<Function<Integer, Integer>>() {}).apply(1));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void closedLambdaHandleAllowsUnloadingLambdaClass(JavaCompiler jc) throws Exception {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc).withLambdaCacheSize(16));
+        LambdaHandle<Function<Integer, Integer>> handle = factory.createLambdaHandle("x -> x + 1",
+                new TypeReference<Function<Integer, Integer>>() {});
+        assertEquals(Integer.valueOf(2), handle.getLambda().apply(1));
+        assertTrue(handle.getBytecodeSize() > 0);
+        assertNotSame(handle.getClassLoader(), factory.createLambda("x -> x + 1",
+                new TypeReference<Function<Integer, Integer>>() {}).getClass().getClassLoader());
+        WeakReference<ClassLoader> classLoader = new WeakReference<>(handle.getClassLoader());
+
+        handle.close();
+        assertTrue(handle.isClosed());
+        assertThrows(IllegalStateException.class, handle::getLambda);
+        assertThrows(IllegalStateException.class, handle::getClassLoader);
+        for (int i = 0; i < 10 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(classLoader.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void specializedLambdaIsCompiledAgainstPrimitiveInterface(JavaCompiler jc) throws LambdaCreationException {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        SpecializedLambda<Function<Integer, Integer>> increment = factory.createSpecializedLambda("i -> i + 1",
+                new TypeReference<Function<Integer, Integer>>() {});
+        assertTrue(increment.isSpecialized());
+        assertEquals(Optional.of(IntUnaryOperator.class), increment.getPrimitiveInterface());
+        assertEquals(3, increment.getPrimitiveLambda(IntUnaryOperator.class).applyAsInt(2));
+        assertEquals(Integer.valueOf(3), increment.getLambda().apply(2));
+        SpecializedLambda<Function<Integer, Integer>> hash = factory.createSpecializedLambda("x -> java.util.Objects.hashCode(x)",
+                new TypeReference<Function<Integer, Integer>>() {});
+        assertTrue(hash.isSpecialized());
+        assertThrows(NullPointerException.class, () -> hash.getLambda().apply(null));
+        assertThrows(IllegalArgumentException.class, () -> increment.getPrimitiveLambda(LongUnaryOperator.class));
+
+        SpecializedLambda<BinaryOperator<Double>> sum = factory.createSpecializedLambda("(a, b) -> a + b",
+                new TypeReference<BinaryOperator<Double>>() {});
+        assertEquals(3.5, sum.getPrimitiveLambda(DoubleBinaryOperator.class).applyAsDouble(1, 2.5));
+        assertEquals(Double.valueOf(3.5), sum.getLambda().apply(1.0, 2.5));
+
+        SpecializedLambda<Function<Integer, Integer>> boxed = factory.createSpecializedLambda("i -> i.hashCode()",
+                new TypeReference<Function<Integer, Integer>>() {});
+        assertFalse(boxed.isSpecialized());
+        assertEquals(Integer.valueOf(7), boxed.getLambda().apply(7));
+        assertThrows(IllegalStateException.class, () -> boxed.getPrimitiveLambda(IntUnaryOperator.class));
+        assertFalse(factory.createSpecializedLambda("s -> s.length()", new TypeReference<Function<String, Integer>>() {})
+                .isSpecialized());
+        assertThrows(LambdaCreationException.class, () -> factory.createSpecializedLambda(INCORRECT_CODE,
+                new TypeReference<Function<Integer, Integer>>() {}));
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void arrayKernelsApplyElementExpressionToRanges(JavaCompiler jc) throws LambdaCreationException {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        double[] doubleOutput = new double[4];
+        factory.createDoubleArrayKernel("x -> Math.sqrt(x) * 2").apply(new double[]{1, 4, 9, 16}, 1, doubleOutput, 2, 2);
+        assertArrayEquals(new double[]{0, 0, 4, 6}, doubleOutput);
+
+        long[] longs = {1, 2, 3};
+        factory.createLongArrayKernel("(long x) -> x * x + 1").apply(longs, longs);
+        assertArrayEquals(new long[]{2, 5, 10}, longs);
+
+        IntArrayKernel intKernel = factory.createIntArrayKernel("(x) -> x < 0 ? -x : x");
+        int[] intOutput = new int[2];
+        intKernel.apply(new int[]{-3, 5}, intOutput);
+        assertArrayEquals(new int[]{3, 5}, intOutput);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> intKernel.apply(new int[]{7, 7, 7}, 0, intOutput, 0, 3));
+        assertArrayEquals(new int[]{3, 5}, intOutput);
+
+        LambdaCreationException blockBody = assertThrows(LambdaCreationException.class,
+                () -> factory.createIntArrayKernel("x -> { return x; }"));
+        assertTrue(blockBody.getCause() instanceof IllegalArgumentException);
+        assertTrue(assertThrows(LambdaCreationException.class, () -> factory.createIntArrayKernel("x -> x.noSuchMethod()"))
+                .getCompilationDetails().isPresent());
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void pipelineStagesAreCompiledIntoSingleLambda(JavaCompiler jc) throws LambdaCreationException {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        LambdaPipeline<Integer, Long> squares = LambdaPipeline.of(new TypeReference<Integer>() {})
+                .map("x -> x + 1", new TypeReference<Integer>() {})
+                .map("x -> (long) x * x", new TypeReference<Long>() {});
+        assertEquals(Long.valueOf(16), squares.createFunction(factory).apply(3));
+
+        LambdaPipeline<Integer, String> evenSquares = squares.filter("x -> x % 2 == 0")
+                .map("(Long x) -> x.toString()", new TypeReference<String>() {});
+        List<String> results = new ArrayList<>();
+        Consumer<Integer> consumer = evenSquares.createConsumer(factory, results::add);
+        Arrays.asList(1, 2, 3).forEach(consumer);
+        assertEquals(Arrays.asList("4", "16"), results);
+        assertThrows(IllegalStateException.class, () -> evenSquares.createFunction(factory));
+
+        Function<Iterable<? extends Integer>, Long> sum = squares.filter("x -> x > 5")
+                .createReduction(factory, "0L", "(sum, x) -> sum + x", new TypeReference<Long>() {});
+        assertEquals(Long.valueOf(9 + 16 + 25), sum.apply(Arrays.asList(1, 2, 3, 4)));
+        assertEquals(Long.valueOf(0), sum.apply(Collections.emptyList()));
+
+        assertThrows(IllegalArgumentException.class, () -> squares.map("x -> { return x; }", new TypeReference<Long>() {}));
+        assertThrows(LambdaCreationException.class,
+                () -> squares.map("x -> x.noSuchMethod()", new TypeReference<Long>() {}).createFunction(factory));
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void parameterizedLambdaIsCompiledOnceForAllBoundValues(JavaCompiler jc) throws LambdaCreationException {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        ParameterizedLambda<Predicate<String>> rule = factory.createParameterizedLambda(
+                "s -> s.length() > minLength && words.contains(s)", new TypeReference<Predicate<String>>() {},
+                LambdaParameter.of("minLength", int.class), LambdaParameter.of("words", new TypeReference<List<String>>() {}));
+        Predicate<String> longWords = rule.bind(3, Arrays.asList("cat", "horse"));
+        assertTrue(longWords.test("horse"));
+        assertFalse(longWords.test("cat"));
+        assertFalse(longWords.test("zebra"));
+        Map<String, Object> values = new HashMap<>();
+        values.put("minLength", 0);
+        values.put("words", Arrays.asList("cat"));
+        Predicate<String> cats = rule.bind(values);
+        assertTrue(cats.test("cat"));
+        assertEquals(longWords.getClass(), cats.getClass());
+
+        assertThrows(IllegalArgumentException.class, () -> rule.bind(3));
+        assertThrows(IllegalArgumentException.class, () -> rule.bind("3", Arrays.asList("cat")));
+        assertThrows(IllegalArgumentException.class, () -> rule.bind(null, Arrays.asList("cat")));
+        values.put("unknown", 1);
+        assertThrows(IllegalArgumentException.class, () -> rule.bind(values));
+        assertThrows(IllegalArgumentException.class, () -> LambdaParameter.of("not valid", int.class));
+        assertThrows(LambdaCreationException.class, () -> factory.createParameterizedLambda("() -> a",
+                new TypeReference<Supplier<Integer>>() {}, LambdaParameter.of("a", int.class), LambdaParameter.of("a", int.class)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void validationDoesNotLoadClasses(JavaCompiler jc) throws LambdaCreationException {
+        AtomicInteger loadedClasses = new AtomicInteger();
+        ClassFactory classFactory = new DefaultClassFactory() {
+            @Override
+            protected Class<?> loadClass(String fullClassName, Map<String, CompiledClassJavaObject> compiledClassesBytes,
+                                         ClassLoader parentClassLoader) throws ClassNotFoundException {
+                loadedClasses.incrementAndGet();
+                return super.loadClass(fullClassName, compiledClassesBytes, parentClassLoader);
+            }
+        };
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withJavaCompiler(jc).withClassFactory(classFactory).withLambdaCacheSize(10));
+        CompilationDetails details = factory.validate("x -> x + 1", new TypeReference<Function<Integer, Integer>>() {});
+        assertTrue(details.getDiagnostics().stream().noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR));
+        LambdaCreationException exception = assertThrows(LambdaCreationException.class,
+                () -> factory.validate("x -> x.length()", new TypeReference<Function<Integer, Integer>>() {}));
+        assertTrue(exception.getCompilationDetails().get().getDiagnostics().stream()
+                .anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR));
+        assertEquals(0, loadedClasses.get());
+        assertEquals(0, factory.getCacheStatistics().getSize());
+    }
+
+    @Test
+    void eclipseClassFactoryCompilesWithoutJavaxToolsLayer() throws Exception {
+        // ECJ reads system classes from the boot class path, which exists only on Java 8
+        if (JavaVersionProvider.getJavaVersion() > 8) {
+            assertThrows(UnsupportedOperationException.class, EclipseClassFactory::new);
+            return;
+        }
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                .withClassFactory(new EclipseClassFactory()).withImports(BigDecimal.class));
+        TypeReference<Function<Integer, Integer>> type = new TypeReference<Function<Integer, Integer>>() {};
+        assertEquals(Integer.valueOf(4), factory.createLambda("i -> i + 1", type).apply(3));
+        assertEquals(Integer.valueOf(3), factory.createLambda("i -> BigDecimal.valueOf(i).intValue()", type).apply(3));
+        assertThrows(LambdaCreationException.class, () -> factory.validate("i -> i.noSuchMethod()", type));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Function<Integer, Integer>>> lambdas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String code = "i -> i * " + i;
+                lambdas.add(executor.submit(() -> factory.createLambda(code, type)));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals(Integer.valueOf(2 * i), lambdas.get(i).get().apply(2));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Map<String, String> codes = new LinkedHashMap<>();
+        codes.put("increment", "i -> i + 1");
+        codes.put("incorrect", "i -> i.noSuchMethod()");
+        codes.put("double", "i -> i * 2");
+        LambdaBatchResult<String, Function<Integer, Integer>> result = factory.createLambdas(codes, type);
+        assertEquals(Integer.valueOf(6), result.getLambdas().get("double").apply(3));
+        assertEquals(Collections.singleton("incorrect"), result.getFailures().keySet());
+        CompilationDetails details = result.getFailures().get("incorrect").getCompilationDetails().get();
+        assertTrue(details.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR && d.getLineNumber() > 0));
+    }
+
+    @Test
+    void remoteClassFactoryCompilesInDaemonAndFallsBackWhenItIsDown(@TempDir Path directory) throws Exception {
+        Path tokenFile = directory.resolve("daemon.token");
+        CompilerDaemon daemon = CompilerDaemon.start(0, getJdkCompiler(), tokenFile);
+        int port = daemon.getPort();
+        RemoteClassFactory classFactory = new RemoteClassFactory(port, tokenFile);
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withClassFactory(classFactory));
+        TypeReference<Function<Integer, Integer>> type = new TypeReference<Function<Integer, Integer>>() {};
+        try {
+            assertEquals(Integer.valueOf(4), factory.createLambda("i -> i + 1", type).apply(3));
+            assertEquals(1, daemon.getCompilationCount());
+            assertThrows(LambdaCreationException.class, () -> factory.validate("i -> i.noSuchMethod()", type));
+            assertEquals(2, daemon.getCompilationCount());
+
+            Map<String, String> codes = new LinkedHashMap<>();
+            codes.put("incorrect", "i -> i.noSuchMethod()");
+            codes.put("double", "i -> i * 2");
+            LambdaBatchResult<String, Function<Integer, Integer>> result = factory.createLambdas(codes, type);
+            assertEquals(Integer.valueOf(6), result.getLambdas().get("double").apply(3));
+            assertEquals(Collections.singleton("incorrect"), result.getFailures().keySet());
+            CompilationDetails details = result.getFailures().get("incorrect").getCompilationDetails().get();
+            assertTrue(details.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR && d.getLineNumber() > 0));
+            assertTrue(daemon.getCompilationCount() > 2);
+
+            // refused by the daemon, but it's still used for the next compilations
+            LambdaFactory processingFactory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                    .withClassFactory(classFactory).withCompilerArguments("-processor", "com.example.Processor"));
+            LambdaCreationException refused = assertThrows(LambdaCreationException.class,
+                    () -> processingFactory.createLambda("i -> i - 1", type));
+            assertTrue(refused.getCompilationDetails().get().getStandardError().contains("-processor"));
+            long compilationCount = daemon.getCompilationCount();
+            assertEquals(Integer.valueOf(8), factory.createLambda("i -> i + 5", type).apply(3));
+            assertEquals(compilationCount + 1, daemon.getCompilationCount());
+        } finally {
+            daemon.close();
+        }
+        assertFalse(Files.exists(tokenFile));
+
+        // idle connections to the closed daemon are replaced with new ones
+        daemon = CompilerDaemon.start(port, getJdkCompiler(), tokenFile);
+        try {
+            assertEquals(Integer.valueOf(1), factory.createLambda("i -> i - 2", type).apply(3));
+            assertEquals(1, daemon.getCompilationCount());
+        } finally {
+            daemon.close();
+        }
+        assertEquals(Integer.valueOf(9), factory.createLambda("i -> i * 3", type).apply(3));
+    }
+
+    @Test
+    void compilerDaemonRequiresTokenFromItsFile(@TempDir Path directory) throws Exception {
+        Path tokenFile = directory.resolve("daemon.token");
+        try (CompilerDaemon daemon = CompilerDaemon.start(0, getJdkCompiler(), tokenFile)) {
+            assertEquals(tokenFile, daemon.getTokenFile());
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenFile));
+            }
+            Path wrongTokenFile = directory.resolve("wrong.token");
+            Files.write(wrongTokenFile, String.join("", Collections.nCopies(64, "0")).getBytes(StandardCharsets.US_ASCII));
+            LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                    .withClassFactory(new RemoteClassFactory(daemon.getPort(), wrongTokenFile)));
+            // compiled in this JVM
+            assertEquals(Integer.valueOf(4), factory.createLambda("i -> i + 1",
+                    new TypeReference<Function<Integer, Integer>>() {}).apply(3));
+            assertEquals(0, daemon.getCompilationCount());
+        }
+    }
+
+    @Test
+    void remoteClassFactoryRejectsServerWithoutToken(@TempDir Path directory) throws Exception {
+        Path tokenFile = directory.resolve("daemon.token");
+        Files.write(tokenFile, String.join("", Collections.nCopies(64, "7")).getBytes(StandardCharsets.US_ASCII));
+        try (ServerSocket fakeDaemon = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<byte[]> receivedBytes = CompletableFuture.supplyAsync(() -> {
+                try (Socket socket = fakeDaemon.accept()) {
+                    ByteArrayOutputStream received = new ByteArrayOutputStream();
+                    byte[] hello = new byte[4 + 32]; // protocol version and client nonce
+                    new DataInputStream(socket.getInputStream()).readFully(hello);
+                    received.write(hello);
+                    // daemon nonce and an authentication code computed without the token
+                    socket.getOutputStream().write(new byte[32 + 32]);
+                    int b;
+                    while ((b = socket.getInputStream().read()) != -1) {
+                        received.write(b);
+                    }
+                    return received.toByteArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+                    .withClassFactory(new RemoteClassFactory(fakeDaemon.getLocalPort(), tokenFile)));
+            // compiled in this JVM
+            assertEquals(Integer.valueOf(4), factory.createLambda("i -> i + 1",
+                    new TypeReference<Function<Integer, Integer>>() {}).apply(3));
+            // the client closed the connection without sending its authentication code or a request
+            assertEquals(4 + 32, receivedBytes.get(10, TimeUnit.SECONDS).length);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void bytecodeReportShowsLambdasTooLargeToBeInlined(JavaCompiler jc) throws Exception {
+        StringBuilder largeCode = new StringBuilder("i -> { int r = i;");
+        for (int j = 0; j < 80; j++) {
+            largeCode.append(" r = r * 31 + ").append(j).append(";");
+        }
+        String large = largeCode.append(" return r; }").toString();
+        TypeReference<Function<Integer, Integer>> type = new TypeReference<Function<Integer, Integer>>() {};
+
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc));
+        LambdaBytecodeReport smallReport = factory.getBytecodeReport("i -> i + 1", type);
+        assertEquals(1, smallReport.getLambdaBodySizes().size());
+        assertTrue(smallReport.getLargestLambdaBodySize() > 0);
+        assertFalse(smallReport.exceedsMaxInlineSize());
+        assertTrue(smallReport.getConstantPoolSize() > 0);
+        LambdaBytecodeReport largeReport = factory.getBytecodeReport(large, type);
+        assertTrue(largeReport.exceedsFreqInlineSize());
+        assertTrue(factory.getBytecodeReport("Integer::sum", new TypeReference<BinaryOperator<Integer>>() {})
+                .getLambdaBodySizes().isEmpty());
+
+        List<LambdaBytecodeReport> warnings = new ArrayList<>();
+        List<LambdaCreationMetrics> metrics = new ArrayList<>();
+        LambdaFactory warningFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withInliningPolicy(InliningPolicy.WARN)
+                .withListener(new LambdaFactoryListener() {
+                    @Override
+                    public void lambdaCreated(LambdaCreationMetrics lambdaMetrics) {
+                        metrics.add(lambdaMetrics);
+                    }
+
+                    @Override
+                    public void inliningLimitExceeded(String code, LambdaBytecodeReport report) {
+                        assertEquals(large, code);
+                        warnings.add(report);
+                    }
+                }));
+        warningFactory.createLambda("i -> i + 1", type);
+        assertNotNull(warningFactory.createLambda(large, type).apply(1));
+        assertEquals(1, warnings.size());
+        assertEquals(largeReport.getLargestLambdaBodySize(), warnings.get(0).getLargestLambdaBodySize());
+        assertTrue(metrics.stream().allMatch(m -> m.getBytecodeReport().isPresent()));
+
+        LambdaFactory rejectingFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withInliningPolicy(InliningPolicy.REJECT).withLambdaCacheSize(10));
+        assertEquals(Integer.valueOf(2), rejectingFactory.createLambda("i -> i + 1", type).apply(1));
+        LambdaCreationException exception = assertThrows(LambdaCreationException.class,
+                () -> rejectingFactory.createLambda(large, type));
+        assertTrue(exception.getCause() instanceof InliningLimitExceededException);
+        assertEquals(1, rejectingFactory.getCacheStatistics().getSize());
+        Map<String, String> codes = new LinkedHashMap<>();
+        codes.put("small", "i -> i * 2");
+        codes.put("large", large);
+        LambdaBatchResult<String, Function<Integer, Integer>> result = rejectingFactory.createLambdas(codes, type);
+        assertEquals(Collections.singleton("small"), result.getLambdas().keySet());
+        assertTrue(result.getFailures().get("large").getCause() instanceof InliningLimitExceededException);
+
+        // specialized lambdas are not created again with the boxed type when they are rejected
+        assertTrue(warningFactory.createSpecializedLambda(large, type).isSpecialized());
+        assertEquals(2, warnings.size());
+        LambdaCreationException specializedException = assertThrows(LambdaCreationException.class,
+                () -> rejectingFactory.createSpecializedLambda(large, type));
+        assertTrue(specializedException.getCause() instanceof InliningLimitExceededException);
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void methodHandlesAndCallSitesCallCompiledLambdas(JavaCompiler jc) throws Throwable {
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withTieredCompilation(10));
+        MethodHandle function = factory.createMethodHandle("i -> i + 1", new TypeReference<Function<Integer, Integer>>() {});
+        assertEquals(MethodType.methodType(Integer.class, Integer.class), function.type());
+        assertEquals(Integer.valueOf(4), (Integer) function.invokeExact(Integer.valueOf(3)));
+
+        MethodHandle operator = factory.createMethodHandle("(a, b) -> a * b + 1", new TypeReference<IntBinaryOperator>() {});
+        assertEquals(MethodType.methodType(int.class, int.class, int.class), operator.type());
+        assertEquals(7, (int) operator.invokeExact(2, 3));
+
+        MethodHandle wildcardFunction = factory.createMethodHandle("s -> s.length()",
+                new TypeReference<Function<? super String, Integer>>() {});
+        assertEquals(MethodType.methodType(Integer.class, Object.class), wildcardFunction.type());
+
+        ConstantCallSite callSite = factory.createCallSite("s -> s.isEmpty()", new TypeReference<Predicate<String>>() {});
+        MethodHandle invoker = callSite.dynamicInvoker();
+        assertTrue((boolean) invoker.invokeExact(""));
+        assertFalse((boolean) invoker.invokeExact("abc"));
+
+        assertThrows(LambdaCreationException.class,
+                () -> factory.createMethodHandle("i -> i.noSuchMethod()", new TypeReference<Function<Integer, Integer>>() {}));
+    }
+
+    @ParameterizedTest
+    @MethodSource("jdkAndEclipse")
+    void warmUpCompilesLambdasAndReportsWhenFinished(JavaCompiler jc) throws Exception {
+        AtomicInteger finishedWarmUps = new AtomicInteger();
+        AtomicInteger createdLambdas = new AtomicInteger();
+        LambdaFactory factory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withLambdaCacheSize(10)
+                .withListener(new LambdaFactoryListener() {
+                    @Override
+                    public void lambdaCreated(LambdaCreationMetrics metrics) {
+                        createdLambdas.incrementAndGet();
+                    }
+
+                    @Override
+                    public void warmUpFinished(long durationNanos) {
+                        assertTrue(durationNanos > 0);
+                        finishedWarmUps.incrementAndGet();
+                    }
+                }));
+        assertFalse(factory.isWarmedUp());
+        factory.warmUpAsync().get(1, TimeUnit.MINUTES);
+        assertTrue(factory.isWarmedUp());
+        assertEquals(1, finishedWarmUps.get());
+        assertEquals(0, createdLambdas.get());
+        assertEquals(0, factory.getCacheStatistics().getSize());
+
+        LambdaFactory brokenFactory = LambdaFactory.get(LambdaFactoryConfiguration.get().withJavaCompiler(jc)
+                .withCompilerArguments("--no-such-option"));
+        assertThrows(LambdaCreationException.class, brokenFactory::warmUp);
+        assertFalse(brokenFactory.isWarmedUp());
+    }
 }